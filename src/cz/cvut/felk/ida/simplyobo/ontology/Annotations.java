@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.ontology.Traversal.Edge;
+import cz.cvut.felk.ida.simplyobo.parser.GafListener;
+import cz.cvut.felk.ida.simplyobo.parser.GafParser;
+import cz.cvut.felk.ida.simplyobo.tools.IntBitmap;
+import cz.cvut.felk.ida.simplyobo.tools.IntIntMap;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Genes annotated with terms of an ontology, read from a GAF file.
+ * 
+ * <p>Annotations follow the true-path rule: a gene annotated with a term
+ * is annotated with all its ancestors along {@code is_a} and
+ * {@code part_of} as well. The genes of every term are kept as a bitmap
+ * of gene numbers.</p>
+ * 
+ * <p>Annotations of terms missing from the ontology (e.g. obsolete ones)
+ * are counted by {@link #unknown()} and otherwise ignored. The object is
+ * immutable once created.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class Annotations {
+    
+    /** Terms propagated by one task. */
+    private static final int CHUNK = 256;
+    
+    private final Ontology onto;
+    
+    private final GafParser parser;
+    
+    private final Edge[] edges;
+    
+    private final IntBitmap[] genes;
+    
+    private final int unknown;
+    
+    private final IntBitmap annotated;
+    
+    /**
+     * Reads annotations in the calling thread.
+     * 
+     * @param onto ontology with the annotated terms
+     * @param gaf file in the GAF format
+     * @throws IOException if the Reader cannot be read
+     */
+    public Annotations(Ontology onto, Reader gaf) throws IOException {
+        this(onto, gaf, null);
+    }
+    
+    /**
+     * Reads annotations, parsing and propagating them in parallel.
+     * 
+     * @param onto ontology with the annotated terms
+     * @param gaf file in the GAF format
+     * @param executor executes parallel tasks; if {@code null},
+     * everything runs in the calling thread
+     * @throws IOException if the Reader cannot be read
+     * @throws CancellationException if the thread is interrupted
+     */
+    public Annotations(Ontology onto, Reader gaf, ExecutorService executor)
+            throws IOException {
+        this.onto = onto;
+        
+        final IntIntMap index = new IntIntMap(onto.allTerms().size(), -1);
+        for (Term t : onto.allTerms()) index.put(t.id(), onto.indexOf(t));
+        
+        final long[][] direct = { new long[1024] };
+        final int[] size = { 0 }, missing = { 0 };
+        parser = new GafParser(new GafListener() {
+            @Override
+            public void onAnnotation(int gene, int term) {
+                int t = index.get(term);
+                if (t < 0) { missing[0]++; return; }
+                if (size[0] == direct[0].length)
+                    direct[0] = Arrays.copyOf(direct[0], 2 * size[0]);
+                direct[0][size[0]++] = ((long) t << 32) | gene;
+            }
+        });
+        if (executor == null)
+            parser.parse(gaf);
+        else
+            parser.parse(gaf, executor);
+        unknown = missing[0];
+        
+        IntBitmap.Builder all = new IntBitmap.Builder();
+        for (int i = 0; i < size[0]; i++) all.add((int) direct[0][i]);
+        annotated = all.build();
+        
+        Type partOf = onto.findType("part_of");
+        edges = partOf == null
+                ? new Edge[] {Edge.isA()}
+                : new Edge[] {Edge.isA(), Edge.of(partOf)};
+        IntBitmap[] below = onto.adjacency(edges).reverse().reachable();
+        genes = propagate(direct[0], size[0], below, executor);
+    }
+    
+    /**
+     * Collects the genes of every term and of its descendants.
+     */
+    private IntBitmap[] propagate(long[] pairs, int n,
+            final IntBitmap[] below, ExecutorService executor) {
+        Arrays.sort(pairs, 0, n);
+        
+        // Distinct genes of every term in a compressed sparse row layout
+        final int terms = below.length;
+        final int[] offsets = new int[terms + 1];
+        final int[] targets = new int[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (i > 0 && pairs[i] == pairs[i-1]) continue;
+            offsets[(int) (pairs[i] >>> 32) + 1]++;
+            targets[m++] = (int) pairs[i];
+        }
+        for (int t = 0; t < terms; t++) offsets[t+1] += offsets[t];
+        
+        final IntBitmap[] out = new IntBitmap[terms];
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int from = 0; from < terms; from += CHUNK) {
+            final int lo = from, hi = Math.min(terms, from + CHUNK);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int t = lo; t < hi; t++) {
+                        IntBitmap.Builder b = new IntBitmap.Builder();
+                        IntBitmap d = below[t];
+                        for (int x = d.next(0); x >= 0; x = d.next(x + 1))
+                            for (int i = offsets[x]; i < offsets[x+1]; i++)
+                                b.add(targets[i]);
+                        out[t] = b.build();
+                    }
+                    return null;
+                }
+            });
+        }
+        
+        try {
+            if (executor == null) {
+                for (Callable<Void> c : tasks) c.call();
+            } else {
+                for (Future<Void> f : executor.invokeAll(tasks)) f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Propagation was interrupted.");
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+        return out;
+    }
+    
+    private int index(Term t) {
+        int i = onto.indexOf(t);
+        if (i < 0 || i >= genes.length) throw new IllegalArgumentException(
+                "Term " + t + " is not known to the annotations.");
+        return i;
+    }
+    
+    /**
+     * Returns the numbers of genes annotated with a term or a descendant.
+     * 
+     * @see #gene(int)
+     */
+    public IntBitmap genes(Term t) {
+        return genes[index(t)];
+    }
+    
+    /**
+     * Number of genes annotated with a term or a descendant.
+     */
+    public int count(Term t) {
+        return genes[index(t)].cardinality();
+    }
+    
+    /**
+     * Number of annotated genes of every term with at least one.
+     */
+    public Map<Term,Integer> counts() {
+        Map<Term,Integer> out = new HashMap<Term,Integer>();
+        for (int t = 0; t < genes.length; t++)
+            if (!genes[t].isEmpty())
+                out.put(onto.termAt(t), genes[t].cardinality());
+        return out;
+    }
+    
+    /**
+     * Returns the gene with the given number.
+     * 
+     * @return database and object ID separated by a colon
+     */
+    public String gene(int gene) {
+        return parser.gene(gene);
+    }
+    
+    /**
+     * Number of distinct genes in the file.
+     */
+    public int genes() {
+        return parser.genes();
+    }
+    
+    /**
+     * Number of genes with an annotation of a term of the ontology.
+     */
+    public int annotatedGenes() {
+        return annotated.cardinality();
+    }
+    
+    /**
+     * Returns the numbers of genes with an annotation of a term of the
+     * ontology.
+     */
+    public IntBitmap allGenes() {
+        return annotated;
+    }
+    
+    /**
+     * Finds the number of a gene.
+     * 
+     * @param gene database and object ID separated by a colon
+     * @return the number or {@code -1} if the gene is not in the file
+     */
+    public int gene(String gene) {
+        return parser.find(gene);
+    }
+    
+    /**
+     * Converts genes to a bitmap of their numbers.
+     * 
+     * @param genes database and object IDs separated by a colon; genes
+     * missing from the file are ignored
+     */
+    public IntBitmap geneSet(Iterable<String> genes) {
+        IntBitmap.Builder b = new IntBitmap.Builder();
+        for (String g : genes) {
+            int i = parser.find(g);
+            if (i >= 0) b.add(i);
+        }
+        return b.build();
+    }
+    
+    /**
+     * Number of annotations of terms missing from the ontology.
+     */
+    public int unknown() {
+        return unknown;
+    }
+    
+    /**
+     * Number of annotations skipped for the {@code NOT} qualifier.
+     */
+    public int negated() {
+        return parser.negated();
+    }
+    
+    /** Ontology of the annotated terms. */
+    Ontology ontology() {
+        return onto;
+    }
+    
+    /** Edges leading from terms to ancestors, which get their genes. */
+    Edge[] edges() {
+        return edges.clone();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+/**
+ * Callback for changes between two releases of an ontology.
+ * 
+ * <p>Terms are identified by the numeric part of their ID, e.g. 8150 for
+ * GO:0008150. Changes are reported by increasing ID of the term, or of
+ * the subject of the edge.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ * @see ReleaseDiff
+ */
+public interface DiffListener {
+    
+    /**
+     * The term appears only in the new release.
+     */
+    public void onTermAdded(int id, String name);
+    
+    /**
+     * The term appears only in the old release.
+     */
+    public void onTermRemoved(int id, String name);
+    
+    /**
+     * The term has a different name in each release.
+     */
+    public void onTermRenamed(int id, String oldName, String newName);
+    
+    /**
+     * The edge appears only in the new release.
+     * 
+     * @param from subject of the edge
+     * @param type ID of the relation or {@code is_a}
+     * @param to object of the edge
+     */
+    public void onEdgeAdded(int from, String type, int to);
+    
+    /**
+     * The edge appears only in the old release.
+     * 
+     * @param from subject of the edge
+     * @param type ID of the relation or {@code is_a}
+     * @param to object of the edge
+     */
+    public void onEdgeRemoved(int from, String type, int to);
+    
+    /**
+     * The triple is inferred only in the new release.
+     * 
+     * <p>Reported only for snapshots of a {@link Reasoner}. A triple,
+     * which is stated in one release and inferred in the other, is
+     * reported as an inferred and as a stated change.</p>
+     * 
+     * @param from subject of the triple
+     * @param type ID of the relation
+     * @param to object of the triple
+     */
+    public void onInferredAdded(int from, String type, int to);
+    
+    /**
+     * The triple is inferred only in the old release.
+     * 
+     * @param from subject of the triple
+     * @param type ID of the relation
+     * @param to object of the triple
+     * @see #onInferredAdded(int, String, int)
+     */
+    public void onInferredRemoved(int from, String type, int to);
+    
+}
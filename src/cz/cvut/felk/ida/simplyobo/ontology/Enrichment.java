@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.tools.IntBitmap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Over-representation analysis of gene lists in terms of an ontology.
+ * 
+ * <p>For every term annotated with a gene of the study set, the engine
+ * tests whether the study set contains more genes of the term than a
+ * random set of the same size would. The p-value is the upper tail of
+ * the hypergeometric distribution, i.e. the one-sided Fisher's exact
+ * test. The population consists of all genes annotated with a term of
+ * the ontology.</p>
+ * 
+ * <p>Overlaps are counted by intersecting gene bitmaps, and binomial
+ * coefficients come from a table of logarithms of factorials, computed
+ * once for the population. The object is immutable and can be shared by
+ * threads.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class Enrichment {
+    
+    /**
+     * Correction of p-values for testing many terms at once.
+     */
+    public enum Correction {
+        
+        /** Raw p-values. */
+        NONE {
+            @Override
+            void adjust(double[] p, int n) {}
+        },
+        
+        /** Multiplies p-values by the number of tests. */
+        BONFERRONI {
+            @Override
+            void adjust(double[] p, int n) {
+                for (int i = 0; i < n; i++) p[i] = Math.min(1, p[i] * n);
+            }
+        },
+        
+        /** Benjamini-Hochberg adjustment controlling false discovery rate. */
+        BENJAMINI_HOCHBERG {
+            @Override
+            void adjust(double[] p, int n) {
+                // p-values come sorted in the increasing order
+                double min = 1;
+                for (int i = n - 1; i >= 0; i--) {
+                    min = Math.min(min, p[i] * n / (i + 1));
+                    p[i] = min;
+                }
+            }
+        };
+        
+        /**
+         * Adjusts sorted p-values in place.
+         * 
+         * @param p p-values in the increasing order
+         * @param n number of tests
+         */
+        abstract void adjust(double[] p, int n);
+    }
+    
+    /**
+     * Result of the test of one term.
+     */
+    public static final class Hit {
+        
+        private final Term term;
+        
+        private final int overlap, termSize;
+        
+        private final double p;
+        
+        private double adjusted;
+        
+        private Hit(Term term, int overlap, int termSize, double p) {
+            this.term = term;
+            this.overlap = overlap;
+            this.termSize = termSize;
+            this.p = p;
+        }
+        
+        /** Tested term. */
+        public Term term() {
+            return term;
+        }
+        
+        /** Number of genes of the study set annotated with the term. */
+        public int overlap() {
+            return overlap;
+        }
+        
+        /** Number of genes of the population annotated with the term. */
+        public int termSize() {
+            return termSize;
+        }
+        
+        /** Raw p-value. */
+        public double p() {
+            return p;
+        }
+        
+        /** P-value after the correction for multiple testing. */
+        public double adjusted() {
+            return adjusted;
+        }
+        
+        @Override
+        public String toString() {
+            return term + " " + overlap + "/" + termSize + " p=" + p
+                    + " adj=" + adjusted;
+        }
+    }
+    
+    private static final Comparator<Hit> BY_P = new Comparator<Hit>() {
+        @Override
+        public int compare(Hit a, Hit b) {
+            return Double.compare(a.p, b.p);
+        }
+    };
+    
+    private final Ontology onto;
+    
+    private final IntBitmap population;
+    
+    /** Genes of terms with at least one gene, by dense index of terms. */
+    private final IntBitmap[] genes;
+    
+    private final int[] terms;
+    
+    /** Natural logarithm of {@code i!} at position {@code i}. */
+    private final double[] logFact;
+    
+    /**
+     * Prepares the test for the given annotations.
+     */
+    public Enrichment(Annotations annotations) {
+        onto = annotations.ontology();
+        population = annotations.allGenes();
+        
+        int size = 0;
+        for (Term t : onto.allTerms()) size = Math.max(size, onto.indexOf(t) + 1);
+        IntBitmap[] all = new IntBitmap[size];
+        for (Term t : onto.allTerms()) {
+            IntBitmap g = annotations.genes(t);
+            if (g.isEmpty()) continue;
+            all[onto.indexOf(t)] = g;
+        }
+        List<Integer> used = new ArrayList<Integer>();
+        for (int t = 0; t < all.length; t++) if (all[t] != null) used.add(t);
+        
+        terms = new int[used.size()];
+        genes = new IntBitmap[used.size()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = used.get(i);
+            genes[i] = all[terms[i]];
+        }
+        
+        int n = population.cardinality();
+        logFact = new double[n + 1];
+        for (int i = 1; i <= n; i++)
+            logFact[i] = logFact[i-1] + Math.log(i);
+    }
+    
+    private double logChoose(int n, int k) {
+        return logFact[n] - logFact[k] - logFact[n - k];
+    }
+    
+    /**
+     * Probability of at least {@code k} successes when drawing {@code n}
+     * of {@code total} items, of which {@code size} are successes.
+     */
+    double upperTail(int k, int size, int n, int total) {
+        int max = Math.min(size, n);
+        if (k <= Math.max(0, n - (total - size))) return 1;
+        if (k > max) return 0;
+        
+        // First term from the table, others by the ratio of neighbours
+        double term = Math.exp(logChoose(size, k)
+                + logChoose(total - size, n - k) - logChoose(total, n));
+        double sum = 0;
+        for (int i = k; i <= max && term > 0; i++) {
+            sum += term;
+            term *= (double) (size - i) * (n - i)
+                    / ((i + 1.0) * (total - size - n + i + 1));
+        }
+        return Math.min(1, sum);
+    }
+    
+    /**
+     * Tests a study set against every term.
+     * 
+     * <p>Only terms annotated with a gene of the study set are returned,
+     * but all terms with at least one gene count as tests for the
+     * correction.</p>
+     * 
+     * @param study numbers of genes, see {@link Annotations#geneSet};
+     * genes outside the population are ignored
+     * @param correction correction for multiple testing
+     * @return results sorted by increasing p-value
+     */
+    public List<Hit> test(IntBitmap study, Correction correction) {
+        IntBitmap s = study.intersect(population);
+        int n = s.cardinality(), total = population.cardinality();
+        
+        List<Hit> out = new ArrayList<Hit>();
+        for (int i = 0; i < terms.length; i++) {
+            int k = genes[i].intersectCardinality(s);
+            if (k == 0) continue;
+            int size = genes[i].cardinality();
+            out.add(new Hit(onto.termAt(terms[i]), k, size,
+                    upperTail(k, size, n, total)));
+        }
+        Collections.sort(out, BY_P);
+        
+        // Terms without overlap have p = 1 and sort after the hits
+        double[] p = new double[terms.length];
+        Arrays.fill(p, 1);
+        for (int i = 0; i < out.size(); i++) p[i] = out.get(i).p;
+        correction.adjust(p, terms.length);
+        for (int i = 0; i < out.size(); i++) out.get(i).adjusted = p[i];
+        return out;
+    }
+    
+    /**
+     * Tests many study sets in parallel.
+     * 
+     * @param studies study sets, see {@link #test(IntBitmap, Correction)}
+     * @param correction correction for multiple testing
+     * @param executor runs one task per study set
+     * @return results of every study set in the given order
+     * @throws CancellationException if the thread is interrupted
+     */
+    public List<List<Hit>> test(List<IntBitmap> studies,
+            final Correction correction, ExecutorService executor) {
+        List<Callable<List<Hit>>> tasks = new ArrayList<Callable<List<Hit>>>();
+        for (final IntBitmap s : studies)
+            tasks.add(new Callable<List<Hit>>() {
+                @Override
+                public List<Hit> call() {
+                    return test(s, correction);
+                }
+            });
+        
+        try {
+            List<List<Hit>> out = new ArrayList<List<Hit>>(studies.size());
+            for (Future<List<Hit>> f : executor.invokeAll(tasks))
+                out.add(f.get());
+            return out;
+            
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Enrichment was interrupted.");
+            
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+/**
+ * Callback for triples derived by the {@link Reasoner}.
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public interface InferenceListener {
+    
+    /**
+     * Called as soon as the reasoner derives a new triple.
+     * 
+     * <p>Each triple is reported exactly once and never a triple which is
+     * stated in the ontology.</p>
+     * 
+     * @param s subject of the triple
+     * @param v relation of the triple
+     * @param o object of the triple
+     */
+    public void onInferred(Term s, Type v, Term o);
+    
+}
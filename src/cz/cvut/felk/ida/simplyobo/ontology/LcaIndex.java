@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.tools.CsrGraph;
+import cz.cvut.felk.ida.simplyobo.tools.IntBitmap;
+import java.util.Arrays;
+
+/**
+ * Lowest common ancestors in the {@code is_a} hierarchy.
+ * 
+ * <p>Every term keeps its deepest parent as the parent in a spanning
+ * tree, so the depth of a term in the tree equals the length of the
+ * longest {@code is_a} path to a root. Depths are the maximal depths of
+ * {@link Levels}, which also decide how {@code is_a} cycles are broken.
+ * An Euler tour of the tree and a
+ * sparse table over it find the common ancestor in the tree by two
+ * lookups.</p>
+ * 
+ * <p>With multiple inheritance, the common ancestor in the tree need not
+ * be the lowest one in the hierarchy. The index therefore keeps the
+ * ancestors of every term as a bitmap and as an array sorted by
+ * decreasing depth. Since depth grows along every {@code is_a} edge
+ * downwards, the deepest common ancestor is a lowest one; it is found by
+ * scanning the ancestors of one term deeper than the tree answer. The
+ * cost depends on the number of such ancestors, not on the number of
+ * children of upper terms, and is usually a few probes.</p>
+ * 
+ * <p>The index is immutable; obtain it by {@link Ontology#lcaIndex()}.
+ * It reflects the hierarchy at the time it was built.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public final class LcaIndex {
+    
+    private final Ontology onto;
+    
+    /** Number of terms; the virtual root above all roots has this index. */
+    private final int n;
+    
+    /** Children of every term and of the virtual root. */
+    private final CsrGraph children;
+    
+    /** Ancestors of every term, the term itself included. */
+    private final IntBitmap[] ancestors;
+    
+    /** Ancestors of term t, deepest first, at [ancStart[t], ancStart[t+1]). */
+    private final int[] ancStart;
+    
+    private final int[] byDepth;
+    
+    /** Length of the longest path to a root; -1 for the virtual root. */
+    private final int[] depth;
+    
+    /** First position of every term in the Euler tour. */
+    private final int[] first;
+    
+    /** Row k holds the shallowest term of tour positions [i, i + 2^k). */
+    private final int[][] table;
+    
+    LcaIndex(Ontology onto) {
+        this.onto = onto;
+        CsrGraph up = onto.adjacency(Traversal.Edge.isA());
+        n = up.size();
+        ancestors = up.reachable();
+        CsrGraph down = up.reverse();
+        
+        // Maximal depths and the topological order come from the levels;
+        // the parent in the tree is a deepest parent placed before a term
+        Levels lv = onto.levels();
+        depth = new int[n + 1];
+        int[] parent = new int[n];
+        int[] position = new int[n];
+        for (int i = 0; i < n; i++) position[lv.orderAt(i)] = i;
+        depth[n] = -1;
+        for (int t = 0; t < n; t++) {
+            depth[t] = lv.maxDepth(t);
+            parent[t] = n;
+            for (int i = up.start(t); i < up.end(t); i++) {
+                int p = up.target(i);
+                if (position[p] < position[t]
+                        && lv.maxDepth(p) + 1 == depth[t]) {
+                    parent[t] = p;
+                    break;
+                }
+            }
+        }
+        
+        ancStart = new int[n + 1];
+        for (int t = 0; t < n; t++)
+            ancStart[t+1] = ancStart[t] + ancestors[t].cardinality();
+        byDepth = new int[ancStart[n]];
+        long[] keys = new long[16];
+        for (int t = 0; t < n; t++) {
+            int k = 0;
+            IntBitmap a = ancestors[t];
+            if (keys.length < a.cardinality())
+                keys = new long[a.cardinality()];
+            for (int x = a.next(0); x >= 0; x = a.next(x + 1))
+                keys[k++] = ((long) (Integer.MAX_VALUE - depth[x]) << 32) | x;
+            Arrays.sort(keys, 0, k);
+            for (int i = 0; i < k; i++)
+                byDepth[ancStart[t] + i] = (int) keys[i];
+        }
+        
+        CsrGraph.Builder tree = new CsrGraph.Builder(n + 1);
+        CsrGraph.Builder dag = new CsrGraph.Builder(n + 1);
+        for (int t = 0; t < n; t++) {
+            tree.add(parent[t], t);
+            if (up.degree(t) == 0) dag.add(n, t);
+            for (int i = down.start(t); i < down.end(t); i++)
+                dag.add(t, down.target(i));
+        }
+        children = dag.build();
+        
+        // Euler tour of the spanning tree
+        CsrGraph spanning = tree.build();
+        int m = 2 * n + 1;
+        int[] tour = new int[m];
+        first = new int[n + 1];
+        int[] stack = new int[n + 1];
+        int[] next = new int[n + 1];
+        int len = 0, top = 0;
+        stack[0] = n;
+        next[0] = spanning.start(n);
+        first[n] = len;
+        tour[len++] = n;
+        while (top >= 0) {
+            int u = stack[top];
+            if (next[top] < spanning.end(u)) {
+                int c = spanning.target(next[top]++);
+                stack[++top] = c;
+                next[top] = spanning.start(c);
+                first[c] = len;
+                tour[len++] = c;
+            } else if (--top >= 0) {
+                tour[len++] = stack[top];
+            }
+        }
+        
+        // Sparse table for range-minimum queries on the tour
+        int levels = 32 - Integer.numberOfLeadingZeros(m);
+        table = new int[levels][];
+        table[0] = tour;
+        for (int k = 1; k < levels; k++) {
+            int half = 1 << (k - 1);
+            int[] prev = table[k-1];
+            int[] row = new int[m - (1 << k) + 1];
+            for (int i = 0; i < row.length; i++)
+                row[i] = shallower(prev[i], prev[i + half]);
+            table[k] = row;
+        }
+    }
+    
+    /** Number of terms covered by the index. */
+    int size() {
+        return n;
+    }
+    
+    private int shallower(int a, int b) {
+        return depth[a] <= depth[b] ? a : b;
+    }
+    
+    private int index(Term t) {
+        int i = onto.indexOf(t);
+        if (i < 0 || i >= n) throw new IllegalArgumentException(
+                "Term " + t + " is not known to the index.");
+        return i;
+    }
+    
+    /** Common ancestor of two terms in the spanning tree. */
+    private int treeLca(int a, int b) {
+        int l = Math.min(first[a], first[b]);
+        int r = Math.max(first[a], first[b]) + 1;
+        int k = 31 - Integer.numberOfLeadingZeros(r - l);
+        return shallower(table[k][l], table[k][r - (1 << k)]);
+    }
+    
+    /** Lowest common ancestor by indexes or {@code -1} if there is none. */
+    int lca(int a, int b) {
+        if (a == b) return a;
+        int x = treeLca(a, b);
+        
+        // Only a deeper common ancestor can improve the tree answer
+        if (ancStart[a+1] - ancStart[a] > ancStart[b+1] - ancStart[b]) {
+            int t = a; a = b; b = t;
+        }
+        IntBitmap other = ancestors[b];
+        for (int i = ancStart[a]; i < ancStart[a+1]; i++) {
+            int y = byDepth[i];
+            if (depth[y] <= depth[x]) break;
+            if (other.contains(y)) return y;
+        }
+        return x == n ? -1 : x;
+    }
+    
+    /**
+     * Finds a lowest common ancestor of two terms.
+     * 
+     * <p>No descendant of the returned term is an ancestor of both terms.
+     * If there are more such terms, a deep one is preferred; use
+     * {@link #lowestCommonAncestors(Term, Term)} to get all of them.</p>
+     * 
+     * @return the ancestor or {@code null} if the terms have none
+     */
+    public Term lca(Term a, Term b) {
+        int x = lca(index(a), index(b));
+        return x < 0 ? null : onto.termAt(x);
+    }
+    
+    /**
+     * Finds lowest common ancestors of pairs of terms.
+     * 
+     * @param a first terms of pairs
+     * @param b second terms of pairs
+     * @param out receives the ancestor of {@code a[i]} and {@code b[i]}
+     * at position {@code i} or {@code null} if there is none
+     */
+    public void lca(Term[] a, Term[] b, Term[] out) {
+        if (a.length != b.length || out.length < a.length)
+            throw new IllegalArgumentException("Arrays differ in length.");
+        for (int i = 0; i < a.length; i++) out[i] = lca(a[i], b[i]);
+    }
+    
+    /**
+     * Finds all lowest common ancestors of two terms.
+     * 
+     * @return common ancestors of both terms, none of which is an ancestor
+     * of another one
+     */
+    public TermSet lowestCommonAncestors(Term a, Term b) {
+        IntBitmap common = ancestors[index(a)].intersect(ancestors[index(b)]);
+        IntBitmap.Builder out = new IntBitmap.Builder();
+        for (int x = common.next(0); x >= 0; x = common.next(x + 1)) {
+            boolean lowest = true;
+            for (int i = children.start(x); lowest && i < children.end(x); i++)
+                lowest = !common.contains(children.target(i));
+            if (lowest) out.add(x);
+        }
+        return new TermSet(onto, out.build());
+    }
+    
+    /**
+     * Length of the longest {@code is_a} path from a term to a root.
+     */
+    public int depth(Term t) {
+        return depth[index(t)];
+    }
+}
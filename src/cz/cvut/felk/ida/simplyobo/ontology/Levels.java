@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.tools.CsrGraph;
+import cz.cvut.felk.ida.simplyobo.tools.IntBitmap;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import static java.util.logging.Level.*;
+
+/**
+ * Topological order, depths and levels of the {@code is_a} hierarchy.
+ * 
+ * <p>Everything is computed once without recursion, by repeatedly
+ * removing terms whose parents were all removed before. The depth of a
+ * root is 0; the minimal and maximal depth of other terms is the length
+ * of the shortest and longest {@code is_a} path to a root.</p>
+ * 
+ * <p>Level {@code d} contains terms with the maximal depth {@code d}.
+ * Parents of a term are always on lower levels than the term itself, so
+ * all terms of one level can be processed at once, as soon as the levels
+ * below (or above) are finished.</p>
+ * 
+ * <p>An ontology with a cycle of {@code is_a} is not valid. If there is
+ * one, terms on and below the cycle are placed at the end of the order
+ * and their depths consider only parents placed before them.</p>
+ * 
+ * <p>The object is immutable; obtain it by {@link Ontology#levels()}.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public final class Levels {
+    
+    private static final Logger L = Logger.getLogger(Levels.class.getName());
+    
+    /**
+     * Computes a value of a term from the values of its children.
+     * 
+     * @param <T> computed value
+     */
+    public interface Aggregator<T> {
+        
+        /**
+         * Called once for every term, after all its children.
+         * 
+         * <p>Calls for terms of one level may run concurrently.</p>
+         * 
+         * @param term aggregated term
+         * @param children values of direct {@code is_a} children; a child
+         * on an {@code is_a} cycle may have no value yet
+         * @return value of the term
+         */
+        public T onTerm(Term term, List<T> children);
+        
+    }
+    
+    /** Terms aggregated by one task. */
+    private static final int CHUNK = 256;
+    
+    private final Ontology onto;
+    
+    /** Parents first. */
+    private final int[] order;
+    
+    private final int[] minDepth, maxDepth;
+    
+    /** Level d lies at order positions [levelStart[d], levelStart[d+1]). */
+    private final int[] levelStart;
+    
+    /** Terms ordered by level, parents first. */
+    private final int[] byLevel;
+    
+    /** Children of every term. */
+    private final CsrGraph children;
+    
+    Levels(Ontology onto) {
+        this.onto = onto;
+        CsrGraph up = onto.adjacency(Traversal.Edge.isA());
+        children = up.reverse();
+        int n = up.size();
+        
+        order = new int[n];
+        minDepth = new int[n];
+        maxDepth = new int[n];
+        int[] waiting = new int[n];
+        int head = 0, tail = 0;
+        for (int t = 0; t < n; t++) {
+            waiting[t] = up.degree(t);
+            if (waiting[t] == 0) order[tail++] = t;
+        }
+        
+        while (tail < n) {
+            while (head < tail) {
+                int u = order[head++];
+                for (int i = children.start(u); i < children.end(u); i++) {
+                    int c = children.target(i);
+                    if (--waiting[c] == 0) order[tail++] = c;
+                }
+            }
+            if (tail == n) break;
+            
+            // Break a cycle by releasing the first term still waiting
+            int t = 0;
+            while (waiting[t] <= 0) t++;
+            L.log(WARNING, "Term " + onto.termAt(t) + " is on an is_a cycle.");
+            waiting[t] = 0;
+            order[tail++] = t;
+        }
+        
+        // Depths from parents placed earlier in the order
+        int[] position = new int[n];
+        for (int i = 0; i < n; i++) position[order[i]] = i;
+        int height = 0;
+        for (int i = 0; i < n; i++) {
+            int t = order[i];
+            int lo = Integer.MAX_VALUE, hi = -1;
+            for (int j = up.start(t); j < up.end(t); j++) {
+                int p = up.target(j);
+                if (position[p] >= i) continue;
+                lo = Math.min(lo, minDepth[p]);
+                hi = Math.max(hi, maxDepth[p]);
+            }
+            minDepth[t] = hi < 0 ? 0 : lo + 1;
+            maxDepth[t] = hi + 1;
+            height = Math.max(height, maxDepth[t] + 1);
+        }
+        
+        // Stable bucket sort by the maximal depth
+        levelStart = new int[height + 1];
+        for (int t = 0; t < n; t++) levelStart[maxDepth[t] + 1]++;
+        for (int d = 0; d < height; d++) levelStart[d+1] += levelStart[d];
+        int[] fill = Arrays.copyOf(levelStart, height);
+        byLevel = new int[n];
+        for (int t : order) byLevel[fill[maxDepth[t]]++] = t;
+    }
+    
+    /** Number of terms covered. */
+    int size() {
+        return order.length;
+    }
+    
+    /** Term at the given position of the topological order. */
+    int orderAt(int i) {
+        return order[i];
+    }
+    
+    /** Maximal depth of a term by its index. */
+    int maxDepth(int t) {
+        return maxDepth[t];
+    }
+    
+    private int index(Term t) {
+        int i = onto.indexOf(t);
+        if (i < 0 || i >= order.length) throw new IllegalArgumentException(
+                "Term " + t + " is not known to the levels.");
+        return i;
+    }
+    
+    private List<Term> terms(final int[] ts, final int from, final int to,
+            final boolean reversed) {
+        return new AbstractList<Term>() {
+            @Override
+            public Term get(int i) {
+                if (i < 0 || i >= size()) throw new IndexOutOfBoundsException(
+                        "Index " + i + " out of " + size() + ".");
+                return onto.termAt(ts[reversed ? to - 1 - i : from + i]);
+            }
+            
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+    
+    /**
+     * All terms in the topological order, every term after its parents.
+     */
+    public List<Term> topDown() {
+        return terms(order, 0, order.length, false);
+    }
+    
+    /**
+     * All terms in the reverse topological order, children first.
+     */
+    public List<Term> bottomUp() {
+        return terms(order, 0, order.length, true);
+    }
+    
+    /**
+     * Length of the shortest {@code is_a} path from a term to a root.
+     */
+    public int minDepth(Term t) {
+        return minDepth[index(t)];
+    }
+    
+    /**
+     * Length of the longest {@code is_a} path from a term to a root.
+     */
+    public int maxDepth(Term t) {
+        return maxDepth[index(t)];
+    }
+    
+    /**
+     * Number of levels, i.e. the maximal depth of a term plus one.
+     */
+    public int height() {
+        return levelStart.length - 1;
+    }
+    
+    /**
+     * Terms with the given maximal depth.
+     */
+    public TermSet level(int depth) {
+        if (depth < 0 || depth >= height()) throw new IndexOutOfBoundsException(
+                "Level " + depth + " out of " + height() + ".");
+        return new TermSet(onto, IntBitmap.of(Arrays.copyOfRange(
+                byLevel, levelStart[depth], levelStart[depth+1])));
+    }
+    
+    /**
+     * Computes a value of every term from the values of its children.
+     * 
+     * <p>Levels are processed from the deepest one up. Terms of one level
+     * are split into chunks, which run on the executor concurrently; the
+     * next level starts when the whole level is finished.</p>
+     * 
+     * @param f computes the value of a term
+     * @param executor runs the chunks; if {@code null}, everything runs
+     * in the calling thread
+     * @return values of all terms
+     * @throws CancellationException if the thread is interrupted
+     */
+    public <T> Map<Term,T> aggregate(final Aggregator<T> f,
+            ExecutorService executor) {
+        final Object[] values = new Object[order.length];
+        
+        try {
+            for (int d = height() - 1; d >= 0; d--) {
+                List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+                for (int from = levelStart[d]; from < levelStart[d+1];
+                        from += CHUNK) {
+                    final int lo = from;
+                    final int hi = Math.min(levelStart[d+1], from + CHUNK);
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            for (int i = lo; i < hi; i++)
+                                values[byLevel[i]] = aggregate(f, values,
+                                        byLevel[i]);
+                            return null;
+                        }
+                    });
+                }
+                
+                if (executor == null || tasks.size() == 1) {
+                    for (Callable<Void> c : tasks) c.call();
+                } else {
+                    for (Future<Void> r : executor.invokeAll(tasks)) r.get();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Aggregation was interrupted.");
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+        
+        Map<Term,T> out = new HashMap<Term,T>(2 * order.length);
+        for (int t = 0; t < order.length; t++) {
+            @SuppressWarnings("unchecked")
+            T v = (T) values[t];
+            out.put(onto.termAt(t), v);
+        }
+        return out;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> T aggregate(Aggregator<T> f, Object[] values, int t) {
+        List<T> kids = new ArrayList<T>(children.degree(t));
+        for (int i = children.start(t); i < children.end(t); i++)
+            kids.add((T) values[children.target(i)]);
+        return f.onTerm(onto.termAt(t), kids);
+    }
+}
@@ -28,18 +28,27 @@ import cz.cvut.felk.ida.simplyobo.parser.SyntaxError;
 import cz.cvut.felk.ida.simplyobo.parser.TagValuePair;
 import cz.cvut.felk.ida.simplyobo.tools.BIndex;
 import cz.cvut.felk.ida.simplyobo.tools.BIndex.Builder;
+import cz.cvut.felk.ida.simplyobo.tools.CsrGraph;
 import cz.cvut.felk.ida.simplyobo.tools.Index;
+import cz.cvut.felk.ida.simplyobo.tools.IntBitmap;
+import cz.cvut.felk.ida.simplyobo.tools.IntIntMap;
 import cz.cvut.felk.ida.simplyobo.tools.MSet;
+import cz.cvut.felk.ida.simplyobo.tools.PackedSVOidx;
 import cz.cvut.felk.ida.simplyobo.tools.SVOidx;
 import cz.cvut.felk.ida.simplyobo.tools.WithID;
 import java.io.IOException;
 import java.io.Reader;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import static java.util.logging.Level.*;
 
@@ -146,6 +155,413 @@ public class Ontology implements StanzaListener {
         return terms.all();
     }
     
+    /**
+     * Returns the term with the given dense index.
+     */
+    Term termAt(int index) {
+        if (index < 0 || index >= termCount)
+            throw new IndexOutOfBoundsException("No term number " + index + ".");
+        return byIndex[index];
+    }
+    
+    /**
+     * Returns the dense index of a term of this ontology.
+     * 
+     * @return the index or {@code -1} if the term comes from elsewhere
+     */
+    int indexOf(Term t) {
+        if (!(t instanceof TermImpl)) return -1;
+        int i = ((TermImpl) t).index;
+        return i < termCount && byIndex[i] == t ? i : -1;
+    }
+    
+    /**
+     * Converts terms of this ontology to a {@link TermSet}.
+     * 
+     * @throws IllegalArgumentException if a term comes from elsewhere
+     */
+    public TermSet termSet(Iterable<? extends Term> ts) {
+        IntBitmap.Builder b = new IntBitmap.Builder();
+        for (Term t : ts) {
+            int i = indexOf(t);
+            if (i < 0) throw new IllegalArgumentException(
+                    "Term " + t + " does not belong to the ontology.");
+            b.add(i);
+        }
+        return new TermSet(this, b.build());
+    }
+    
+    /**
+     * Returns all terms in the ontology as a {@link TermSet}.
+     */
+    public TermSet allTermSet() {
+        return termSet(terms.all());
+    }
+    
+    /**
+     * Returns direct {@code is_a} parents of a term as a {@link TermSet}.
+     * 
+     * @see Term#isA()
+     */
+    public TermSet isA(Term t) {
+        if (indexOf(t) < 0) return termSet(t.isA());
+        return termSetOf(subTerms.get((TermImpl) t));
+    }
+    
+    /**
+     * Returns terms related to a term as a {@link TermSet}.
+     * 
+     * @see Term#relation(Type)
+     */
+    public TermSet relation(Term t, Type type) {
+        if (indexOf(t) < 0 || !types.contains(type.id()))
+            return termSet(t.relation(type));
+        return termSetOf(objects((TermImpl) t, types.get(type.id())));
+    }
+    
+    /**
+     * Converts terms of this ontology to a {@link TermSet} without
+     * checking where they come from.
+     */
+    private TermSet termSetOf(Set<TermImpl> ts) {
+        if (ts == null || ts.isEmpty()) return new TermSet(this, IntBitmap.EMPTY);
+        IntBitmap.Builder b = new IntBitmap.Builder();
+        for (TermImpl t : ts) b.add(t.index);
+        return new TermSet(this, b.build());
+    }
+    
+    /**
+     * Returns terms, which are in the given relation to a term.
+     * 
+     * @param type relation
+     * @param o object of the relation
+     * @return terms {@code s} such that {@code s type o} holds
+     */
+    public TermSet subjects(Type type, Term o) {
+        if (indexOf(o) < 0 || !types.contains(type.id()))
+            return new TermSet(this, IntBitmap.EMPTY);
+        TypeImpl r = types.get(type.id());
+        return termSetOf(triples(includeSubRelations ? subsumed() : null, r)
+                .getS(r, (TermImpl) o));
+    }
+    
+    /**
+     * Returns terms tagged with the given {@code subset}.
+     * 
+     * @param name name of the subset, e.g. {@code goslim_generic}
+     * @return terms of the subset, empty if there is no such subset
+     */
+    public TermSet subset(String name) {
+        Set<TermImpl> ts = subsets.get(name);
+        return ts == null ? new TermSet(this, IntBitmap.EMPTY) : termSet(ts);
+    }
+    
+    /**
+     * Returns names of all subsets used by terms.
+     */
+    public Set<String> subsetNames() {
+        return Collections.unmodifiableSet(subsets.keySet());
+    }
+    
+    /**
+     * Prepares a walk over the given kinds of edges.
+     * 
+     * @see Traversal
+     */
+    public Traversal traversal(Traversal.Edge... edges) {
+        return new Traversal(this, edges);
+    }
+    
+    /**
+     * Copies edges of the given kinds into a graph over term indexes.
+     * 
+     * <p>Relation edges include sub-relations if
+     * {@link #setIncludeSubRelations(boolean) switched on}.</p>
+     */
+    CsrGraph adjacency(Traversal.Edge... edges) {
+        return adjacency(includeSubRelations ? subsumed() : null, edges);
+    }
+    
+    /**
+     * Copies edges into a graph, taking relations with sub-relations from
+     * the merged index of {@code sub} unless it is {@code null}.
+     */
+    private CsrGraph adjacency(Subsumed sub, Traversal.Edge... edges) {
+        int n = termCount;
+        TermImpl[] all = byIndex;
+        
+        CsrGraph.Builder b = new CsrGraph.Builder(n);
+        for (Traversal.Edge e : edges) {
+            TypeImpl r = null;
+            SVOidx<TermImpl,TypeImpl,TermImpl> idx = null;
+            if (e.type() != null) {
+                if (!types.contains(e.type().id())) continue;
+                r = types.get(e.type().id());
+                idx = triples(sub, r);
+            }
+            
+            for (int i = 0; i < n; i++) {
+                TermImpl t = all[i];
+                Set<TermImpl> next;
+                if (r == null)
+                    next = e.inverted() ? supTerms.get(t) : subTerms.get(t);
+                else
+                    next = e.inverted() ? idx.getS(r, t) : idx.getO(t, r);
+                
+                if (next != null)
+                    for (TermImpl u : next) b.add(t.index, u.index);
+            }
+        }
+        return b.build();
+    }
+    
+    private volatile boolean includeSubRelations = false;
+    
+    /**
+     * Decides whether relation queries include sub-relations.
+     * 
+     * <p>If switched on, {@link Term#relation(Type)} for {@code regulates}
+     * also returns targets of {@code negatively_regulates}, provided the
+     * latter {@code is_a regulates}. The answers come from an index, in
+     * which every relation with sub-relations holds the triples of all of
+     * them; it is built on the first such query. The switch applies to the
+     * TermSet and batch queries and to graphs built for traversals, random
+     * walks, slims and annotations alike. Off by default.</p>
+     * 
+     * @param include {@code true} to include sub-relations
+     */
+    public void setIncludeSubRelations(boolean include) {
+        this.includeSubRelations = include;
+    }
+    
+    public boolean getIncludeSubRelations() {
+        return includeSubRelations;
+    }
+    
+    /**
+     * Returns the relation and all relations, which are transitively
+     * {@code is_a} the relation.
+     */
+    public Set<? extends Type> subRelations(Type type) {
+        if (!types.contains(type.id())) return Collections.singleton(type);
+        return subsumed().closure.get(types.get(type.id()));
+    }
+    
+    /**
+     * Sub-relation closure and the index of triples merged along it.
+     * 
+     * <p>It is rebuilt when relations are added or the relation index is
+     * replaced or changed.</p>
+     */
+    private final class Subsumed {
+        
+        final SVOidx<?,?,?> source;
+        
+        final long version;
+        
+        final int size;
+        
+        /** Every relation with its transitive sub-relations. */
+        final Map<TypeImpl,Set<TypeImpl>> closure
+                = new HashMap<TypeImpl,Set<TypeImpl>>();
+        
+        /** Triples of sub-relations stored under their super-relations. */
+        final SVOidx<TermImpl,TypeImpl,TermImpl> merged
+                = new SVOidx<TermImpl,TypeImpl,TermImpl>(
+                    EnumSet.of(SVOidx.Perm.SVO));
+        
+        Subsumed() {
+            source = svoIdx;
+            version = source.modifications();
+            Set<? extends TypeImpl> all = types.all();
+            size = all.size();
+            
+            for (TypeImpl p : all) {
+                Set<TypeImpl> down = new HashSet<TypeImpl>();
+                List<TypeImpl> stack = new ArrayList<TypeImpl>();
+                down.add(p);
+                stack.add(p);
+                while (!stack.isEmpty()) {
+                    Set<TypeImpl> children = supTypes.get(
+                            stack.remove(stack.size() - 1));
+                    if (children != null)
+                        for (TypeImpl c : children)
+                            if (down.add(c)) stack.add(c);
+                }
+                closure.put(p, Collections.unmodifiableSet(down));
+                
+                if (down.size() > 1)
+                    for (TypeImpl r : down)
+                    for (TermImpl s : svoIdx.getSbyV(r))
+                    for (TermImpl o : svoIdx.getO(s, r))
+                        merged.add(s, p, o);
+            }
+        }
+    }
+    
+    private volatile Subsumed subsumed = null;
+    
+    private Subsumed subsumed() {
+        Subsumed x = subsumed;
+        if (x == null || x.source != svoIdx
+                || x.version != x.source.modifications()
+                || x.size != types.all().size()) {
+            x = new Subsumed();
+            subsumed = x;
+        }
+        return x;
+    }
+    
+    /**
+     * Primitive view of the ontology used by the batch queries.
+     * 
+     * <p>It is built on the first batch query and rebuilt when terms are
+     * added, the relation index is replaced or changed, or sub-relations
+     * are switched on or off. Relation graphs are copied from the index
+     * on their first use.</p>
+     */
+    private final class Frozen {
+        
+        final SVOidx<?,?,?> source;
+        
+        final long version;
+        
+        /** Sub-relations included in the graphs, {@code null} if not. */
+        final Subsumed sub;
+        
+        /** GO number of every term by its dense index. */
+        final int[] ids;
+        
+        /** Every term by its dense index; may be longer than {@link #ids}. */
+        final TermImpl[] terms;
+        
+        /** Dense index of every GO number. */
+        final IntIntMap index;
+        
+        final Map<String,CsrGraph> graphs
+                = new ConcurrentHashMap<String,CsrGraph>();
+        
+        Frozen(Subsumed sub) {
+            source = svoIdx;
+            version = source.modifications();
+            this.sub = sub;
+            ids = new int[termCount];
+            index = new IntIntMap(ids.length, -1);
+            terms = byIndex;
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = terms[i].id;
+                index.put(ids[i], i);
+            }
+        }
+        
+        /** Graph of the relation or of is_a if {@code type} is null. */
+        CsrGraph graph(Type type) {
+            String key = type == null ? "" : type.id();
+            CsrGraph g = graphs.get(key);
+            if (g == null) {
+                g = adjacency(sub, type == null
+                        ? Traversal.Edge.isA() : Traversal.Edge.of(type));
+                graphs.put(key, g);
+            }
+            return g;
+        }
+    }
+    
+    private volatile Frozen frozen = null;
+    
+    private Frozen frozen() {
+        Frozen f = frozen;
+        Subsumed sub = includeSubRelations ? subsumed() : null;
+        if (f == null || f.source != svoIdx
+                || f.version != f.source.modifications()
+                || f.sub != sub
+                || f.ids.length != termCount) {
+            f = new Frozen(sub);
+            frozen = f;
+        }
+        return f;
+    }
+    
+    /**
+     * Finds many terms at once.
+     * 
+     * @param ids GO numbers of terms
+     * @param out receives the terms, {@code null} for unknown numbers;
+     * must be at least as long as {@code ids}
+     */
+    public void findTerms(int[] ids, Term[] out) {
+        Frozen f = frozen();
+        for (int i = 0; i < ids.length; i++) {
+            int x = f.index.get(ids[i]);
+            out[i] = x < 0 ? null : f.terms[x];
+        }
+    }
+    
+    /**
+     * Finds targets of a relation for many terms at once.
+     * 
+     * <p>Targets of {@code ids[i]} are written to {@code targets} from
+     * position {@code offsets[i]} to {@code offsets[i+1]-1}. Unknown terms
+     * have no targets. If {@code targets} is too short, only the offsets
+     * are filled in and the needed length is returned, so that the call
+     * can be repeated with a bigger buffer.</p>
+     * 
+     * <p>The targets come from a snapshot of the relation taken on its
+     * first batch query; the snapshot is taken again after the relation
+     * index changes.</p>
+     * 
+     * @param ids GO numbers of subjects
+     * @param type relation or {@code null} for {@code is_a} parents
+     * @param offsets receives {@code ids.length+1} offsets
+     * @param targets receives GO numbers of objects
+     * @return total number of targets
+     * @throws IllegalArgumentException if {@code offsets} is shorter
+     * than {@code ids.length+1}
+     */
+    public int relation(int[] ids, Type type, int[] offsets, int[] targets) {
+        if (offsets.length <= ids.length) throw new IllegalArgumentException(
+                "Offsets must have at least " + (ids.length + 1) + " items.");
+        Frozen f = frozen();
+        CsrGraph g = f.graph(type);
+        
+        int n = 0;
+        for (int i = 0; i < ids.length; i++) {
+            offsets[i] = n;
+            int x = f.index.get(ids[i]);
+            if (x >= 0 && x < g.size()) n += g.degree(x);
+        }
+        offsets[ids.length] = n;
+        if (n > targets.length) return n;
+        
+        for (int i = 0; i < ids.length; i++) {
+            int x = f.index.get(ids[i]);
+            if (x < 0 || x >= g.size()) continue;
+            int k = offsets[i];
+            for (int j = g.start(x); j < g.end(x); j++)
+                targets[k++] = f.ids[g.target(j)];
+        }
+        return n;
+    }
+    
+    /**
+     * Finds targets of a relation for many terms at once.
+     * 
+     * @param ids GO numbers of subjects
+     * @param type relation or {@code null} for {@code is_a} parents
+     * @return offsets and targets as described in
+     * {@link #relation(int[], Type, int[], int[])}
+     */
+    public int[][] relation(int[] ids, Type type) {
+        int[] offsets = new int[ids.length + 1];
+        int[] targets = new int[0];
+        int n = relation(ids, type, offsets, targets);
+        if (n > 0) {
+            targets = new int[n];
+            relation(ids, type, offsets, targets);
+        }
+        return new int[][] {offsets, targets};
+    }
+    
     /**
      * Creates a new Type from the list of t-v pairs stored into the ontology.
      */
@@ -191,6 +607,11 @@ public class Ontology implements StanzaListener {
         // Read relations
         for (TagValuePair tvp : tagVals) {
             
+            if ("subset".equals(tvp.tag())) {
+                subsets.add(tvp.val().trim(), term);
+                continue;
+            }
+            
             if ("is_a".equals(tvp.tag())) {
                 Integer id = goIDtoInt(tvp.val().trim());
                 L.log(FINER, "Parsing 'is_a' tag: " + id);
@@ -219,9 +640,104 @@ public class Ontology implements StanzaListener {
         }
     }
     
-    protected SVOidx<TermImpl,TypeImpl,TermImpl> svoIdx
+    protected volatile SVOidx<TermImpl,TypeImpl,TermImpl> svoIdx
         = new SVOidx<TermImpl,TypeImpl,TermImpl>();
     
+    /**
+     * Chooses permutations of the relation index maintained eagerly.
+     * 
+     * <p>Other permutations are built when they are queried for the first
+     * time. Triples already loaded are copied into the new index.</p>
+     * 
+     * @param eager eagerly maintained permutations
+     */
+    public void setEagerPermutations(Set<SVOidx.Perm> eager) {
+        svoIdx = new SVOidx<TermImpl,TypeImpl,TermImpl>(eager, svoIdx);
+    }
+    
+    /**
+     * Moves relation triples into a compact index of sorted arrays.
+     * 
+     * <p>Call it after parsing (and reasoning) to cut the memory taken by
+     * the relation index several times. Later additions are still
+     * possible, but they are merged in batches.</p>
+     * 
+     * @see PackedSVOidx
+     */
+    public void pack() {
+        svoIdx = new PackedSVOidx<TermImpl,TypeImpl,TermImpl>(svoIdx);
+    }
+    
+    private volatile Statistics stats = null;
+    
+    /**
+     * Returns cardinalities of relations used to plan {@link Query queries}.
+     * 
+     * <p>The statistics are computed on the first call and recomputed
+     * after the relation index is replaced (e.g. by {@link #pack()}) or
+     * changed.</p>
+     */
+    public Statistics statistics() {
+        Statistics s = stats;
+        if (s == null || !s.describes(svoIdx)) {
+            s = new Statistics(svoIdx);
+            stats = s;
+        }
+        return s;
+    }
+    
+    private volatile LcaIndex lca = null;
+    
+    /**
+     * Returns the index of lowest common ancestors in the is_a hierarchy.
+     * 
+     * <p>The index is built on the first call after the ontology is loaded
+     * and rebuilt only when new terms appear. Build it after all
+     * {@code is_a} axioms have been read.</p>
+     */
+    public LcaIndex lcaIndex() {
+        LcaIndex l = lca;
+        if (l == null || l.size() != termCount) {
+            l = new LcaIndex(this);
+            lca = l;
+        }
+        return l;
+    }
+    
+    private volatile Levels levels = null;
+    
+    /**
+     * Returns the topological order, depths and levels of terms.
+     * 
+     * <p>They are computed on the first call after the ontology is loaded
+     * and recomputed only when new terms appear.</p>
+     */
+    public Levels levels() {
+        Levels l = levels;
+        if (l == null || l.size() != termCount) {
+            l = new Levels(this);
+            levels = l;
+        }
+        return l;
+    }
+    
+    /**
+     * Returns the index of all relation triples in the ontology.
+     * 
+     * <p>Use it to inspect which permutations were used.</p>
+     */
+    public SVOidx<? extends Term,? extends Type,? extends Term> triples() {
+        return svoIdx;
+    }
+    
+    /**
+     * Checks whether a triple of {@link #triples()} was stated in the
+     * ontology, rather than derived.
+     */
+    boolean stated(Term s, Type v, Term o) {
+        return true;
+    }
+    
     /**
      * Creates a new Type from the list of t-v pairs stored into the ontology.
      */
@@ -232,6 +748,7 @@ public class Ontology implements StanzaListener {
             String id = null;
             String name = null;
             boolean transitive = false;
+            boolean symmetric = false;
 
             // Read non-structured information
             for (TagValuePair tvp : tagVals) {
@@ -247,7 +764,12 @@ public class Ontology implements StanzaListener {
                 }
                 
                 if ("is_transitive".equals(tvp.tag())) {
-                    transitive = Boolean.valueOf(tvp.val());
+                    transitive = Boolean.valueOf(tvp.val().trim());
+                    continue;
+                }
+                
+                if ("is_symmetric".equals(tvp.tag())) {
+                    symmetric = Boolean.valueOf(tvp.val().trim());
                     continue;
                 }
             }
@@ -256,6 +778,7 @@ public class Ontology implements StanzaListener {
             type = types.get(id);
             type.name = name;
             type.trans = transitive;
+            type.symm = symmetric;
         }
         
         // Read relations
@@ -277,6 +800,28 @@ public class Ontology implements StanzaListener {
                 type.trOver.add(transOverType);
                 continue;
             }
+            
+            if ("inverse_of".equals(tvp.tag())) {
+                String id = tvp.val().trim();
+                L.log(FINER, "Parsing 'inverse_of' tag: " + id);
+                type.inverse.add(types.get(id));
+                continue;
+            }
+            
+            if ("holds_over_chain".equals(tvp.tag())
+                    || "equivalent_to_chain".equals(tvp.tag())) {
+                L.log(FINER, "Parsing '" + tvp.tag() + "' tag: " + tvp.val());
+                
+                List<TypeImpl> chain = new ArrayList<TypeImpl>();
+                for (String id : tvp.val().trim().split("\\s+"))
+                    chain.add(types.get(id));
+                
+                if (chain.size() < 2) throw new SyntaxError("Chain tag must"
+                        + " contain at least two typedef names");
+                
+                type.chains.add(chain);
+                continue;
+            }
         }
     }
     
@@ -308,16 +853,55 @@ public class Ontology implements StanzaListener {
     protected final MSet<TypeImpl,TypeImpl> subTypes = new MSet<TypeImpl,TypeImpl>();
     protected final MSet<TypeImpl,TypeImpl> supTypes = new MSet<TypeImpl,TypeImpl>();
     
+    /** Terms of every subset, e.g. {@code goslim_generic}. */
+    protected final MSet<String,TermImpl> subsets = new MSet<String,TermImpl>();
+    
     private static final NumberFormat ID_FMT;
     static {
         ID_FMT = NumberFormat.getNumberInstance();
         ID_FMT.setMinimumIntegerDigits(7);
     }
     
+    /**
+     * Terms by their dense index.
+     * 
+     * <p>Readers take no lock: they read {@link #termCount} first and the
+     * array second. A new term is stored before the count is raised and a
+     * full array is replaced by a bigger copy, so every term below the
+     * count is visible in the array read after it.</p>
+     */
+    private volatile TermImpl[] byIndex = new TermImpl[16];
+    
+    private volatile int termCount = 0;
+    
+    private final Object byIndexLock = new Object();
+    
+    /** Relation targets of a term, including sub-relations if asked. */
+    private Set<TermImpl> objects(TermImpl t, TypeImpl type) {
+        return triples(includeSubRelations ? subsumed() : null, type)
+                .getO(t, type);
+    }
+    
+    /**
+     * Index answering queries on a relation: the merged one of
+     * {@code sub} if the relation has sub-relations there.
+     */
+    private SVOidx<TermImpl,TypeImpl,TermImpl> triples(Subsumed sub,
+            TypeImpl type) {
+        if (sub != null) {
+            Set<TypeImpl> down = sub.closure.get(type);
+            if (down != null && down.size() > 1) return sub.merged;
+        }
+        return svoIdx;
+    }
+    
     protected class TermImpl extends WithID<Integer> implements Term {
         
         private final Integer id;
         
+        /** Position of the term among all terms of the ontology. */
+        protected final int index;
+        
         private String name = null;
         
         private Namespace namespace = null;
@@ -327,6 +911,18 @@ public class Ontology implements StanzaListener {
                 throw new NullPointerException("ID of a term cannot be null!");
             
             this.id = id;
+            synchronized (byIndexLock) {
+                int n = termCount;
+                TermImpl[] all = byIndex;
+                if (n == all.length) {
+                    all = Arrays.copyOf(all, 2*n);
+                    all[n] = this;
+                    byIndex = all;
+                } else
+                    all[n] = this;
+                this.index = n;
+                termCount = n + 1;
+            }
         }
         
         @Override
@@ -353,8 +949,7 @@ public class Ontology implements StanzaListener {
 
         @Override
         public Set<? extends Term> relation(Type type) {
-            TypeImpl typeImpl = types.get(type.id());
-            return svoIdx.getO(this, typeImpl);
+            return objects(this, types.get(type.id()));
         }
         
         @Override
@@ -372,6 +967,13 @@ public class Ontology implements StanzaListener {
         protected boolean trans = false;
         
         protected final Set<TypeImpl> trOver = new HashSet<TypeImpl>();
+        
+        protected boolean symm = false;
+        
+        protected final Set<TypeImpl> inverse = new HashSet<TypeImpl>();
+        
+        protected final List<List<TypeImpl>> chains
+                = new ArrayList<List<TypeImpl>>();
 
         public TypeImpl(String id) {
             if (id == null)
@@ -406,6 +1008,21 @@ public class Ontology implements StanzaListener {
         public Set<? extends Type> transitiveOver() {
             return trOver;
         }
+        
+        @Override
+        public boolean symmetric() {
+            return symm;
+        }
+        
+        @Override
+        public Set<? extends Type> inverseOf() {
+            return inverse;
+        }
+        
+        @Override
+        public List<? extends List<? extends Type>> holdsOverChain() {
+            return chains;
+        }
     }
 
     private class TermBuilder implements Builder<Integer,TermImpl> {
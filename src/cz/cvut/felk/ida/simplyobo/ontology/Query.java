@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.tools.SVOidx;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Conjunctive query over relations of an ontology.
+ * 
+ * <p>A query is a list of triple patterns, in which terms and relations
+ * may be replaced by {@link Var variables}. A solution binds every
+ * variable so that all patterns become triples of the ontology. For
+ * example, terms that are part of {@code x} and regulate something
+ * occurring in {@code y} are found by</p>
+ * 
+ * <pre>
+ * Query q = new Query();
+ * Query.Var t = q.var("t"), u = q.var("u");
+ * q.where(t, partOf, x).where(t, regulates, u).where(u, occursIn, y);
+ * for (Query.Solution s : q.run(ontology))
+ *     System.out.println(s.term(t));
+ * </pre>
+ * 
+ * <p>Patterns are joined in the order of increasing estimated number of
+ * matches, see {@link Statistics}. Values bound by earlier patterns are
+ * used as keys of the index lookups of the later ones. Solutions are
+ * computed one by one as they are iterated, so a {@link #limit(int)}
+ * stops the evaluation early.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class Query {
+    
+    /**
+     * Placeholder for a term or a relation in a pattern.
+     */
+    public static final class Var {
+        
+        private final String name;
+        
+        private final int index;
+        
+        private Var(String name, int index) {
+            this.name = name;
+            this.index = index;
+        }
+        
+        @Override
+        public String toString() {
+            return "?" + name;
+        }
+    }
+    
+    /**
+     * Values of variables in one solution of a query.
+     */
+    public static final class Solution {
+        
+        private final Object[] values;
+        
+        private Solution(Object[] values) {
+            this.values = values;
+        }
+        
+        /**
+         * Value of a variable standing for a term.
+         */
+        public Term term(Var var) {
+            return (Term) values[var.index];
+        }
+        
+        /**
+         * Value of a variable standing for a relation.
+         */
+        public Type type(Var var) {
+            return (Type) values[var.index];
+        }
+        
+        @Override
+        public String toString() {
+            return Arrays.toString(values);
+        }
+    }
+    
+    private final List<Var> vars = new ArrayList<Var>();
+    
+    /** Subject, verb and object of each pattern. */
+    private final List<Object[]> patterns = new ArrayList<Object[]>();
+    
+    private int limit = Integer.MAX_VALUE;
+    
+    /**
+     * Creates a new variable of this query.
+     * 
+     * @param name name used when printing the variable
+     */
+    public Var var(String name) {
+        Var v = new Var(name, vars.size());
+        vars.add(v);
+        return v;
+    }
+    
+    private Object check(Object x, Class<?> type) {
+        if (x instanceof Var) {
+            if (vars.indexOf(x) < 0) throw new IllegalArgumentException(
+                    "Variable " + x + " belongs to another query.");
+            return x;
+        }
+        if (!type.isInstance(x)) throw new IllegalArgumentException(
+                "Expected a " + type.getSimpleName()
+                + " or a variable, not " + x + ".");
+        return x;
+    }
+    
+    /**
+     * Adds a triple pattern.
+     * 
+     * @param s subject, a {@link Term} or a {@link Var}
+     * @param v relation, a {@link Type} or a {@link Var}
+     * @param o object, a {@link Term} or a {@link Var}
+     * @return this query
+     */
+    public Query where(Object s, Object v, Object o) {
+        patterns.add(new Object[] {
+            check(s, Term.class), check(v, Type.class), check(o, Term.class)});
+        return this;
+    }
+    
+    /**
+     * Stops the evaluation after the given number of solutions.
+     * 
+     * @return this query
+     */
+    public Query limit(int n) {
+        if (n < 0) throw new IllegalArgumentException(
+                "The limit must not be negative.");
+        limit = n;
+        return this;
+    }
+    
+    /**
+     * Orders the patterns for evaluation.
+     * 
+     * <p>Starting with no bound variable, the pattern with the fewest
+     * estimated matches is taken next, until all patterns are used.</p>
+     * 
+     * @param stats cardinalities of relations
+     * @return patterns in the order of evaluation
+     */
+    List<Object[]> plan(Statistics stats) {
+        List<Object[]> left = new ArrayList<Object[]>(patterns);
+        List<Object[]> out = new ArrayList<Object[]>(patterns.size());
+        boolean[] bound = new boolean[vars.size()];
+        
+        while (!left.isEmpty()) {
+            Object[] best = null;
+            double bestCost = Double.POSITIVE_INFINITY;
+            
+            for (Object[] p : left) {
+                Type v = p[1] instanceof Type ? (Type) p[1] : null;
+                double cost = stats.estimate(v,
+                        isBound(p[0], bound), isBound(p[2], bound));
+                if (best == null || cost < bestCost) {
+                    best = p;
+                    bestCost = cost;
+                }
+            }
+            
+            left.remove(best);
+            out.add(best);
+            for (Object x : best)
+                if (x instanceof Var) bound[((Var) x).index] = true;
+        }
+        return out;
+    }
+    
+    private static boolean isBound(Object x, boolean[] bound) {
+        return !(x instanceof Var) || bound[((Var) x).index];
+    }
+    
+    /**
+     * Evaluates the query lazily.
+     * 
+     * @param onto queried ontology
+     * @return solutions, computed while they are iterated
+     */
+    public Iterable<Solution> run(Ontology onto) {
+        return run(onto.triples(), onto.statistics());
+    }
+    
+    /**
+     * Evaluates the query lazily over given triples.
+     * 
+     * @param idx queried triples
+     * @param stats cardinalities used for the planning
+     * @return solutions, computed while they are iterated
+     */
+    @SuppressWarnings("unchecked")
+    public Iterable<Solution> run(
+            SVOidx<? extends Term,? extends Type,? extends Term> idx,
+            Statistics stats) {
+        final SVOidx<Object,Object,Object> x
+                = (SVOidx<Object,Object,Object>) (SVOidx) idx;
+        final List<Object[]> plan = plan(stats);
+        final int nVars = vars.size();
+        final int max = limit;
+        
+        return new Iterable<Solution>() {
+            @Override
+            public Iterator<Solution> iterator() {
+                return new Evaluation(x, plan, nVars, max);
+            }
+        };
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Object[] p : patterns) {
+            if (sb.length() > 0) sb.append(" . ");
+            sb.append(p[0]).append(' ').append(p[1]).append(' ').append(p[2]);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Nested-loop join of patterns, which produces solutions on demand.
+     */
+    private static final class Evaluation implements Iterator<Solution> {
+        
+        private final SVOidx<Object,Object,Object> idx;
+        
+        private final List<Object[]> plan;
+        
+        /** Current values of variables; {@code null} if unbound. */
+        private final Object[] row;
+        
+        /** Variables bound by each level, so that they can be reset. */
+        private final List<List<Var>> binds = new ArrayList<List<Var>>();
+        
+        private final List<Iterator<Object[]>> levels
+                = new ArrayList<Iterator<Object[]>>();
+        
+        private int left;
+        
+        private Solution next;
+        
+        Evaluation(SVOidx<Object,Object,Object> idx,
+                List<Object[]> plan, int nVars, int limit) {
+            this.idx = idx;
+            this.plan = plan;
+            this.row = new Object[nVars];
+            this.left = limit;
+            
+            for (int i = 0; i < plan.size(); i++)
+                binds.add(new ArrayList<Var>(3));
+            
+            if (left > 0 && plan.isEmpty())
+                next = new Solution(row.clone());
+            else if (left > 0) {
+                levels.add(open(0));
+                next = advance();
+            }
+        }
+        
+        private Object value(Object x) {
+            return x instanceof Var ? row[((Var) x).index] : x;
+        }
+        
+        private Iterator<Object[]> open(int level) {
+            Object[] p = plan.get(level);
+            return new Scan(idx, value(p[0]), value(p[1]), value(p[2]));
+        }
+        
+        /** Binds variables of a pattern to a triple, if consistent. */
+        private boolean bind(int level, Object[] triple) {
+            Object[] p = plan.get(level);
+            List<Var> bound = binds.get(level);
+            for (int i = 0; i < 3; i++) {
+                if (!(p[i] instanceof Var)) continue;
+                Var var = (Var) p[i];
+                Object old = row[var.index];
+                if (old == null) {
+                    row[var.index] = triple[i];
+                    bound.add(var);
+                } else if (!old.equals(triple[i])) {
+                    unbind(level);
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private void unbind(int level) {
+            List<Var> bound = binds.get(level);
+            for (Var var : bound) row[var.index] = null;
+            bound.clear();
+        }
+        
+        private Solution advance() {
+            while (!levels.isEmpty()) {
+                int level = levels.size() - 1;
+                unbind(level);
+                
+                Iterator<Object[]> it = levels.get(level);
+                if (!it.hasNext()) {
+                    levels.remove(level);
+                    continue;
+                }
+                if (!bind(level, it.next())) continue;
+                
+                if (level + 1 == plan.size())
+                    return new Solution(row.clone());
+                levels.add(open(level + 1));
+            }
+            return null;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        @Override
+        public Solution next() {
+            if (next == null) throw new NoSuchElementException();
+            Solution out = next;
+            next = --left > 0 ? advance() : null;
+            return out;
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    /**
+     * Triples matching a pattern, where {@code null} matches anything.
+     * 
+     * <p>The index is scanned starting from the known subject or, if
+     * only the object is known, from the object.</p>
+     */
+    private static final class Scan implements Iterator<Object[]> {
+        
+        private final SVOidx<Object,Object,Object> idx;
+        
+        private final Object s, v, o;
+        
+        /** Scans from the object instead of the subject. */
+        private final boolean backward;
+        
+        private final Object[] key = new Object[3];
+        
+        private Iterator<?> first, second, third;
+        
+        private Object[] next;
+        
+        Scan(SVOidx<Object,Object,Object> idx, Object s, Object v, Object o) {
+            this.idx = idx;
+            this.s = s;
+            this.v = v;
+            this.o = o;
+            this.backward = s == null && o != null;
+            
+            first = backward ? one(o)
+                    : s != null ? one(s)
+                    : v != null ? idx.getSbyV(v).iterator()
+                    : idx.allS().iterator();
+            next = advance();
+        }
+        
+        private static Iterator<?> one(Object x) {
+            return Collections.singleton(x).iterator();
+        }
+        
+        private Iterator<?> verbs(Object k) {
+            if (v != null) return one(v);
+            return backward
+                    ? idx.getVbyO(k).iterator() : idx.getVbyS(k).iterator();
+        }
+        
+        private Iterator<?> last(Object k1, Object k2) {
+            if (backward) return idx.getS(k2, k1).iterator();
+            if (o == null) return idx.getO(k1, k2).iterator();
+            return idx.contains(k1, k2, o)
+                    ? one(o) : Collections.emptySet().iterator();
+        }
+        
+        private Object[] advance() {
+            while (true) {
+                if (third != null && third.hasNext()) {
+                    Object k3 = third.next();
+                    return backward
+                            ? new Object[] {k3, key[1], key[0]}
+                            : new Object[] {key[0], key[1], k3};
+                }
+                if (second != null && second.hasNext()) {
+                    key[1] = second.next();
+                    third = last(key[0], key[1]);
+                    continue;
+                }
+                if (first.hasNext()) {
+                    key[0] = first.next();
+                    second = verbs(key[0]);
+                    third = null;
+                    continue;
+                }
+                return null;
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        @Override
+        public Object[] next() {
+            if (next == null) throw new NoSuchElementException();
+            Object[] out = next;
+            next = advance();
+            return out;
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,552 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.tools.CsrGraph;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Random walks over the ontology, e.g. as a corpus for node embeddings.
+ * 
+ * <p>The chosen kinds of edges are copied into arrays indexed by the
+ * dense index of terms, each kind with its own weight. For every term,
+ * an alias table of its outgoing edges is precomputed, so that a step
+ * of a walk takes constant time and allocates nothing.</p>
+ * 
+ * <p>Walks are biased as in node2vec: returning to the previous term is
+ * weighted by {@code 1/p}, moving to a successor of the previous term
+ * by {@code 1} and moving farther away by {@code 1/q}. The bias is
+ * applied by rejection sampling from the alias table, so it needs no
+ * table per edge. With {@code p = q = 1} the walks are the plain,
+ * weighted walks of DeepWalk.</p>
+ * 
+ * <p>Edges are followed in the given direction only; add the inverse
+ * of an edge (e.g. {@code Edge.isA().inverse()}) to walk in both. The
+ * object is immutable and can be shared by threads.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class RandomWalks {
+    
+    /**
+     * Receives generated walks.
+     */
+    public interface WalkListener {
+        
+        /**
+         * Called for every walk, from the thread, which started the
+         * generation, in the same order for the same seed.
+         * 
+         * @param ids term IDs of the walk, see {@link Term#id()}
+         * @param offset position of the first term of the walk
+         * @param length number of terms of the walk
+         */
+        public void onWalk(int[] ids, int offset, int length);
+        
+    }
+    
+    /** Walks generated by one task. */
+    private static final int CHUNK = 256;
+    
+    /** Term IDs by the dense index. */
+    private final int[] ids;
+    
+    private final int[] offsets;
+    
+    /** Successors of every term, sorted by the index. */
+    private final int[] targets;
+    
+    /** Probability of keeping the sampled edge of the alias table. */
+    private final double[] prob;
+    
+    /** Edge taken instead, relative to the start of the row. */
+    private final int[] alias;
+    
+    /** Terms with at least one outgoing edge. */
+    private final int[] starts;
+    
+    private final double invP, invQ, maxBias;
+    
+    private final boolean biased;
+    
+    /**
+     * Prepares unbiased walks following edges of equal weight.
+     * 
+     * @param onto walked ontology
+     * @param edges followed kinds of edges
+     */
+    public RandomWalks(Ontology onto, Traversal.Edge... edges) {
+        this(onto, edges, ones(edges.length), 1, 1);
+    }
+    
+    /**
+     * Prepares biased walks following weighted edges.
+     * 
+     * <p>If an edge belongs to several kinds, its weights are added.</p>
+     * 
+     * @param onto walked ontology
+     * @param edges followed kinds of edges
+     * @param weights positive weight of every kind of edges
+     * @param p return parameter of node2vec
+     * @param q in-out parameter of node2vec
+     */
+    public RandomWalks(Ontology onto, Traversal.Edge[] edges,
+            double[] weights, double p, double q) {
+        if (edges.length != weights.length) throw new IllegalArgumentException(
+                "Every kind of edges needs a weight.");
+        for (double w : weights)
+            if (!(w > 0)) throw new IllegalArgumentException(
+                    "Weights must be positive, not " + w + ".");
+        if (!(p > 0) || !(q > 0)) throw new IllegalArgumentException(
+                "Parameters p and q must be positive.");
+        
+        CsrGraph[] graphs = new CsrGraph[edges.length];
+        int n = 0, m = 0;
+        for (int k = 0; k < edges.length; k++) {
+            graphs[k] = onto.adjacency(edges[k]);
+            n = Math.max(n, graphs[k].size());
+            m += graphs[k].edges();
+        }
+        
+        ids = new int[n];
+        for (int i = 0; i < n; i++) ids[i] = onto.termAt(i).id();
+        
+        offsets = new int[n + 1];
+        int[] tgt = new int[m];
+        double[] wgt = new double[m];
+        long[] keys = new long[16];
+        double[] row = new double[16];
+        int e = 0;
+        
+        for (int i = 0; i < n; i++) {
+            // Merge the rows of all kinds, sorted by the target
+            int d = 0;
+            for (int k = 0; k < graphs.length; k++) {
+                if (i >= graphs[k].size()) continue;
+                for (int j = graphs[k].start(i); j < graphs[k].end(i); j++) {
+                    if (d == keys.length) {
+                        keys = Arrays.copyOf(keys, 2*d);
+                        row = Arrays.copyOf(row, 2*d);
+                    }
+                    keys[d] = ((long) graphs[k].target(j) << 32) | d;
+                    row[d++] = weights[k];
+                }
+            }
+            Arrays.sort(keys, 0, d);
+            
+            for (int j = 0; j < d; j++) {
+                int t = (int) (keys[j] >>> 32);
+                double w = row[(int) keys[j]];
+                if (e > offsets[i] && tgt[e-1] == t) {
+                    wgt[e-1] += w;
+                } else {
+                    tgt[e] = t;
+                    wgt[e++] = w;
+                }
+            }
+            offsets[i+1] = e;
+        }
+        
+        targets = Arrays.copyOf(tgt, e);
+        prob = new double[e];
+        alias = new int[e];
+        int[] small = new int[16], large = new int[16];
+        int count = 0;
+        
+        for (int i = 0; i < n; i++) {
+            int s = offsets[i], d = offsets[i+1] - s;
+            if (d == 0) continue;
+            count++;
+            if (small.length < d) {
+                small = new int[d];
+                large = new int[d];
+            }
+            aliasTable(wgt, s, d, small, large);
+        }
+        
+        starts = new int[count];
+        for (int i = 0, j = 0; i < n; i++)
+            if (offsets[i+1] > offsets[i]) starts[j++] = i;
+        
+        invP = 1 / p;
+        invQ = 1 / q;
+        maxBias = Math.max(1, Math.max(invP, invQ));
+        biased = p != 1 || q != 1;
+    }
+    
+    private static double[] ones(int n) {
+        double[] out = new double[n];
+        Arrays.fill(out, 1);
+        return out;
+    }
+    
+    /**
+     * Fills the alias table of one row by Vose's method.
+     */
+    private void aliasTable(double[] w, int s, int d, int[] small, int[] large) {
+        double sum = 0;
+        for (int j = 0; j < d; j++) sum += w[s+j];
+        
+        int ns = 0, nl = 0;
+        for (int j = 0; j < d; j++) {
+            prob[s+j] = w[s+j] * d / sum;
+            alias[s+j] = j;
+            if (prob[s+j] < 1) small[ns++] = j; else large[nl++] = j;
+        }
+        
+        while (ns > 0 && nl > 0) {
+            int l = small[--ns], g = large[nl-1];
+            alias[s+l] = g;
+            prob[s+g] -= 1 - prob[s+l];
+            if (prob[s+g] < 1) {
+                nl--;
+                small[ns++] = g;
+            }
+        }
+        // Leftovers differ from 1 only by rounding errors
+        while (nl > 0) prob[s + large[--nl]] = 1;
+        while (ns > 0) prob[s + small[--ns]] = 1;
+    }
+    
+    /**
+     * Number of terms, from which walks start.
+     * 
+     * <p>These are the terms with at least one followed edge.</p>
+     */
+    public int startCount() {
+        return starts.length;
+    }
+    
+    /**
+     * Number of edges of the walked graph.
+     */
+    public int edgeCount() {
+        return targets.length;
+    }
+    
+    /**
+     * Generator of pseudo-random numbers (SplitMix64).
+     * 
+     * <p>Every task gets its own, seeded by its number, so the walks do
+     * not depend on the number of threads.</p>
+     */
+    private static final class Rng {
+        
+        private long state;
+        
+        Rng(long seed) {
+            state = seed;
+        }
+        
+        long next() {
+            long z = (state += 0x9E3779B97F4A7C15L);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+        
+        /** Number from {@code 0} to {@code bound-1}. */
+        int nextInt(int bound) {
+            return (int) (((next() >>> 32) * bound) >>> 32);
+        }
+        
+        /** Number from {@code [0, 1)}. */
+        double nextDouble() {
+            return (next() >>> 11) * 0x1.0p-53;
+        }
+    }
+    
+    /** Samples an edge of the node, returns the index of its target. */
+    private int step(int node, Rng rnd) {
+        int s = offsets[node];
+        int j = s + rnd.nextInt(offsets[node+1] - s);
+        return targets[rnd.nextDouble() < prob[j] ? j : s + alias[j]];
+    }
+    
+    private boolean hasEdge(int from, int to) {
+        return Arrays.binarySearch(targets, offsets[from], offsets[from+1], to) >= 0;
+    }
+    
+    /**
+     * Writes one walk into the buffer.
+     * 
+     * @return number of terms of the walk
+     */
+    private int walk(int start, int length, Rng rnd, int[] out, int pos) {
+        int prev = -1, cur = start;
+        out[pos] = ids[start];
+        int len = 1;
+        
+        while (len < length && offsets[cur+1] > offsets[cur]) {
+            int next = step(cur, rnd);
+            if (prev >= 0 && biased) {
+                for (;;) {
+                    double bias = next == prev ? invP
+                            : hasEdge(prev, next) ? 1 : invQ;
+                    if (rnd.nextDouble() * maxBias < bias) break;
+                    next = step(cur, rnd);
+                }
+            }
+            out[pos + len++] = ids[next];
+            prev = cur;
+            cur = next;
+        }
+        return len;
+    }
+    
+    /** Walks of one task, stored one after another. */
+    private static final class Batch {
+        
+        final int[] ids;
+        
+        final int[] lengths;
+        
+        Batch(int[] ids, int[] lengths) {
+            this.ids = ids;
+            this.lengths = lengths;
+        }
+    }
+    
+    /** Generates walks from a part of the shuffled terms. */
+    private final class Task implements Callable<Batch> {
+        
+        private final int[] order;
+        
+        private final int from, count, length;
+        
+        private final Rng rnd;
+        
+        Task(int[] order, int from, int count, int length, Rng rnd) {
+            this.order = order;
+            this.from = from;
+            this.count = count;
+            this.length = length;
+            this.rnd = rnd;
+        }
+        
+        @Override
+        public Batch call() {
+            int[] buf = new int[count * length];
+            int[] lengths = new int[count];
+            for (int i = 0; i < count; i++)
+                lengths[i] = walk(order[from + i], length, rnd, buf, i*length);
+            return new Batch(buf, lengths);
+        }
+    }
+    
+    /**
+     * Generates walks from every start term.
+     * 
+     * <p>Walks are generated in rounds; each round starts one walk from
+     * every term in an order shuffled by the seed. A walk ends early at
+     * a term without outgoing edges. The same seed gives the same walks
+     * regardless of the executor.</p>
+     * 
+     * @param perTerm number of walks started from every term
+     * @param length maximal number of terms of a walk
+     * @param seed seed of the random numbers
+     * @param executor runs the generation of batches of walks,
+     * or {@code null} to generate them in the calling thread
+     * @param listener receives the walks
+     * @return total number of terms of all walks
+     * @throws CancellationException if the thread is interrupted
+     */
+    public long generate(int perTerm, int length, long seed,
+            ExecutorService executor, WalkListener listener) {
+        if (perTerm < 0 || length < 1) throw new IllegalArgumentException(
+                "Cannot generate " + perTerm + " walks of length " + length + ".");
+        
+        // At most this many batches are generated ahead of the listener
+        int window = 64;
+        List<Future<Batch>> pending = new ArrayList<Future<Batch>>();
+        long total = 0;
+        long task = 0;
+        
+        try {
+            for (int r = 0; r < perTerm; r++) {
+                int[] order = shuffled(new Rng(seed - r - 1));
+                
+                for (int c = 0; c < order.length; c += CHUNK) {
+                    Task job = new Task(order, c,
+                            Math.min(CHUNK, order.length - c), length,
+                            new Rng(seed + (task++ << 32)));
+                    
+                    if (executor == null) {
+                        total += deliver(job.call(), length, listener);
+                    } else {
+                        pending.add(executor.submit(job));
+                        if (pending.size() >= window)
+                            total += deliver(pending.remove(0).get(),
+                                    length, listener);
+                    }
+                }
+            }
+            while (!pending.isEmpty())
+                total += deliver(pending.remove(0).get(), length, listener);
+            return total;
+            
+        } catch (InterruptedException ex) {
+            for (Future<Batch> f : pending) f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Random walks were interrupted.");
+            
+        } catch (ExecutionException ex) {
+            for (Future<Batch> f : pending) f.cancel(true);
+            throw new IllegalStateException(ex.getCause());
+            
+        } catch (RuntimeException ex) {
+            // Thrown by the listener
+            for (Future<Batch> f : pending) f.cancel(true);
+            throw ex;
+        }
+    }
+    
+    private int[] shuffled(Rng rnd) {
+        int[] out = starts.clone();
+        for (int i = out.length - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int x = out[i];
+            out[i] = out[j];
+            out[j] = x;
+        }
+        return out;
+    }
+    
+    private static long deliver(Batch b, int length, WalkListener listener) {
+        long total = 0;
+        for (int i = 0; i < b.lengths.length; i++) {
+            listener.onWalk(b.ids, i * length, b.lengths[i]);
+            total += b.lengths[i];
+        }
+        return total;
+    }
+    
+    /** Carries an I/O error out of a listener. */
+    private static final class WriteFailure extends RuntimeException {
+        
+        WriteFailure(IOException cause) {
+            super(cause);
+        }
+    }
+    
+    /**
+     * Writes walks in a binary format.
+     * 
+     * <p>Every walk is written as its length followed by the term IDs,
+     * all of them as big-endian 32-bit integers, as
+     * {@link DataOutputStream#writeInt(int)} does. The stream is
+     * flushed, but not closed.</p>
+     * 
+     * @return total number of terms of all walks
+     * @see #generate(int, int, long, ExecutorService, WalkListener)
+     */
+    public long write(int perTerm, int length, long seed,
+            ExecutorService executor, OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(
+                new BufferedOutputStream(out, 1 << 16));
+        try {
+            long total = generate(perTerm, length, seed, executor,
+                    new WalkListener() {
+                @Override
+                public void onWalk(int[] ids, int offset, int len) {
+                    try {
+                        data.writeInt(len);
+                        for (int i = 0; i < len; i++)
+                            data.writeInt(ids[offset + i]);
+                    } catch (IOException ex) {
+                        throw new WriteFailure(ex);
+                    }
+                }
+            });
+            data.flush();
+            return total;
+        } catch (WriteFailure ex) {
+            throw (IOException) ex.getCause();
+        }
+    }
+    
+    /**
+     * Writes walks as text, one walk per line.
+     * 
+     * <p>Term IDs are written as decimal numbers separated by spaces,
+     * which is the input expected by word2vec and similar tools. The
+     * writer is flushed, but not closed.</p>
+     * 
+     * @return total number of terms of all walks
+     * @see #generate(int, int, long, ExecutorService, WalkListener)
+     */
+    public long write(int perTerm, int length, long seed,
+            ExecutorService executor, final Writer out) throws IOException {
+        final char[] buf = new char[12 * length];
+        try {
+            long total = generate(perTerm, length, seed, executor,
+                    new WalkListener() {
+                @Override
+                public void onWalk(int[] ids, int offset, int len) {
+                    int n = 0;
+                    for (int i = 0; i < len; i++) {
+                        if (i > 0) buf[n++] = ' ';
+                        n = digits(ids[offset + i], buf, n);
+                    }
+                    buf[n++] = '\n';
+                    try {
+                        out.write(buf, 0, n);
+                    } catch (IOException ex) {
+                        throw new WriteFailure(ex);
+                    }
+                }
+            });
+            out.flush();
+            return total;
+        } catch (WriteFailure ex) {
+            throw (IOException) ex.getCause();
+        }
+    }
+    
+    /** Writes a number in decimal, returns the position after it. */
+    private static int digits(int x, char[] buf, int pos) {
+        long v = x;
+        if (v < 0) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int end = pos;
+        for (long y = v; y >= 10; y /= 10) end++;
+        for (int i = end; i >= pos; i--) {
+            buf[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        return end + 1;
+    }
+}
@@ -22,9 +22,27 @@
 package cz.cvut.felk.ida.simplyobo.ontology;
 
 import cz.cvut.felk.ida.simplyobo.parser.DocBegEndAware;
-import cz.cvut.felk.ida.simplyobo.tools.SetUtils;
+import cz.cvut.felk.ida.simplyobo.tools.Condensation;
+import cz.cvut.felk.ida.simplyobo.tools.Condensation.Successors;
+import cz.cvut.felk.ida.simplyobo.tools.ExternalClosure;
+import cz.cvut.felk.ida.simplyobo.tools.IntUnion;
+import cz.cvut.felk.ida.simplyobo.tools.SVOidx;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Provides additional inference on top of an ontology.
@@ -36,10 +54,195 @@ import java.util.List;
  * Expect a slow initialization, high memory consumption, but a bleedingly
  * fast querying.</p>
  * 
+ * <p>Relations are closed one by one, each relation after all relations it
+ * is transitive over. The closure of a single relation is computed in one
+ * pass over the condensation of its graph, so that cycles do not cost any
+ * extra rounds. Only relations, which are mutually transitive over each
+ * other, are closed by iterating to a fixpoint.</p>
+ * 
+ * <p>Other relation axioms ({@code inverse_of}, {@code is_symmetric},
+ * {@code holds_over_chain}, {@code equivalent_to_chain} and {@code is_a}
+ * between relations) are applied afterwards by a small rule engine, see
+ * {@link RuleEngine}. Relations are optionally
+ * {@link #setPropagateOverIsA(boolean) propagated} over {@code is_a}
+ * between terms.</p>
+ * 
+ * <p>Derived triples can be streamed to an {@link InferenceListener} as soon
+ * as they are found. If they are not needed for querying, switch off
+ * {@link #setRetainInferred(boolean) retaining} and the reasoner stores only
+ * the triples, which are needed for deriving others.</p>
+ * 
+ * <p>The reasoning can also run in the background, see
+ * {@link #Reasoner(ExecutorService)}. The listener is then called from the
+ * reasoning thread.</p>
+ * 
+ * <p>If the derived triples do not fit into memory, set a
+ * {@link #setMemoryBudget(long, File) memory budget}.</p>
+ * 
  * @author Radomír Černoch (radomir.cernoch at gmail.com)
  */
 public class Reasoner extends Ontology implements DocBegEndAware {
 
+    private InferenceListener listener = null;
+    
+    private boolean retain = true;
+    
+    /**
+     * Sets the receiver of all derived triples.
+     * 
+     * @param listener receiver of derived triples or {@code null}
+     */
+    public void setListener(InferenceListener listener) {
+        this.listener = listener;
+    }
+    
+    public InferenceListener getListener() {
+        return listener;
+    }
+    
+    /**
+     * Decides whether derived triples are stored in the ontology.
+     * 
+     * <p>If set to {@code false}, derived triples are only sent to the
+     * {@link #setListener(InferenceListener) listener} and queries on the
+     * ontology return only stated triples. Triples of relations, which other
+     * relations are transitive over, are stored nevertheless, because the
+     * reasoner needs them for further derivation. Other derived triples,
+     * which the rule engine works with, are removed when the reasoning
+     * ends.</p>
+     * 
+     * @param retain {@code false} to stream derived triples only
+     */
+    public void setRetainInferred(boolean retain) {
+        this.retain = retain;
+    }
+    
+    public boolean getRetainInferred() {
+        return retain;
+    }
+
+    private long budget = 0;
+    
+    private File spillDir = null;
+    
+    /**
+     * Bounds the memory used for derived triples by spilling them to disk.
+     * 
+     * <p>With a positive budget, the closure is computed by semi-naive
+     * iteration over sorted files of integer triples, see
+     * {@link ExternalClosure}. The reasoning gets slower, but only the sort
+     * buffers, whose size is derived from the budget, stay in memory.
+     * Stated triples are not affected by the budget. Combine with
+     * {@link #setRetainInferred(boolean) setRetainInferred(false)}, otherwise
+     * all derived triples end up in memory anyway.</p>
+     * 
+     * @param bytes approximate memory for sort buffers or {@code 0} to
+     * reason in memory
+     * @param dir directory for temporary files or {@code null} for the
+     * system default
+     */
+    public void setMemoryBudget(long bytes, File dir) {
+        if (bytes < 0)
+            throw new IllegalArgumentException("Budget must not be negative.");
+        
+        this.budget = bytes;
+        this.spillDir = dir;
+    }
+    
+    public long getMemoryBudget() {
+        return budget;
+    }
+
+    private boolean propagateOverIsA = false;
+    
+    /**
+     * Decides whether relations are inherited along {@code is_a}.
+     * 
+     * <p>If switched on, {@code x is_a y} and {@code y r z} imply
+     * {@code x r z}; also {@code x r y} and {@code y is_a z} imply
+     * {@code x r z}. This follows the all-some reading of OBO relations,
+     * but multiplies the number of derived triples. Off by default.</p>
+     * 
+     * @param propagate {@code true} to propagate relations over is_a
+     */
+    public void setPropagateOverIsA(boolean propagate) {
+        this.propagateOverIsA = propagate;
+    }
+    
+    public boolean getPropagateOverIsA() {
+        return propagateOverIsA;
+    }
+
+    private boolean filter = false;
+    
+    /**
+     * Decides whether the reasoned triples are fronted by a Bloom filter.
+     * 
+     * <p>The closure checks every candidate triple with
+     * {@link SVOidx#contains}; the filter answers most checks of new
+     * triples without a lookup. The filter is kept after reasoning and
+     * its hit rate can be read from the {@link #triples() index}.
+     * Off by default.</p>
+     * 
+     * @param filter {@code true} to build the filter before reasoning
+     */
+    public void setFilter(boolean filter) {
+        this.filter = filter;
+    }
+    
+    public boolean getFilter() {
+        return filter;
+    }
+
+    private final ExecutorService executor;
+    
+    private volatile Future<?> future = null;
+    
+    private volatile boolean reasoned = false;
+    
+    /** Triples stated before reasoning; only SVO if it is a copy. */
+    private volatile SVOidx<TermImpl,TypeImpl,TermImpl> stated = null;
+    
+    /** Share of {@link #progress()} taken by the rule engine. */
+    private static final double RULE_SHARE = 0.25;
+    
+    /** Share of the disk-based closure taken by loading the triples. */
+    private static final double LOAD_SHARE = 0.2;
+    
+    private volatile double progress = 0;
+    
+    /** Progress at the start of the running phase and its share. */
+    private double phaseStart = 0, phaseShare = 0;
+    
+    /** Relations, whose derived triples are not retained. */
+    private Set<TypeImpl> dropped = Collections.emptySet();
+    
+    /** Derived triples stored only until the reasoning ends. */
+    private SVOidx<TermImpl,TypeImpl,TermImpl> scratch = null;
+    
+    /**
+     * Creates an empty reasoner, which reasons as a part of parsing.
+     */
+    public Reasoner() {
+        this(null);
+    }
+    
+    /**
+     * Creates an empty reasoner, which reasons in the background.
+     * 
+     * <p>When the parsing ends, the reasoning is submitted to the executor
+     * and the parser returns immediately. Until the reasoning finishes,
+     * queries are answered from the stated triples only and
+     * {@link #isReasoned()} returns {@code false}. The reasoned triples are
+     * then swapped in at once.</p>
+     * 
+     * @param executor runs the reasoning or {@code null} to reason
+     * synchronously
+     */
+    public Reasoner(ExecutorService executor) {
+        this.executor = executor;
+    }
+    
     /**
      * Noting happens; empty method.
      */
@@ -53,34 +256,465 @@ public class Reasoner extends Ontology implements DocBegEndAware {
      */
     @Override
     public void parsingEnded() {
-        inferRelationTransitiveClosure();
+        if (executor == null) {
+            stated = new SVOidx<TermImpl,TypeImpl,TermImpl>(
+                    EnumSet.of(SVOidx.Perm.SVO), svoIdx);
+            reason(svoIdx);
+            reasoned = true;
+            return;
+        }
+        
+        stated = svoIdx;
+        final SVOidx<TermImpl,TypeImpl,TermImpl> copy
+                = new SVOidx<TermImpl,TypeImpl,TermImpl>(svoIdx);
+        future = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                reason(copy);
+                svoIdx = copy;
+                reasoned = true;
+            }
+        });
+    }
+    
+    /**
+     * Indicates whether queries are answered from the reasoned triples.
+     * 
+     * <p>While {@code false}, the ontology answers from the stated triples
+     * only, therefore entailed triples may be missing from the answers.</p>
+     * 
+     * @return {@code true} if reasoning has finished
+     */
+    public boolean isReasoned() {
+        return reasoned;
+    }
+    
+    /**
+     * Returns the background reasoning task.
+     * 
+     * <p>Use {@link Future#get()} to wait for the reasoning to finish or
+     * {@link Future#cancel(boolean)} with {@code true} to abandon it.
+     * A cancelled reasoner keeps answering from the stated triples.</p>
+     * 
+     * @return the task or {@code null} if no reasoning was submitted
+     */
+    public Future<?> future() {
+        return future;
+    }
+    
+    /**
+     * Checks the triple against the triples stated before reasoning.
+     */
+    @Override
+    boolean stated(Term s, Type v, Term o) {
+        SVOidx<TermImpl,TypeImpl,TermImpl> st = stated;
+        if (st == null || !reasoned) return true;
+        if (!(s instanceof TermImpl && v instanceof TypeImpl
+                && o instanceof TermImpl)) return false;
+        return st.contains((TermImpl) s, (TypeImpl) v, (TermImpl) o);
+    }
+    
+    /**
+     * Estimates the fraction of the reasoning, which is already done.
+     * 
+     * <p>Closing the transitive relations is weighted by the number of
+     * relations closed in memory, or by the loaded relations and the
+     * rounds of the closure on disk. The rule engine, if there are any
+     * rules, takes the remaining quarter. The number of rounds is not
+     * known in advance, so every round covers half of what is left of
+     * its phase. The estimate never decreases.</p>
+     * 
+     * @return number between 0 and 1
+     */
+    public double progress() {
+        return reasoned ? 1 : progress;
+    }
+    
+    /** Starts a phase taking the given share of the whole reasoning. */
+    private void startPhase(double share) {
+        phaseStart = progress;
+        phaseShare = share;
+    }
+    
+    /** Reports the fraction of the running phase, which is done. */
+    private void advance(double fraction) {
+        progress = phaseStart + phaseShare * Math.min(1, fraction);
+    }
+    
+    /** Fraction of a phase done after the given number of rounds. */
+    private static double rounds(int k) {
+        return 1 - Math.pow(0.5, k);
+    }
+    
+    /**
+     * Aborts the reasoning if the reasoning thread was interrupted.
+     */
+    private void checkCancelled() {
+        if (Thread.currentThread().isInterrupted())
+            throw new CancellationException("Reasoning was interrupted.");
+    }
+    
+    /**
+     * Runs the reasoning in memory or on disk, according to the budget.
+     * 
+     * <p>Transitivity axioms are handled first by a specialized algorithm.
+     * All other axioms are compiled to {@link Rule}s and evaluated by the
+     * {@link RuleEngine} afterwards, together with the transitivity axioms
+     * of the relations they can extend.</p>
+     * 
+     * @param idx triples to be closed
+     */
+    private void reason(final SVOidx<TermImpl,TypeImpl,TermImpl> idx) {
+        
+        if (filter) idx.setFilter(true);
+        List<Rule<TypeImpl>> rules = compileRules();
+        progress = 0;
+        startPhase(rules.isEmpty() ? 1 : 1 - RULE_SHARE);
+        
+        // Relations, which may get new triples from the rules
+        Set<TypeImpl> affected = new HashSet<TypeImpl>();
+        for (Rule<TypeImpl> rule : rules) affected.add(rule.head);
+        for (boolean grown = true; grown; ) {
+            grown = false;
+            for (TypeImpl r : types.all())
+                if (!affected.contains(r) && intersects(r.trOver, affected))
+                    grown = affected.add(r) || grown;
+        }
+        
+        // The rule engine needs their triples stored
+        Set<TypeImpl> keep = new HashSet<TypeImpl>(affected);
+        for (Rule<TypeImpl> rule : rules) keep.addAll(rule.body());
+        
+        // Derived triples of the others are removed once reasoning ends
+        dropped = new HashSet<TypeImpl>();
+        if (!retain) {
+            dropped.addAll(types.all());
+            for (TypeImpl r : types.all()) dropped.removeAll(r.trOver);
+        }
+        scratch = new SVOidx<TermImpl,TypeImpl,TermImpl>(
+                EnumSet.of(SVOidx.Perm.SVO));
+        try {
+            infer(idx, rules, affected, keep);
+        } finally {
+            idx.removeAll(scratch);
+            scratch = null;
+        }
+    }
+    
+    /**
+     * Runs the transitive closure and then the rule engine.
+     */
+    private void infer(final SVOidx<TermImpl,TypeImpl,TermImpl> idx,
+            List<Rule<TypeImpl>> rules, Set<TypeImpl> affected,
+            Set<TypeImpl> keep) {
+        if (budget > 0)
+            inferExternalClosure(idx, keep);
+        else
+            inferRelationTransitiveClosure(idx, keep);
+        advance(1);
+        
+        if (rules.isEmpty()) return;
+        startPhase(RULE_SHARE);
+        
+        for (TypeImpl r : affected) {
+            if (r.trans)
+                rules.add(closedRule(r).then(r, false).then(r, false));
+            for (TypeImpl q : r.trOver)
+                rules.add(closedRule(r).then(r, false).then(q, false));
+        }
+        
+        new RuleEngine<TermImpl,TypeImpl>(idx, subTerms, supTerms, rules)
+                .run(new RuleEngine.Sink<TermImpl,TypeImpl>() {
+            @Override
+            public void add(TermImpl s, TypeImpl v, TermImpl o) {
+                if (dropped.contains(v)) scratch.add(s, v, o);
+                if (listener != null) listener.onInferred(s, v, o);
+            }
+            
+            @Override
+            public void round(int k) {
+                advance(rounds(k));
+            }
+        });
+        advance(1);
+    }
+    
+    private static boolean intersects(Set<?> a, Set<?> b) {
+        for (Object x : a) if (b.contains(x)) return true;
+        return false;
+    }
+    
+    private static Rule<TypeImpl> closedRule(TypeImpl head) {
+        Rule<TypeImpl> rule = new Rule<TypeImpl>(head, false);
+        rule.closed = true;
+        return rule;
+    }
+    
+    /**
+     * Translates relation axioms other than transitivity into rules.
+     */
+    private List<Rule<TypeImpl>> compileRules() {
+        List<Rule<TypeImpl>> rules = new ArrayList<Rule<TypeImpl>>();
+        
+        for (TypeImpl r : types.all()) {
+            
+            // x r y -> y r x
+            if (r.symm)
+                rules.add(new Rule<TypeImpl>(r, true).then(r, false));
+            
+            // x r y -> y r' x, and vice versa
+            for (TypeImpl inv : r.inverse) {
+                rules.add(new Rule<TypeImpl>(inv, true).then(r, false));
+                rules.add(new Rule<TypeImpl>(r, true).then(inv, false));
+            }
+            
+            // x p y, y q z -> x r z
+            for (List<TypeImpl> chain : r.chains)
+                rules.add(new Rule<TypeImpl>(r, false).then(chain));
+            
+            // x r y, r is_a p -> x p y
+            if (subTypes.containsKey(r))
+                for (TypeImpl p : subTypes.get(r))
+                    rules.add(new Rule<TypeImpl>(p, false).then(r, false));
+            
+            // x is_a y, y r z -> x r z and x r y, y is_a z -> x r z
+            if (propagateOverIsA) {
+                rules.add(new Rule<TypeImpl>(r, false)
+                        .then(null, false).then(r, false));
+                rules.add(new Rule<TypeImpl>(r, false)
+                        .then(r, false).then(null, false));
+            }
+        }
+        return rules;
+    }
+    
+    /**
+     * Infers transitive axioms using sorted files on disk.
+     * 
+     * @param idx triples to be closed
+     * @param keep relations, whose triples are stored in any case
+     */
+    private void inferExternalClosure(
+            final SVOidx<TermImpl,TypeImpl,TermImpl> idx,
+            final Set<TypeImpl> keep) {
+        
+        final List<TypeImpl> vs = new ArrayList<TypeImpl>(idx.allV());
+        Map<TypeImpl,Integer> vNum = new HashMap<TypeImpl,Integer>();
+        for (int i = 0; i < vs.size(); i++) vNum.put(vs.get(i), i);
+        
+        boolean[][] rules = new boolean[vs.size()][vs.size()];
+        Set<TypeImpl> used = new HashSet<TypeImpl>();
+        for (TypeImpl r : vs) {
+            int ri = vNum.get(r);
+            for (TypeImpl q : r.trOver) {
+                Integer qi = vNum.get(q);
+                if (qi == null) continue;
+                rules[ri][qi] = true;
+                used.add(r); used.add(q);
+            }
+            if (r.trans) {
+                rules[ri][ri] = true;
+                used.add(r);
+            }
+        }
+        
+        int capacity = (int) Math.max(1, Math.min(budget / 24,
+                                                  Integer.MAX_VALUE / 3));
+        ExternalClosure closure
+                = new ExternalClosure(rules, spillDir, capacity);
+        
+        try {
+            int loaded = 0;
+            for (TypeImpl v : used) {
+                for (TermImpl s : idx.getSbyV(v))
+                for (TermImpl o : idx.getO(s, v))
+                    closure.add(s.id(), vNum.get(v), o.id());
+                advance(LOAD_SHARE * ++loaded / used.size());
+            }
+            
+            closure.close(new ExternalClosure.Sink() {
+                @Override
+                public void add(int s, int v, int o) {
+                    TypeImpl r = vs.get(v);
+                    inferred(idx, terms.get(s), r, terms.get(o),
+                             retain || keep.contains(r));
+                }
+                
+                @Override
+                public void round(int k) {
+                    advance(LOAD_SHARE + (1 - LOAD_SHARE) * rounds(k));
+                }
+            });
+            
+        } catch (InterruptedIOException ex) {
+            throw new CancellationException("Reasoning was interrupted.");
+            
+        } catch (IOException ex) {
+            throw new IllegalStateException(
+                    "Cannot spill triples to disk.", ex);
+            
+        } finally {
+            closure.discard();
+        }
     }
     
     /**
      * Infers transitive axioms.
+     * 
+     * @param idx triples to be closed
+     * @param keep relations, whose triples are stored in any case
+     */
+    private void inferRelationTransitiveClosure(
+            SVOidx<TermImpl,TypeImpl,TermImpl> idx, Set<TypeImpl> keep) {
+        
+        // Relation 'r' depends on 'q' if 'r' is transitive over 'q'
+        Condensation<TypeImpl> deps = new Condensation<TypeImpl>(
+                idx.allV(), new Successors<TypeImpl>() {
+            @Override
+            public Iterable<TypeImpl> of(TypeImpl r) {
+                return r.trOver;
+            }
+        });
+        
+        // Relations needed for deriving other relations must be stored
+        Set<TypeImpl> needed = new HashSet<TypeImpl>(keep);
+        for (int c = 0; c < deps.size(); c++)
+        for (int d : deps.successors(c))
+            needed.addAll(deps.members(d));
+        
+        for (int c = 0; c < deps.size(); c++) {
+            List<TypeImpl> rs = deps.members(c);
+            
+            if (rs.size() == 1) {
+                TypeImpl r = rs.get(0);
+                inferClosure(idx, r, retain || needed.contains(r));
+            } else
+                inferFixpoint(idx, rs);
+            
+            advance((c + 1.0) / deps.size());
+        }
+    }
+    
+    /**
+     * Records a derived triple and notifies the listener.
+     */
+    private void inferred(SVOidx<TermImpl,TypeImpl,TermImpl> idx,
+            TermImpl x, TypeImpl r, TermImpl z, boolean store) {
+        if (store) {
+            idx.add(x, r, z);
+            if (dropped.contains(r)) scratch.add(x, r, z);
+        }
+        if (listener != null) listener.onInferred(x, r, z);
+    }
+    
+    /**
+     * Closes a single relation, whose dependencies are already closed.
+     * 
+     * <p>Relation {@code r} holds between {@code x} and {@code z} iff there
+     * is an {@code r}-edge from {@code x} to some {@code y} and {@code z} can
+     * be reached from {@code y} using the relations {@code r} is transitive
+     * over (and {@code r} itself, if it is transitive). The reachable sets
+     * are computed bottom-up in the condensation of that graph.</p>
+     * 
+     * @param idx triples to be closed
+     * @param store {@code false} if derived triples are only streamed
      */
-    private void inferRelationTransitiveClosure() {
+    private void inferClosure(final SVOidx<TermImpl,TypeImpl,TermImpl> idx,
+            TypeImpl r, boolean store) {
+        
+        final List<TypeImpl> steps = new ArrayList<TypeImpl>(r.trOver);
+        if (r.trans && !steps.contains(r)) steps.add(r);
+        if (steps.isEmpty()) return;
+        
+        Condensation<TermImpl> g = new Condensation<TermImpl>(
+                idx.getObyV(r), new Successors<TermImpl>() {
+            @Override
+            public Iterable<TermImpl> of(TermImpl y) {
+                if (steps.size() == 1) return idx.getO(y, steps.get(0));
+                
+                List<TermImpl> out = new ArrayList<TermImpl>();
+                for (TypeImpl q : steps) out.addAll(idx.getO(y, q));
+                return out;
+            }
+        });
+        
+        // Components reachable from each component, as sorted arrays
+        int[][] reach = new int[g.size()][];
+        IntUnion union = new IntUnion();
+        int[] buf = new int[16];
+        for (int c = 0; c < g.size(); c++) {
+            union.clear();
+            union.add(new int[] {c});
+            for (int d : g.successors(c)) union.add(reach[d]);
+            
+            int n = 0;
+            while (union.hasNext()) {
+                if (n == buf.length) buf = Arrays.copyOf(buf, 2*n);
+                buf[n++] = union.next();
+            }
+            reach[c] = Arrays.copyOf(buf, n);
+        }
+        
+        for (TermImpl x : new ArrayList<TermImpl>(idx.getSbyV(r))) {
+            checkCancelled();
+            
+            union.clear();
+            for (TermImpl y : idx.getO(x, r))
+                union.add(reach[g.component(y)]);
+            
+            while (union.hasNext())
+            for (TermImpl z : g.members(union.next()))
+                if (! idx.contains(x, r, z))
+                    inferred(idx, x, r, z, store);
+        }
+    }
+    
+    /**
+     * Closes relations, which are transitive over each other.
+     * 
+     * <p>Derived triples are always stored, because the next round of the
+     * iteration needs them.</p>
+     * 
+     * @param idx triples to be closed
+     */
+    private void inferFixpoint(SVOidx<TermImpl,TypeImpl,TermImpl> idx,
+            Collection<TypeImpl> rs) {
         
         List<TermImpl> ss = new ArrayList<TermImpl>();
         List<TypeImpl> vs = new ArrayList<TypeImpl>();
         List<TermImpl> os = new ArrayList<TermImpl>();
+        
+        Map<TypeImpl,List<TypeImpl>> steps
+                = new HashMap<TypeImpl,List<TypeImpl>>();
+        for (TypeImpl r : rs) {
+            List<TypeImpl> qs = new ArrayList<TypeImpl>(r.trOver);
+            if (r.trans && !qs.contains(r)) qs.add(r);
+            steps.put(r, qs);
+        }
 
         do {
+            checkCancelled();
             ss.clear(); vs.clear(); os.clear();
             
-            for (TypeImpl r : svoIdx.allV())
-            for (TypeImpl q : r.trans ? SetUtils.merge(r.trOver, r) : r.trOver)
-            for (TermImpl y : SetUtils.intersection(
-                    svoIdx.getObyV(r), svoIdx.getSbyV(q)))
+            for (TypeImpl r : rs)
+            for (TypeImpl q : steps.get(r)) {
+                // Joins on y, iterating the smaller side
+                Set<TermImpl> objs = idx.getObyV(r), subs = idx.getSbyV(q);
+                boolean fewer = objs.size() <= subs.size();
+                Set<TermImpl> probed = fewer ? subs : objs;
                 
-            for (TermImpl x : svoIdx.getS(r, y))
-            for (TermImpl z : svoIdx.getO(y, q))
-            if (! svoIdx.contains(x, r, z)) {
-                ss.add(x); vs.add(r); os.add(z);
+                for (TermImpl y : fewer ? objs : subs)
+                if (probed.contains(y))
+                for (TermImpl x : idx.getS(r, y))
+                for (TermImpl z : idx.getO(y, q))
+                if (! idx.contains(x, r, z)) {
+                    ss.add(x); vs.add(r); os.add(z);
+                }
             }
 
             for (int i = 0; i < ss.size(); i++)
-                svoIdx.add(ss.get(i), vs.get(i), os.get(i));
+                if (! idx.contains(ss.get(i), vs.get(i), os.get(i)))
+                    inferred(idx, ss.get(i), vs.get(i), os.get(i), true);
             
         } while (!ss.isEmpty());
     }
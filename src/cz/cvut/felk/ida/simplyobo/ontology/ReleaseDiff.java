@@ -0,0 +1,497 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.parser.DocBegEndAware;
+import cz.cvut.felk.ida.simplyobo.parser.LineByLineListener;
+import cz.cvut.felk.ida.simplyobo.parser.LineByLineParser;
+import cz.cvut.felk.ida.simplyobo.tools.SVOidx;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Structural differences between two releases of an ontology.
+ * 
+ * <p>Each release is reduced to a {@link Snapshot}: term IDs and names
+ * sorted by ID and edges packed into sorted {@code long}s. The snapshots
+ * are compared by a merge-join, so the comparison makes a single pass
+ * over both and allocates nothing but the reported names.</p>
+ * 
+ * <p>Typical usage looks like:
+ * <pre>
+ * Snapshot old = new Snapshot(new FileReader("go-old.obo"));
+ * Snapshot cur = new Snapshot(new FileReader("go-new.obo"));
+ * ReleaseDiff.compare(old, cur, listener);
+ * </pre>
+ * Snapshots of two reasoners taken by {@link Snapshot#of(Ontology)}
+ * also contain the inferred triples. They are kept apart from the stated
+ * edges, so that comparing the snapshots reports changes of inferred
+ * triples by their own callbacks.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public final class ReleaseDiff {
+    
+    private ReleaseDiff() {}
+    
+    /** Name of the type of {@code is_a} edges. */
+    private static final String IS_A = "is_a";
+    
+    /** Bits of the packed edge reserved for one term ID. */
+    private static final int ID_BITS = 24;
+    
+    /** Bits of the packed edge reserved for the relation. */
+    private static final int TYPE_BITS = 16;
+    
+    /**
+     * Terms and edges of one release of the ontology.
+     * 
+     * <p>Edges are packed as {@code from, type, to} into a {@code long},
+     * with relations numbered in the alphabetical order of their IDs.
+     * Term IDs must therefore be below 2^24 (true for GO IDs) and there
+     * may be at most 2^16 relations. Stated and inferred edges are kept
+     * in two sorted arrays. Snapshots are immutable.</p>
+     */
+    public static final class Snapshot {
+        
+        private static final int MAGIC = 0x4f424f32;
+        
+        private final int[] ids;
+        
+        private final String[] names;
+        
+        /** Relation IDs in alphabetical order. */
+        private final String[] types;
+        
+        private final long[] edges;
+        
+        private final long[] inferred;
+        
+        private Snapshot(int[] ids, String[] names, String[] types,
+                long[] edges, long[] inferred) {
+            this.ids = ids;
+            this.names = names;
+            this.types = types;
+            this.edges = edges;
+            this.inferred = inferred;
+        }
+        
+        /**
+         * Reads the stated terms and edges of an OBO file.
+         * 
+         * <p>Only the {@code id}, {@code name}, {@code is_a} and
+         * {@code relationship} tags of terms are kept.</p>
+         * 
+         * @throws IOException if the Reader cannot be read
+         */
+        public Snapshot(Reader obo) throws IOException {
+            Collector c = new Collector();
+            new LineByLineParser(c).parse(obo);
+            Snapshot s = c.build();
+            ids = s.ids;
+            names = s.names;
+            types = s.types;
+            edges = s.edges;
+            inferred = s.inferred;
+        }
+        
+        /**
+         * Takes the terms and edges of an ontology.
+         * 
+         * <p>Edges are the {@code is_a} edges and all triples in the index
+         * of the ontology. Triples inferred by a {@link Reasoner} are kept
+         * as inferred edges.</p>
+         */
+        public static Snapshot of(Ontology onto) {
+            Collector c = new Collector();
+            for (Term t : onto.allTerms()) {
+                c.term(t.id(), t.name());
+                for (Term p : t.isA()) c.edge(t.id(), IS_A, p.id(), false);
+            }
+            triples(onto, onto.triples(), c);
+            return c.build();
+        }
+        
+        private static <S extends Term, V extends Type, O extends Term>
+                void triples(Ontology onto, SVOidx<S,V,O> idx, Collector c) {
+            for (V v : idx.allV())
+                for (S s : idx.getSbyV(v))
+                    for (O o : idx.getO(s, v))
+                        c.edge(s.id(), v.id(), o.id(), !onto.stated(s, v, o));
+        }
+        
+        /**
+         * Number of terms.
+         */
+        public int terms() {
+            return ids.length;
+        }
+        
+        /**
+         * Number of stated edges.
+         */
+        public int edges() {
+            return edges.length;
+        }
+        
+        /**
+         * Number of inferred edges.
+         */
+        public int inferredEdges() {
+            return inferred.length;
+        }
+        
+        /**
+         * Writes the snapshot in a binary format.
+         * 
+         * @see #read(InputStream)
+         */
+        public void write(OutputStream out) throws IOException {
+            DataOutputStream d = new DataOutputStream(out);
+            d.writeInt(MAGIC);
+            d.writeInt(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                d.writeInt(ids[i]);
+                d.writeBoolean(names[i] != null);
+                if (names[i] != null) d.writeUTF(names[i]);
+            }
+            d.writeInt(types.length);
+            for (String t : types) d.writeUTF(t);
+            d.writeInt(edges.length);
+            for (long e : edges) d.writeLong(e);
+            d.writeInt(inferred.length);
+            for (long e : inferred) d.writeLong(e);
+            d.flush();
+        }
+        
+        /**
+         * Reads a snapshot written by {@link #write(OutputStream)}.
+         * 
+         * @throws IOException if the stream cannot be read or is not
+         * a snapshot
+         */
+        public static Snapshot read(InputStream in) throws IOException {
+            DataInputStream d = new DataInputStream(in);
+            if (d.readInt() != MAGIC)
+                throw new IOException("Not an ontology snapshot.");
+            int n = d.readInt();
+            int[] ids = new int[n];
+            String[] names = new String[n];
+            for (int i = 0; i < n; i++) {
+                ids[i] = d.readInt();
+                names[i] = d.readBoolean() ? d.readUTF() : null;
+            }
+            String[] types = new String[d.readInt()];
+            for (int i = 0; i < types.length; i++) types[i] = d.readUTF();
+            long[] edges = new long[d.readInt()];
+            for (int i = 0; i < edges.length; i++) edges[i] = d.readLong();
+            long[] inferred = new long[d.readInt()];
+            for (int i = 0; i < inferred.length; i++) inferred[i] = d.readLong();
+            return new Snapshot(ids, names, types, edges, inferred);
+        }
+        
+        private static int from(long e) {
+            return (int) (e >>> (ID_BITS + TYPE_BITS));
+        }
+        
+        private String type(long e) {
+            return types[(int) (e >>> ID_BITS) & ((1 << TYPE_BITS) - 1)];
+        }
+        
+        private static int to(long e) {
+            return (int) e & ((1 << ID_BITS) - 1);
+        }
+    }
+    
+    /** Accumulates terms and edges in any order. */
+    private static final class Collector
+            implements LineByLineListener, DocBegEndAware {
+        
+        private final List<Integer> termIds = new ArrayList<Integer>();
+        
+        private final List<String> termNames = new ArrayList<String>();
+        
+        private final Map<String,Integer> typeIds
+                = new HashMap<String,Integer>();
+        
+        private final List<String> typeNames = new ArrayList<String>();
+        
+        private long[] edges = new long[1024];
+        
+        private int n = 0;
+        
+        private long[] inferred = new long[16];
+        
+        private int derived = 0;
+        
+        // State of the stanza being parsed
+        
+        private boolean inTerm = false;
+        
+        private int id = -1;
+        
+        private String name = null;
+        
+        private final List<String> pendingTypes = new ArrayList<String>();
+        
+        private final List<Integer> pendingTargets = new ArrayList<Integer>();
+        
+        void term(int id, String name) {
+            if (id < 0 || id >= 1 << ID_BITS) throw new IllegalArgumentException(
+                    "Term ID " + id + " is too large for a snapshot.");
+            termIds.add(id);
+            termNames.add(name);
+        }
+        
+        void edge(int from, String type, int to, boolean isInferred) {
+            if (from < 0 || from >= 1 << ID_BITS || to < 0 || to >= 1 << ID_BITS)
+                throw new IllegalArgumentException("Term ID " + from + " or "
+                        + to + " is too large for a snapshot.");
+            Integer t = typeIds.get(type);
+            if (t == null) {
+                t = typeNames.size();
+                if (t >= 1 << TYPE_BITS) throw new IllegalArgumentException(
+                        "Too many relations for a snapshot.");
+                typeIds.put(type, t);
+                typeNames.add(type);
+            }
+            long e = ((long) from << (ID_BITS + TYPE_BITS))
+                    | ((long) t << ID_BITS) | to;
+            if (isInferred) {
+                if (derived == inferred.length)
+                    inferred = Arrays.copyOf(inferred, 2*derived);
+                inferred[derived++] = e;
+            } else {
+                if (n == edges.length) edges = Arrays.copyOf(edges, 2*n);
+                edges[n++] = e;
+            }
+        }
+        
+        private static int goId(String val) {
+            val = val.trim();
+            if (!val.startsWith("GO:")) return -1;
+            int id = 0, i = 3;
+            for (; i < val.length(); i++) {
+                char c = val.charAt(i);
+                if (c < '0' || c > '9') break;
+                id = 10*id + (c - '0');
+            }
+            return i == 3 ? -1 : id;
+        }
+        
+        private void endStanza() {
+            if (inTerm && id >= 0) {
+                term(id, name);
+                for (int i = 0; i < pendingTypes.size(); i++)
+                    edge(id, pendingTypes.get(i), pendingTargets.get(i), false);
+            }
+            inTerm = false;
+            id = -1;
+            name = null;
+            pendingTypes.clear();
+            pendingTargets.clear();
+        }
+        
+        @Override
+        public void onStanza(String stanza) {
+            endStanza();
+            inTerm = "Term".equals(stanza);
+        }
+        
+        @Override
+        public void onTagValue(String tag, String value) {
+            if (!inTerm) return;
+            
+            if ("id".equals(tag)) {
+                id = goId(value);
+            } else if ("name".equals(tag)) {
+                name = value.trim();
+            } else if (IS_A.equals(tag)) {
+                int to = goId(value);
+                if (to < 0) return;
+                pendingTypes.add(IS_A);
+                pendingTargets.add(to);
+            } else if ("relationship".equals(tag)) {
+                int space = value.indexOf(' ');
+                int to = space < 0 ? -1 : goId(value.substring(space + 1));
+                if (to < 0) return;
+                pendingTypes.add(value.substring(0, space));
+                pendingTargets.add(to);
+            }
+        }
+        
+        @Override
+        public void parsingBegun() {}
+        
+        @Override
+        public void parsingEnded() {
+            endStanza();
+        }
+        
+        /** Sorts terms by ID and renumbers relations alphabetically. */
+        Snapshot build() {
+            int m = termIds.size();
+            long[] order = new long[m];
+            for (int i = 0; i < m; i++)
+                order[i] = ((long) termIds.get(i) << 32) | i;
+            Arrays.sort(order);
+            
+            int[] ids = new int[m];
+            String[] names = new String[m];
+            int k = 0;
+            for (int i = 0; i < m; i++) {
+                int tid = (int) (order[i] >>> 32);
+                if (k > 0 && ids[k-1] == tid) continue;
+                ids[k] = tid;
+                names[k++] = termNames.get((int) order[i]);
+            }
+            
+            String[] types = typeNames.toArray(new String[typeNames.size()]);
+            Arrays.sort(types);
+            int[] rank = new int[types.length];
+            for (int r = 0; r < types.length; r++)
+                rank[typeIds.get(types[r])] = r;
+            
+            return new Snapshot(Arrays.copyOf(ids, k), Arrays.copyOf(names, k),
+                    types, pack(edges, n, rank),
+                    pack(inferred, derived, rank));
+        }
+        
+        /** Renumbers relations of edges, sorts them and drops duplicates. */
+        private static long[] pack(long[] edges, int n, int[] rank) {
+            long mask = (1L << TYPE_BITS) - 1;
+            long[] packed = new long[n];
+            for (int i = 0; i < n; i++) {
+                long e = edges[i];
+                int t = (int) ((e >>> ID_BITS) & mask);
+                packed[i] = (e & ~(mask << ID_BITS)) | ((long) rank[t] << ID_BITS);
+            }
+            Arrays.sort(packed);
+            int u = 0;
+            for (int i = 0; i < n; i++)
+                if (u == 0 || packed[u-1] != packed[i]) packed[u++] = packed[i];
+            return Arrays.copyOf(packed, u);
+        }
+    }
+    
+    private static boolean same(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+    
+    /**
+     * Compares two releases.
+     * 
+     * <p>Terms are reported first, then stated edges and inferred edges
+     * last.</p>
+     * 
+     * @param before the old release
+     * @param after the new release
+     * @param listener receives the changes
+     */
+    public static void compare(Snapshot before, Snapshot after,
+            DiffListener listener) {
+        int i = 0, j = 0;
+        while (i < before.ids.length || j < after.ids.length) {
+            if (j == after.ids.length
+                    || (i < before.ids.length && before.ids[i] < after.ids[j])) {
+                listener.onTermRemoved(before.ids[i], before.names[i]);
+                i++;
+            } else if (i == before.ids.length || after.ids[j] < before.ids[i]) {
+                listener.onTermAdded(after.ids[j], after.names[j]);
+                j++;
+            } else {
+                if (!same(before.names[i], after.names[j]))
+                    listener.onTermRenamed(after.ids[j],
+                            before.names[i], after.names[j]);
+                i++;
+                j++;
+            }
+        }
+        
+        edges(before, before.edges, after, after.edges, false, listener);
+        edges(before, before.inferred, after, after.inferred, true, listener);
+    }
+    
+    /**
+     * Compares edges sorted by subject, relation name and object.
+     */
+    private static void edges(Snapshot before, long[] a,
+            Snapshot after, long[] b, boolean inferred,
+            DiffListener listener) {
+        int i = 0, j = 0;
+        while (i < a.length || j < b.length) {
+            int c;
+            if (j == b.length) c = -1;
+            else if (i == a.length) c = 1;
+            else c = compare(before, a[i], after, b[j]);
+            
+            if (c < 0) {
+                int from = Snapshot.from(a[i]), to = Snapshot.to(a[i]);
+                if (inferred)
+                    listener.onInferredRemoved(from, before.type(a[i]), to);
+                else
+                    listener.onEdgeRemoved(from, before.type(a[i]), to);
+                i++;
+            } else if (c > 0) {
+                int from = Snapshot.from(b[j]), to = Snapshot.to(b[j]);
+                if (inferred)
+                    listener.onInferredAdded(from, after.type(b[j]), to);
+                else
+                    listener.onEdgeAdded(from, after.type(b[j]), to);
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+    
+    private static int compare(Snapshot x, long e, Snapshot y, long f) {
+        int a = Snapshot.from(e), b = Snapshot.from(f);
+        if (a != b) return a < b ? -1 : 1;
+        int t = x.type(e).compareTo(y.type(f));
+        if (t != 0) return t;
+        a = Snapshot.to(e);
+        b = Snapshot.to(f);
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+    
+    /**
+     * Compares two OBO files.
+     * 
+     * @see #compare(Snapshot, Snapshot, DiffListener)
+     * @throws IOException if a Reader cannot be read
+     */
+    public static void compare(Reader before, Reader after,
+            DiffListener listener) throws IOException {
+        compare(new Snapshot(before), new Snapshot(after), listener);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Chain rule over relations, evaluated by the {@link RuleEngine}.
+ * 
+ * <p>A rule {@code x r1 v1, v1 r2 v2, ..., v(n-1) rn z -> x h z} derives
+ * the head relation {@code h} between the ends of a chain of body atoms.
+ * Each atom may be used in the inverse direction and the head may swap its
+ * subject and object. A relation {@code null} stands for {@code is_a}.
+ * All relation axioms of the OBO format can be written this way, for
+ * example {@code inverse_of} is the rule {@code x r z -> z r' x}.</p>
+ * 
+ * @param <R> relation
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+final class Rule<R> {
+    
+    final R head;
+    
+    final boolean swap;
+    
+    final List<R> rels = new ArrayList<R>();
+    
+    final List<Boolean> invs = new ArrayList<Boolean>();
+    
+    /**
+     * Indicates that the triples were closed under the rule before the
+     * rule engine started.
+     */
+    boolean closed = false;
+
+    /**
+     * Creates a rule with an empty body.
+     * 
+     * @param head derived relation
+     * @param swap {@code true} if the head is {@code z h x}
+     */
+    Rule(R head, boolean swap) {
+        this.head = head;
+        this.swap = swap;
+    }
+    
+    /**
+     * Appends an atom to the body.
+     * 
+     * @param rel relation of the atom or {@code null} for {@code is_a}
+     * @param inv {@code true} if the atom is used from object to subject
+     * @return {@code this}
+     */
+    Rule<R> then(R rel, boolean inv) {
+        rels.add(rel);
+        invs.add(inv);
+        return this;
+    }
+    
+    /**
+     * Appends atoms in the forward direction to the body.
+     */
+    Rule<R> then(List<? extends R> chain) {
+        for (R r : chain) then(r, false);
+        return this;
+    }
+    
+    /**
+     * Number of atoms in the body.
+     */
+    int size() {
+        return rels.size();
+    }
+    
+    /**
+     * Relations used in the body, without {@code is_a}.
+     */
+    List<R> body() {
+        List<R> out = new ArrayList<R>(rels);
+        out.removeAll(Collections.singleton(null));
+        return out;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < rels.size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(invs.get(i) ? "~" : "")
+              .append(rels.get(i) == null ? "is_a" : rels.get(i));
+        }
+        return sb.append(" -> ").append(swap ? "~" : "").append(head)
+                 .toString();
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.tools.MSet;
+import cz.cvut.felk.ida.simplyobo.tools.SVOidx;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Evaluates {@link Rule}s over an {@link SVOidx} by semi-naive iteration.
+ * 
+ * <p>Every rule is compiled into one join plan per body atom. When the atom
+ * is matched against the triples derived in the last round, the plan tells
+ * in which order the remaining atoms are joined. Joining to the right uses
+ * the SVO permutation of the index, joining to the left the VOS
+ * permutation. The side with the smaller estimated fan-out is joined first.
+ * </p>
+ * 
+ * <p>The first round matches all triples, but skips rules which are marked
+ * as {@link Rule#closed closed}. Later rounds match only the triples
+ * derived in the previous round. The relation {@code is_a} is read from the
+ * term hierarchy and never derived.</p>
+ * 
+ * @param <T> term
+ * @param <R> relation
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+final class RuleEngine<T,R> {
+    
+    /**
+     * Receiver of derived triples.
+     */
+    interface Sink<T,R> {
+        
+        /**
+         * Called once for every derived triple, after it was stored.
+         */
+        void add(T s, R v, T o);
+        
+        /**
+         * Called after every round of the evaluation.
+         * 
+         * @param rounds number of rounds finished so far
+         */
+        void round(int rounds);
+        
+    }
+    
+    private final SVOidx<T,R,T> idx;
+    
+    private final MSet<T,T> up;
+    
+    private final MSet<T,T> down;
+    
+    private final List<Rule<R>> rules;
+    
+    private final List<int[][]> plans = new ArrayList<int[][]>();
+    
+    private final Map<R,double[]> fanOut = new HashMap<R,double[]>();
+    
+    private SVOidx<T,R,T> next;
+
+    /**
+     * Compiles the rules.
+     * 
+     * @param idx triples, where derived triples are stored
+     * @param up {@code is_a} parents of each term
+     * @param down {@code is_a} children of each term
+     * @param rules rules to be evaluated
+     */
+    RuleEngine(SVOidx<T,R,T> idx, MSet<T,T> up, MSet<T,T> down,
+               List<Rule<R>> rules) {
+        this.idx = idx;
+        this.up = up;
+        this.down = down;
+        this.rules = rules;
+        
+        for (Rule<R> rule : rules) {
+            int n = rule.size();
+            int[][] plan = new int[n][];
+            
+            for (int i = 0; i < n; i++) {
+                plan[i] = new int[n-1];
+                int left = i, right = i, k = 0;
+                while (left > 0 || right < n-1) {
+                    boolean goRight = left == 0 || (right < n-1
+                            && estimate(rule, right+1, true)
+                            <= estimate(rule, left-1, false));
+                    plan[i][k++] = goRight ? ++right : --left;
+                }
+            }
+            plans.add(plan);
+        }
+    }
+    
+    /**
+     * Estimates the number of terms reached through one atom.
+     * 
+     * @param forward {@code true} if joining from subject to object
+     */
+    private double estimate(Rule<R> rule, int atom, boolean forward) {
+        R r = rule.rels.get(atom);
+        boolean bySubject = forward != rule.invs.get(atom);
+        
+        double[] est = fanOut.get(r);
+        if (est == null) {
+            long count = 0;
+            int subjects, objects;
+            
+            if (r == null) {
+                for (Set<T> set : up.values()) count += set.size();
+                subjects = up.size();
+                objects = down.size();
+            } else {
+                for (T s : idx.getSbyV(r)) count += idx.getO(s, r).size();
+                subjects = idx.getSbyV(r).size();
+                objects = idx.getObyV(r).size();
+            }
+            
+            est = new double[] {
+                (double) count / Math.max(1, subjects),
+                (double) count / Math.max(1, objects) };
+            fanOut.put(r, est);
+        }
+        return bySubject ? est[0] : est[1];
+    }
+    
+    /**
+     * Derives all triples entailed by the rules.
+     * 
+     * @param sink receiver of derived triples or {@code null}
+     * @return number of derived triples
+     * @throws CancellationException if the thread was interrupted
+     */
+    long run(Sink<T,R> sink) {
+        long derived = 0;
+        SVOidx<T,R,T> delta = idx;
+        boolean first = true;
+        int rounds = 0;
+        
+        do {
+            if (Thread.currentThread().isInterrupted())
+                throw new CancellationException("Reasoning was interrupted.");
+            
+            next = new SVOidx<T,R,T>();
+            
+            for (int k = 0; k < rules.size(); k++) {
+                Rule<R> rule = rules.get(k);
+                if (first && rule.closed) continue;
+                
+                for (int i = 0; i < rule.size(); i++)
+                    match(rule, plans.get(k)[i], i, delta, first);
+            }
+            
+            long added = 0;
+            for (T s : next.allS())
+            for (R v : next.getVbyS(s))
+            for (T o : next.getO(s, v)) {
+                idx.add(s, v, o);
+                if (sink != null) sink.add(s, v, o);
+                added++;
+            }
+            
+            derived += added;
+            delta = next;
+            first = false;
+            if (sink != null) sink.round(++rounds);
+            
+            if (added == 0) break;
+        } while (true);
+        
+        next = null;
+        return derived;
+    }
+    
+    /**
+     * Matches the atom {@code i} against new triples and joins the rest.
+     */
+    private void match(Rule<R> rule, int[] plan, int i,
+                       SVOidx<T,R,T> delta, boolean first) {
+        
+        R r = rule.rels.get(i);
+        boolean inv = rule.invs.get(i);
+        Object[] vars = new Object[rule.size() + 1];
+        
+        if (r == null) {
+            // The hierarchy does not change, it is new only at first
+            if (!first) return;
+            
+            for (Map.Entry<T,Set<T>> e : up.entrySet())
+            for (T parent : e.getValue()) {
+                vars[i]   = inv ? parent : e.getKey();
+                vars[i+1] = inv ? e.getKey() : parent;
+                join(rule, plan, 0, vars);
+            }
+            return;
+        }
+        
+        for (T s : delta.getSbyV(r))
+        for (T o : delta.getO(s, r)) {
+            vars[i]   = inv ? o : s;
+            vars[i+1] = inv ? s : o;
+            join(rule, plan, 0, vars);
+        }
+    }
+    
+    /**
+     * Binds the remaining variables following the plan.
+     */
+    @SuppressWarnings("unchecked")
+    private void join(Rule<R> rule, int[] plan, int step, Object[] vars) {
+        
+        if (step == plan.length) {
+            T x = (T) vars[0];
+            T z = (T) vars[vars.length - 1];
+            T s = rule.swap ? z : x;
+            T o = rule.swap ? x : z;
+            
+            if (!idx.contains(s, rule.head, o))
+                next.add(s, rule.head, o);
+            return;
+        }
+        
+        int j = plan[step];
+        boolean right = vars[j+1] == null;
+        T from = (T) (right ? vars[j] : vars[j+1]);
+        
+        for (T t : reach(rule.rels.get(j),
+                         rule.invs.get(j) == right, from)) {
+            vars[right ? j+1 : j] = t;
+            join(rule, plan, step + 1, vars);
+        }
+        vars[right ? j+1 : j] = null;
+    }
+    
+    /**
+     * Follows a relation from the given term.
+     * 
+     * @param r relation or {@code null} for {@code is_a}
+     * @param backward {@code true} to go from object to subject
+     */
+    @SuppressWarnings("unchecked")
+    private Set<T> reach(R r, boolean backward, T t) {
+        if (r == null) {
+            Set<T> out = backward ? down.get(t) : up.get(t);
+            return out == null ? Collections.EMPTY_SET : out;
+        }
+        return backward ? idx.getS(r, t) : idx.getO(t, r);
+    }
+}
@@ -0,0 +1,630 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.ontology.Traversal.Edge;
+import cz.cvut.felk.ida.simplyobo.tools.IntBitmap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Semantic similarity of terms based on information content.
+ * 
+ * <p>The information content (IC) of a term is either computed from the
+ * structure of the ontology, or from the number of annotations of every
+ * term. The similarity of two terms is derived from the IC of their most
+ * informative common ancestor (MICA).</p>
+ * 
+ * <p>Ancestors of every term are computed once, when the object is
+ * created. They are kept both as a compressed bitmap and as an array
+ * sorted by decreasing IC, so the MICA of two terms is the first
+ * ancestor of one term found in the bitmap of the other one. The
+ * object is immutable and can be shared by threads.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class Similarity {
+    
+    /**
+     * Similarity measure computed from information contents.
+     */
+    public enum Measure {
+        
+        /** IC of the MICA. */
+        RESNIK {
+            @Override
+            public double of(double a, double b, double mica) {
+                return mica;
+            }
+        },
+        
+        /** IC of the MICA relative to the IC of both terms. */
+        LIN {
+            @Override
+            public double of(double a, double b, double mica) {
+                return a + b == 0 ? 1 : 2 * mica / (a + b);
+            }
+        },
+        
+        /** Inverse of the Jiang-Conrath distance plus one. */
+        JIANG_CONRATH {
+            @Override
+            public double of(double a, double b, double mica) {
+                return 1 / (1 + Math.max(0, a + b - 2 * mica));
+            }
+        };
+        
+        /**
+         * Computes the similarity.
+         * 
+         * @param a IC of the first term
+         * @param b IC of the second term
+         * @param mica IC of their most informative common ancestor
+         */
+        public abstract double of(double a, double b, double mica);
+    }
+    
+    /**
+     * Receives blocks of a similarity matrix.
+     */
+    public interface TileListener {
+        
+        /**
+         * Called for every block of the matrix, from the thread, which
+         * started the computation.
+         * 
+         * @param row first row of the block
+         * @param col first column of the block
+         * @param rows number of rows of the block
+         * @param cols number of columns of the block
+         * @param values similarities of the block by rows; the array is
+         * not reused after the call returns
+         */
+        public void onTile(int row, int col, int rows, int cols,
+                double[] values);
+        
+    }
+    
+    /**
+     * Term found by {@link #mostSimilar(Term, int, Measure)}.
+     */
+    public static final class Match {
+        
+        private final Term term;
+        
+        private final double similarity;
+        
+        private Match(Term term, double similarity) {
+            this.term = term;
+            this.similarity = similarity;
+        }
+        
+        /** Found term. */
+        public Term term() {
+            return term;
+        }
+        
+        /** Similarity of the term to the query. */
+        public double similarity() {
+            return similarity;
+        }
+        
+        @Override
+        public String toString() {
+            return term + " " + similarity;
+        }
+    }
+    
+    private static final Comparator<Match> WORST_FIRST
+            = new Comparator<Match>() {
+        @Override
+        public int compare(Match a, Match b) {
+            return Double.compare(a.similarity, b.similarity);
+        }
+    };
+    
+    /** Rows and columns of one block of a similarity matrix. */
+    private static final int TILE = 256;
+    
+    private final Ontology onto;
+    
+    private final double[] ic;
+    
+    /** Ancestors of every term, the term itself included. */
+    private final IntBitmap[] ancestors;
+    
+    /** Ancestors of every term by decreasing IC. */
+    private final int[][] byIc;
+    
+    /**
+     * Computes the IC from the structure of the {@code is_a} hierarchy.
+     */
+    public Similarity(Ontology onto) {
+        this(onto, (Map<Term,Integer>) null, Edge.isA());
+    }
+    
+    /**
+     * Computes the IC from the structure of the ontology.
+     * 
+     * <p>The IC of a term with {@code d} descendants in an ontology with
+     * {@code n} terms is {@code 1 - log(d+1) / log(n)}, which is 0 for the
+     * root and 1 for leaves.</p>
+     * 
+     * @param onto ontology
+     * @param edges edges leading from terms to their ancestors
+     */
+    public Similarity(Ontology onto, Edge... edges) {
+        this(onto, (Map<Term,Integer>) null, edges);
+    }
+    
+    /**
+     * Computes the IC from annotation counts.
+     * 
+     * <p>An annotation of a term counts for all its ancestors too. The IC
+     * of a term is {@code -log(p)}, where {@code p} is the fraction of all
+     * annotations counted for the term. Terms without annotations get the
+     * IC of a term annotated once.</p>
+     * 
+     * @param onto ontology
+     * @param annotations number of annotations of terms; missing terms
+     * have none
+     * @param edges edges leading from terms to their ancestors
+     */
+    public Similarity(Ontology onto, Map<? extends Term,Integer> annotations,
+            Edge... edges) {
+        this(onto, annotations, null, edges);
+    }
+    
+    /**
+     * Computes the IC from annotated genes.
+     * 
+     * <p>The IC of a term is {@code -log(p)}, where {@code p} is the
+     * fraction of annotated genes, which are annotated with the term or
+     * its descendant. Ancestors follow the same edges as the annotations.
+     * Terms without genes get the IC of a term with one gene.</p>
+     */
+    public Similarity(Annotations annotations) {
+        this(annotations.ontology(), null, annotations, annotations.edges());
+    }
+    
+    private Similarity(Ontology onto, Map<? extends Term,Integer> counts,
+            Annotations genes, Edge[] edges) {
+        this.onto = onto;
+        ancestors = onto.adjacency(edges).reachable();
+        int n = ancestors.length;
+        
+        if (genes != null) ic = fromGenes(genes);
+        else if (counts != null) ic = annotated(counts);
+        else ic = structural(n);
+        
+        byIc = new int[n][];
+        for (int t = 0; t < n; t++) {
+            int[] a = ancestors[t].toArray();
+            sortByIc(a);
+            byIc[t] = a;
+        }
+    }
+    
+    private double[] structural(int n) {
+        int[] desc = new int[n];
+        for (int t = 0; t < n; t++)
+            for (int a : ancestors[t].toArray())
+                if (a != t) desc[a]++;
+        
+        double[] out = new double[n];
+        double logN = Math.log(Math.max(n, 2));
+        for (int t = 0; t < n; t++)
+            out[t] = 1 - Math.log(desc[t] + 1) / logN;
+        return out;
+    }
+    
+    private double[] annotated(Map<? extends Term,Integer> annotations) {
+        int n = ancestors.length;
+        long[] freq = new long[n];
+        long total = 0;
+        for (Map.Entry<? extends Term,Integer> e : annotations.entrySet()) {
+            int t = onto.indexOf(e.getKey());
+            if (t < 0 || t >= n || e.getValue() <= 0) continue;
+            total += e.getValue();
+            for (int a : ancestors[t].toArray()) freq[a] += e.getValue();
+        }
+        
+        double[] out = new double[n];
+        for (int t = 0; t < n; t++)
+            out[t] = -Math.log(Math.max(freq[t], 1) / (double) Math.max(total, 1));
+        return out;
+    }
+    
+    private double[] fromGenes(Annotations genes) {
+        double total = Math.max(genes.annotatedGenes(), 1);
+        double[] out = new double[ancestors.length];
+        for (int t = 0; t < out.length; t++) {
+            int c = genes.genes(onto.termAt(t)).cardinality();
+            out[t] = -Math.log(Math.max(c, 1) / total);
+        }
+        return out;
+    }
+    
+    /** Insertion sort by decreasing IC; ancestor lists are short. */
+    private void sortByIc(int[] a) {
+        for (int i = 1; i < a.length; i++) {
+            int x = a[i], j = i - 1;
+            while (j >= 0 && ic[a[j]] < ic[x]) { a[j+1] = a[j]; j--; }
+            a[j+1] = x;
+        }
+    }
+    
+    private int index(Term t) {
+        int i = onto.indexOf(t);
+        if (i < 0 || i >= ancestors.length) throw new IllegalArgumentException(
+                "Term " + t + " is not known to the similarity.");
+        return i;
+    }
+    
+    /**
+     * Information content of a term.
+     */
+    public double ic(Term t) {
+        return ic[index(t)];
+    }
+    
+    /**
+     * Ancestors of a term, the term itself included.
+     */
+    public TermSet ancestors(Term t) {
+        return new TermSet(onto, ancestors[index(t)]);
+    }
+    
+    /** Terms by increasing IC. */
+    private volatile int[] byRank = null;
+    
+    /** Descendants of every term by their position in {@link #byRank}. */
+    private volatile int[][] below = null;
+    
+    /** Computes descendants sorted by IC on the first top-k query. */
+    private synchronized void prepareTopK() {
+        if (below != null) return;
+        int n = ancestors.length;
+        
+        Integer[] boxed = new Integer[n];
+        for (int t = 0; t < n; t++) boxed[t] = t;
+        Arrays.sort(boxed, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(ic[a], ic[b]);
+            }
+        });
+        int[] order = new int[n], pos = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = boxed[i];
+            pos[order[i]] = i;
+        }
+        
+        // Descendants are the transposed ancestor relation
+        int[] count = new int[n];
+        for (int t = 0; t < n; t++)
+            for (int a : byIc[t]) count[a]++;
+        int[][] down = new int[n][];
+        for (int a = 0; a < n; a++) down[a] = new int[count[a]];
+        Arrays.fill(count, 0);
+        for (int t = 0; t < n; t++)
+            for (int a : byIc[t]) down[a][count[a]++] = pos[t];
+        for (int[] d : down) Arrays.sort(d);
+        
+        byRank = order;
+        below = down;
+    }
+    
+    /**
+     * Finds the terms most similar to a term.
+     * 
+     * <p>Ancestors of the query are visited by decreasing IC. Each of them
+     * is the MICA of the query and its descendants not met before, so their
+     * similarity is exact. Since no term has a lower IC than its ancestor,
+     * the similarity of a descendant of an ancestor {@code a} is at most
+     * {@code m.of(ic(query), ic(a), ic(a))}. The search stops when this
+     * bound falls below the k-th best similarity found, and descendants
+     * are scanned by increasing IC, so that the scan stops early too.</p>
+     * 
+     * @param query searched term, excluded from the results
+     * @param k maximal number of results
+     * @param m similarity measure
+     * @return at most {@code k} terms by decreasing similarity
+     */
+    public List<Match> mostSimilar(Term query, int k, Measure m) {
+        return mostSimilar(Collections.singleton(query), k, m);
+    }
+    
+    /**
+     * Finds the terms most similar to a set of terms.
+     * 
+     * <p>The similarity of a term to the set is its maximal similarity to
+     * a term of the set.</p>
+     * 
+     * @param query searched terms, excluded from the results
+     * @param k maximal number of results
+     * @param m similarity measure
+     * @return at most {@code k} terms by decreasing similarity
+     * @see #mostSimilar(Term, int, Measure)
+     */
+    public List<Match> mostSimilar(Collection<? extends Term> query, int k,
+            Measure m) {
+        if (k <= 0) throw new IllegalArgumentException(
+                "Number of results must be positive: " + k + ".");
+        prepareTopK();
+        int[] qs = indexes(query);
+        long[] excluded = new long[(ancestors.length + 63) >>> 6];
+        for (int q : qs) excluded[q >>> 6] |= 1L << q;
+        
+        // The best k of the maxima are among the best k of every query
+        Map<Integer,Double> best = new HashMap<Integer,Double>();
+        for (int q : qs) {
+            PriorityQueue<Match> one = search(q, k, m, excluded);
+            for (Match x : one) {
+                int t = onto.indexOf(x.term);
+                Double old = best.get(t);
+                if (old == null || old < x.similarity) best.put(t, x.similarity);
+            }
+        }
+        
+        PriorityQueue<Match> heap = new PriorityQueue<Match>(k + 1, WORST_FIRST);
+        for (Map.Entry<Integer,Double> e : best.entrySet()) {
+            heap.add(new Match(onto.termAt(e.getKey()), e.getValue()));
+            if (heap.size() > k) heap.poll();
+        }
+        
+        List<Match> out = new ArrayList<Match>(heap);
+        Collections.sort(out, Collections.reverseOrder(WORST_FIRST));
+        return out;
+    }
+    
+    private PriorityQueue<Match> search(int q, int k, Measure m,
+            long[] excluded) {
+        int[] order = byRank;
+        long[] seen = excluded.clone();
+        PriorityQueue<Match> heap = new PriorityQueue<Match>(k + 1, WORST_FIRST);
+        
+        for (int a : byIc[q]) {
+            double bound = m.of(ic[q], ic[a], ic[a]);
+            if (heap.size() == k && bound <= heap.peek().similarity) break;
+            
+            for (int r : below[a]) {
+                int c = order[r];
+                if ((seen[c >>> 6] & (1L << c)) != 0) continue;
+                seen[c >>> 6] |= 1L << c;
+                
+                double sim = m.of(ic[q], ic[c], ic[a]);
+                if (heap.size() == k) {
+                    // Later descendants have a higher IC, so no higher
+                    // similarity; they are left to lower ancestors,
+                    // which can only underestimate them
+                    if (sim <= heap.peek().similarity) break;
+                    heap.poll();
+                }
+                heap.add(new Match(onto.termAt(c), sim));
+            }
+        }
+        return heap;
+    }
+    
+    /**
+     * Finds the terms most similar to each of many terms in parallel.
+     * 
+     * @param queries searched terms
+     * @param k maximal number of results per query
+     * @param m similarity measure
+     * @param executor runs one task per query
+     * @return results of every query in the given order
+     * @throws CancellationException if the thread is interrupted
+     * @see #mostSimilar(Term, int, Measure)
+     */
+    public List<List<Match>> mostSimilar(List<? extends Term> queries,
+            final int k, final Measure m, ExecutorService executor) {
+        prepareTopK();
+        List<Callable<List<Match>>> tasks
+                = new ArrayList<Callable<List<Match>>>();
+        for (final Term q : queries)
+            tasks.add(new Callable<List<Match>>() {
+                @Override
+                public List<Match> call() {
+                    return mostSimilar(q, k, m);
+                }
+            });
+        
+        try {
+            List<List<Match>> out = new ArrayList<List<Match>>(queries.size());
+            for (Future<List<Match>> f : executor.invokeAll(tasks))
+                out.add(f.get());
+            return out;
+            
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Search was interrupted.");
+            
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+    
+    /**
+     * Ancestors of a term by decreasing IC; the array must not be changed.
+     */
+    int[] ancestorsByIc(int t) {
+        return byIc[t];
+    }
+    
+    /** IC of a term by its index. */
+    double ic(int t) {
+        return ic[t];
+    }
+    
+    /** Index of the MICA of two terms or {@code -1} if there is none. */
+    int mica(int a, int b) {
+        int[] up = byIc[a].length <= byIc[b].length ? byIc[a] : byIc[b];
+        IntBitmap other = up == byIc[a] ? ancestors[b] : ancestors[a];
+        for (int x : up) if (other.contains(x)) return x;
+        return -1;
+    }
+    
+    /** Similarity of two terms given by their indexes. */
+    double similarity(int a, int b, Measure m) {
+        int x = mica(a, b);
+        return m.of(ic[a], ic[b], x < 0 ? 0 : ic[x]);
+    }
+    
+    /**
+     * Finds the most informative common ancestor of two terms.
+     * 
+     * @return the ancestor or {@code null} if the terms have none
+     */
+    public Term mica(Term a, Term b) {
+        int x = mica(index(a), index(b));
+        return x < 0 ? null : onto.termAt(x);
+    }
+    
+    /**
+     * Similarity of two terms.
+     */
+    public double similarity(Term a, Term b, Measure m) {
+        return similarity(index(a), index(b), m);
+    }
+    
+    /**
+     * Similarity of two gene products by the best-match average.
+     * 
+     * <p>Every term of one product is matched with the most similar term
+     * of the other product; the result averages these maxima over the
+     * terms of both products.</p>
+     * 
+     * @param a terms annotating the first product
+     * @param b terms annotating the second product
+     * @return similarity or 0 if a product has no terms
+     */
+    public double bestMatchAverage(Collection<? extends Term> a,
+            Collection<? extends Term> b, Measure m) {
+        if (a.isEmpty() || b.isEmpty()) return 0;
+        int[] x = indexes(a), y = indexes(b);
+        
+        double[] rowMax = new double[x.length];
+        double[] colMax = new double[y.length];
+        Arrays.fill(rowMax, Double.NEGATIVE_INFINITY);
+        Arrays.fill(colMax, Double.NEGATIVE_INFINITY);
+        for (int i = 0; i < x.length; i++)
+        for (int j = 0; j < y.length; j++) {
+            double s = similarity(x[i], y[j], m);
+            rowMax[i] = Math.max(rowMax[i], s);
+            colMax[j] = Math.max(colMax[j], s);
+        }
+        
+        double sum = 0;
+        for (double s : rowMax) sum += s;
+        for (double s : colMax) sum += s;
+        return sum / (x.length + y.length);
+    }
+    
+    private int[] indexes(Collection<? extends Term> ts) {
+        int[] out = new int[ts.size()];
+        int k = 0;
+        for (Term t : ts) out[k++] = index(t);
+        return out;
+    }
+    
+    /**
+     * Computes the similarity of all pairs of rows and columns.
+     * 
+     * <p>The matrix is split into blocks of 256 by 256 pairs, computed in
+     * parallel. Finished blocks are passed to the listener in the order
+     * of rows, so that they can be written out without keeping the whole
+     * matrix in memory.</p>
+     * 
+     * @param rows terms of rows
+     * @param cols terms of columns
+     * @param m similarity measure
+     * @param executor computes the blocks
+     * @param listener receives the blocks
+     * @throws CancellationException if the thread is interrupted
+     */
+    public void pairwise(List<? extends Term> rows, List<? extends Term> cols,
+            final Measure m, ExecutorService executor, TileListener listener) {
+        final int[] x = indexes(rows), y = indexes(cols);
+        
+        // At most this many blocks are computed ahead of the listener
+        int window = 64;
+        List<Future<double[]>> pending = new ArrayList<Future<double[]>>();
+        List<int[]> corners = new ArrayList<int[]>();
+        
+        try {
+            for (int r = 0; r < x.length; r += TILE)
+            for (int c = 0; c < y.length; c += TILE) {
+                final int r0 = r, c0 = c;
+                final int nr = Math.min(TILE, x.length - r);
+                final int nc = Math.min(TILE, y.length - c);
+                pending.add(executor.submit(new Callable<double[]>() {
+                    @Override
+                    public double[] call() {
+                        double[] out = new double[nr * nc];
+                        for (int i = 0; i < nr; i++)
+                        for (int j = 0; j < nc; j++)
+                            out[i*nc + j] = similarity(x[r0+i], y[c0+j], m);
+                        return out;
+                    }
+                }));
+                corners.add(new int[] {r0, c0, nr, nc});
+                
+                if (pending.size() >= window) deliver(pending, corners, listener);
+            }
+            while (!pending.isEmpty()) deliver(pending, corners, listener);
+            
+        } catch (InterruptedException ex) {
+            for (Future<double[]> f : pending) f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Similarity was interrupted.");
+            
+        } catch (ExecutionException ex) {
+            for (Future<double[]> f : pending) f.cancel(true);
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+    
+    /** Waits for the oldest block and passes it to the listener. */
+    private static void deliver(List<Future<double[]>> pending,
+            List<int[]> corners, TileListener listener)
+            throws InterruptedException, ExecutionException {
+        double[] values = pending.get(0).get();
+        int[] c = corners.get(0);
+        pending.remove(0);
+        corners.remove(0);
+        listener.onTile(c[0], c[1], c[2], c[3], values);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.ontology.Traversal.Edge;
+import cz.cvut.felk.ida.simplyobo.parser.GafParser;
+import cz.cvut.felk.ida.simplyobo.tools.IntBitmap;
+import cz.cvut.felk.ida.simplyobo.tools.IntIntMap;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Maps terms to their nearest ancestors in a slim subset of the ontology.
+ * 
+ * <p>A slim term is a nearest slim ancestor of a term if it is its
+ * ancestor (or the term itself) along {@code is_a} and {@code part_of}
+ * and no other slim ancestor of the term lies below it. Nearest slim
+ * ancestors of all terms are computed when the mapper is created and
+ * stored in one array, so mapping a term copies a slice of it.</p>
+ * 
+ * <p>The mapper is immutable and can be shared by threads.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class SlimMapper {
+    
+    private final Ontology onto;
+    
+    /** Dense index of terms by their numeric ID. */
+    private final IntIntMap index;
+    
+    /** Slim ancestors of term {@code t} lie in [offsets[t], offsets[t+1]). */
+    private final int[] offsets;
+    
+    /** Dense indexes of slim ancestors. */
+    private final int[] slims;
+    
+    /** Numeric IDs of slim ancestors, parallel to {@link #slims}. */
+    private final int[] slimIds;
+    
+    /**
+     * Maps terms to the subset with the given name.
+     * 
+     * @see Ontology#subset(String)
+     */
+    public SlimMapper(Ontology onto, String subset) {
+        this(onto, onto.subset(subset));
+    }
+    
+    /**
+     * Maps terms to the given slim terms.
+     */
+    public SlimMapper(Ontology onto, TermSet slim) {
+        this.onto = onto;
+        Type partOf = onto.findType("part_of");
+        IntBitmap[] up = (partOf == null
+                ? onto.adjacency(Edge.isA())
+                : onto.adjacency(Edge.isA(), Edge.of(partOf))).reachable();
+        int n = up.length;
+        
+        index = new IntIntMap(n, -1);
+        for (Term t : onto.allTerms()) index.put(t.id(), onto.indexOf(t));
+        
+        IntBitmap s = slim.bitmap();
+        offsets = new int[n + 1];
+        int[] out = new int[Math.max(16, n)];
+        int m = 0;
+        for (int t = 0; t < n; t++) {
+            int[] cand = up[t].intersect(s).toArray();
+            for (int a : cand) {
+                boolean nearest = true;
+                for (int b : cand)
+                    if (b != a && up[b].contains(a)) { nearest = false; break; }
+                if (!nearest) continue;
+                if (m == out.length) out = Arrays.copyOf(out, 2*m);
+                out[m++] = a;
+            }
+            offsets[t+1] = m;
+        }
+        slims = Arrays.copyOf(out, m);
+        slimIds = new int[m];
+        for (int i = 0; i < m; i++) slimIds[i] = onto.termAt(slims[i]).id();
+    }
+    
+    private int index(Term t) {
+        int i = onto.indexOf(t);
+        if (i < 0 || i + 1 >= offsets.length) throw new IllegalArgumentException(
+                "Term " + t + " is not known to the mapper.");
+        return i;
+    }
+    
+    /**
+     * Returns nearest slim ancestors of a term.
+     */
+    public TermSet map(Term t) {
+        int i = index(t);
+        return new TermSet(onto, IntBitmap.of(
+                Arrays.copyOfRange(slims, offsets[i], offsets[i+1])));
+    }
+    
+    /**
+     * Maps many terms given by numeric IDs.
+     * 
+     * <p>Slim ancestors of {@code ids[i]} are written to {@code slimIds}
+     * from {@code offsets[i]} to {@code offsets[i+1]}. Unknown IDs have no
+     * slim ancestors. If the output arrays are too short, nothing is
+     * written and the required size of {@code slimIds} is returned.</p>
+     * 
+     * @param ids numeric IDs of terms, e.g. 8150 for GO:0008150
+     * @param offsets at least {@code ids.length + 1} long
+     * @param slimIds receives numeric IDs of slim ancestors
+     * @return number of slim ancestors of all terms
+     */
+    public int map(int[] ids, int[] offsets, int[] slimIds) {
+        int need = 0;
+        for (int id : ids) {
+            int t = index.get(id);
+            if (t >= 0) need += this.offsets[t+1] - this.offsets[t];
+        }
+        if (offsets.length <= ids.length || slimIds.length < need)
+            return need;
+        
+        int m = 0;
+        for (int i = 0; i < ids.length; i++) {
+            offsets[i] = m;
+            int t = index.get(ids[i]);
+            if (t < 0) continue;
+            int from = this.offsets[t], len = this.offsets[t+1] - from;
+            System.arraycopy(this.slimIds, from, slimIds, m, len);
+            m += len;
+        }
+        offsets[ids.length] = m;
+        return m;
+    }
+    
+    /**
+     * Maps a whole GAF file to the slim.
+     * 
+     * <p>Every annotation is written once for each nearest slim ancestor
+     * of its term, with the term ID replaced. Annotations of terms with
+     * no slim ancestor or missing from the ontology are dropped, and so
+     * are annotations with the {@code NOT} qualifier, which do not hold
+     * for ancestors. Comments are copied unchanged.</p>
+     * 
+     * @param gaf input file in the GAF format
+     * @param out receives the mapped file
+     * @return number of annotations written
+     * @throws IOException if reading or writing fails
+     */
+    public long map(Reader gaf, Writer out) throws IOException {
+        BufferedReader b = gaf instanceof BufferedReader
+                ? (BufferedReader) gaf : new BufferedReader(gaf);
+        int[] tabs = new int[5];
+        char[] id = {'G', 'O', ':', '0', '0', '0', '0', '0', '0', '0'};
+        long written = 0;
+        int no = 0;
+        String l;
+        while ((l = b.readLine()) != null) {
+            int term = GafParser.term(l, ++no, tabs);
+            if (term < 0) {
+                out.write(l);
+                out.write('\n');
+                continue;
+            }
+            
+            int t = index.get(term);
+            if (t < 0 || GafParser.negated(l, tabs)) continue;
+            int start = tabs[3] + 1, end = tabs[4];
+            for (int i = offsets[t]; i < offsets[t+1]; i++) {
+                int x = slimIds[i];
+                for (int d = id.length - 1; d >= 3; d--, x /= 10)
+                    id[d] = (char) ('0' + x % 10);
+                out.write(l, 0, start);
+                out.write(id);
+                out.write(l, end, l.length() - end);
+                out.write('\n');
+                written++;
+            }
+        }
+        out.flush();
+        return written;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.tools.SVOidx;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cardinalities of relations, used to plan {@link Query queries}.
+ * 
+ * <p>For every relation, the number of its triples and of distinct
+ * subjects and objects is counted. Estimates derived from them assume
+ * that triples are spread uniformly over subjects and objects.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class Statistics {
+    
+    private final SVOidx<?,?,?> source;
+    
+    /** {@link SVOidx#modifications()} of the source when counted. */
+    private final long version;
+    
+    /** Triples, subjects and objects of each relation. */
+    private final Map<Type,long[]> counts = new HashMap<Type,long[]>();
+    
+    private final long triples, subjects, objects;
+    
+    /**
+     * Counts the triples of an index.
+     * 
+     * <p>The triples are read in a single pass over the SVO permutation,
+     * which every index maintains, so no lazy permutation is built.</p>
+     * 
+     * @param idx triples of an ontology
+     */
+    @SuppressWarnings("unchecked")
+    public Statistics(SVOidx<? extends Term,? extends Type,? extends Term> idx) {
+        source = idx;
+        version = idx.modifications();
+        SVOidx<Object,Object,Object> x = (SVOidx<Object,Object,Object>) (SVOidx) idx;
+        
+        Map<Object,Set<Object>> objectsOf = new HashMap<Object,Set<Object>>();
+        Set<Object> allObjects = new HashSet<Object>();
+        long t = 0, s = 0;
+        for (Object subj : x.allS()) {
+            s++;
+            for (Object v : x.getVbyS(subj)) {
+                Set<Object> os = x.getO(subj, v);
+                long[] c = counts.get((Type) v);
+                if (c == null) {
+                    counts.put((Type) v, c = new long[3]);
+                    objectsOf.put(v, new HashSet<Object>());
+                }
+                c[0] += os.size();
+                c[1]++;
+                objectsOf.get(v).addAll(os);
+                allObjects.addAll(os);
+                t += os.size();
+            }
+        }
+        for (Map.Entry<Object,Set<Object>> e : objectsOf.entrySet())
+            counts.get((Type) e.getKey())[2] = e.getValue().size();
+        
+        triples = t;
+        subjects = s;
+        objects = allObjects.size();
+    }
+    
+    /**
+     * Checks, whether the statistics were computed from the given index.
+     */
+    boolean describes(SVOidx<?,?,?> idx) {
+        return source == idx && version == idx.modifications();
+    }
+    
+    private long count(Type v, int i) {
+        long[] c = counts.get(v);
+        return c == null ? 0 : c[i];
+    }
+    
+    /**
+     * Number of all triples.
+     */
+    public long triples() {
+        return triples;
+    }
+    
+    /**
+     * Number of triples of a relation.
+     */
+    public long triples(Type v) {
+        return count(v, 0);
+    }
+    
+    /**
+     * Number of distinct subjects of a relation.
+     */
+    public long subjects(Type v) {
+        return count(v, 1);
+    }
+    
+    /**
+     * Number of distinct objects of a relation.
+     */
+    public long objects(Type v) {
+        return count(v, 2);
+    }
+    
+    /**
+     * Estimates the number of triples matching a pattern.
+     * 
+     * @param v relation or {@code null} for any relation
+     * @param sBound whether the subject is known
+     * @param oBound whether the object is known
+     * @return expected number of matches, at least 1 if the relation
+     * has any triples
+     */
+    public double estimate(Type v, boolean sBound, boolean oBound) {
+        double t = v == null ? triples   : triples(v);
+        double s = v == null ? subjects  : subjects(v);
+        double o = v == null ? objects   : objects(v);
+        if (t == 0) return 0;
+        
+        double e = t;
+        if (sBound) e /= s;
+        if (oBound) e /= o;
+        return Math.max(e, 1);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.tools.IntBitmap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable set of terms of one ontology.
+ * 
+ * <p>Every term of an ontology has a dense index. A TermSet is a
+ * compressed bitmap of these indexes, so unions, intersections and
+ * differences of big sets are computed word by word, without hashing
+ * single terms. Use {@link #asSet()} where a {@link Set} is needed.</p>
+ * 
+ * <p>Sets can be combined only if they come from the same ontology.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public final class TermSet implements Iterable<Term> {
+    
+    private final Ontology onto;
+    
+    private final IntBitmap bits;
+    
+    TermSet(Ontology onto, IntBitmap bits) {
+        this.onto = onto;
+        this.bits = bits;
+    }
+    
+    private IntBitmap bits(TermSet other) {
+        if (other.onto != onto) throw new IllegalArgumentException(
+                "Term sets come from different ontologies.");
+        return other.bits;
+    }
+    
+    /**
+     * Terms contained in this or the other set.
+     */
+    public TermSet union(TermSet other) {
+        return new TermSet(onto, bits.union(bits(other)));
+    }
+    
+    /**
+     * Terms contained in both sets.
+     */
+    public TermSet intersect(TermSet other) {
+        return new TermSet(onto, bits.intersect(bits(other)));
+    }
+    
+    /**
+     * Terms contained in this set, but not in the other one.
+     */
+    public TermSet andNot(TermSet other) {
+        return new TermSet(onto, bits.andNot(bits(other)));
+    }
+    
+    /**
+     * Number of terms in the set.
+     */
+    public int cardinality() {
+        return bits.cardinality();
+    }
+    
+    /**
+     * Number of terms in both sets; the intersection is not built.
+     */
+    public int intersectCardinality(TermSet other) {
+        return bits.intersectCardinality(bits(other));
+    }
+    
+    public boolean isEmpty() {
+        return bits.isEmpty();
+    }
+    
+    /**
+     * Checks, whether the set contains the given term.
+     */
+    public boolean contains(Term t) {
+        int i = onto.indexOf(t);
+        return i >= 0 && bits.contains(i);
+    }
+    
+    /**
+     * Returns the bitmap of term indexes.
+     */
+    public IntBitmap bitmap() {
+        return bits;
+    }
+    
+    @Override
+    public Iterator<Term> iterator() {
+        return new Iterator<Term>() {
+            int next = bits.next(0);
+            
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Term next() {
+                if (next < 0) throw new NoSuchElementException();
+                Term t = onto.termAt(next);
+                next = bits.next(next + 1);
+                return t;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
+    /**
+     * Returns an unmodifiable view of the set.
+     */
+    public Set<Term> asSet() {
+        return new AbstractSet<Term>() {
+            @Override
+            public Iterator<Term> iterator() {
+                return TermSet.this.iterator();
+            }
+
+            @Override
+            public int size() {
+                return cardinality();
+            }
+            
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Term && TermSet.this.contains((Term) o);
+            }
+        };
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof TermSet)) return false;
+        TermSet other = (TermSet) obj;
+        return onto == other.onto && bits.equals(other.bits);
+    }
+    
+    @Override
+    public int hashCode() {
+        return bits.hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return asSet().toString();
+    }
+}
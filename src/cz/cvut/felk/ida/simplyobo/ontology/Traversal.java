@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.tools.CsrGraph;
+import cz.cvut.felk.ida.simplyobo.tools.IntBitmap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Walks the terms of an ontology along chosen kinds of edges.
+ * 
+ * <p>The edges are copied into a {@link CsrGraph} over the dense indexes
+ * of terms when the traversal is created; later changes of the ontology
+ * are not seen. The walks themselves allocate nothing: the queue, the
+ * stack and the visited bitset are kept and reused by the next walk.
+ * Hence one instance must not be used by several threads at once;
+ * create one per thread instead.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class Traversal {
+    
+    /**
+     * Kind of edges followed by a traversal.
+     */
+    public static final class Edge {
+        
+        private final Type type;
+        
+        private final boolean inverse;
+        
+        private Edge(Type type, boolean inverse) {
+            this.type = type;
+            this.inverse = inverse;
+        }
+        
+        /** Relation of the edges or {@code null} for {@code is_a}. */
+        Type type() {
+            return type;
+        }
+        
+        /** Whether the edges lead from objects to subjects. */
+        boolean inverted() {
+            return inverse;
+        }
+        
+        /**
+         * Edges from a term to its {@code is_a} parents.
+         */
+        public static Edge isA() {
+            return new Edge(null, false);
+        }
+        
+        /**
+         * Edges from a subject of a relation to its objects.
+         */
+        public static Edge of(Type type) {
+            if (type == null) throw new NullPointerException(
+                    "Use Edge.isA() for is_a edges.");
+            return new Edge(type, false);
+        }
+        
+        /**
+         * The same edges followed in the opposite direction.
+         */
+        public Edge inverse() {
+            return new Edge(type, !inverse);
+        }
+        
+        @Override
+        public String toString() {
+            return (inverse ? "^" : "") + (type == null ? "is_a" : type.id());
+        }
+    }
+    
+    /**
+     * Receives terms reached by a traversal.
+     */
+    public interface Visitor {
+        
+        /**
+         * Called once for every reached term.
+         * 
+         * @param term reached term
+         * @param depth number of edges from the nearest start
+         * @return {@code false} to stop the traversal
+         */
+        public boolean onVisit(Term term, int depth);
+        
+    }
+    
+    /** Frontier nodes expanded by one task of the parallel BFS. */
+    private static final int CHUNK = 1024;
+    
+    private final Ontology onto;
+    
+    private final CsrGraph graph;
+    
+    private final long[] visited;
+    
+    /** Queue of BFS, stack of DFS and list of visited nodes. */
+    private final int[] nodes;
+    
+    private final int[] depths;
+    
+    private final int[] cursor;
+    
+    /** Shortest depth, at which a visited node was expanded by DFS. */
+    private final int[] best;
+    
+    /**
+     * Copies the chosen edges of the ontology.
+     * 
+     * @param onto traversed ontology
+     * @param edges followed kinds of edges
+     */
+    public Traversal(Ontology onto, Edge... edges) {
+        this.onto = onto;
+        this.graph = onto.adjacency(edges);
+        
+        int n = graph.size();
+        visited = new long[(n + 63) >>> 6];
+        nodes = new int[n];
+        depths = new int[n];
+        cursor = new int[n];
+        best = new int[n];
+    }
+    
+    /**
+     * Returns the graph walked by the traversal.
+     */
+    public CsrGraph graph() {
+        return graph;
+    }
+    
+    private boolean mark(int n) {
+        long bit = 1L << n;
+        if ((visited[n >>> 6] & bit) != 0) return false;
+        visited[n >>> 6] |= bit;
+        return true;
+    }
+    
+    /** Clears the bits of the first {@code count} nodes. */
+    private void unmark(int count) {
+        for (int i = 0; i < count; i++) visited[nodes[i] >>> 6] = 0;
+    }
+    
+    /** Marks the starts and puts them into the queue. */
+    private int start(Iterable<? extends Term> starts) {
+        int k = 0;
+        for (Term t : starts) {
+            int i = onto.indexOf(t);
+            if (i < 0) {
+                unmark(k);
+                throw new IllegalArgumentException(
+                        "Term " + t + " does not belong to the ontology.");
+            }
+            if (i < graph.size() && mark(i)) nodes[k++] = i;
+        }
+        return k;
+    }
+    
+    /**
+     * Visits terms in the order of increasing distance from the starts.
+     * 
+     * @param starts terms visited at depth 0
+     * @param maxDepth terms farther than this are not visited
+     * @param visitor receives visited terms
+     * @return number of visited terms
+     */
+    public int bfs(Iterable<? extends Term> starts, int maxDepth,
+            Visitor visitor) {
+        int tail = start(starts);
+        int head = 0;
+        Arrays.fill(depths, 0, tail, 0);
+        
+        try {
+            while (head < tail) {
+                int n = nodes[head], d = depths[head];
+                head++;
+                if (!visitor.onVisit(onto.termAt(n), d)) break;
+                if (d >= maxDepth) continue;
+                
+                for (int i = graph.start(n); i < graph.end(n); i++) {
+                    int m = graph.target(i);
+                    if (!mark(m)) continue;
+                    nodes[tail] = m;
+                    depths[tail++] = d + 1;
+                }
+            }
+            return head;
+        } finally {
+            unmark(tail);
+        }
+    }
+    
+    /**
+     * Visits terms depth-first, each before its successors.
+     * 
+     * <p>The reported depth is the length of the path, along which the
+     * term was found first, which need not be the shortest one. If the
+     * depth is limited, a term found again along a shorter path is
+     * expanded again, so that the same terms are visited as by
+     * {@link #bfs}.</p>
+     * 
+     * @param starts terms visited at depth 0
+     * @param maxDepth terms farther than this are not visited
+     * @param visitor receives visited terms
+     * @return number of visited terms
+     */
+    public int dfs(Iterable<? extends Term> starts, int maxDepth,
+            Visitor visitor) {
+        // nodes[] lists visited terms, the stack lives in cursor/depths
+        int[] stack = depths;
+        int count = 0;
+        boolean limited = maxDepth < graph.size();
+        
+        try {
+            for (Term t : starts) {
+                int s = onto.indexOf(t);
+                if (s < 0) throw new IllegalArgumentException(
+                        "Term " + t + " does not belong to the ontology.");
+                if (s >= graph.size()) continue;
+                if (mark(s)) {
+                    nodes[count++] = s;
+                    if (!visitor.onVisit(t, 0)) return count;
+                } else if (!limited || best[s] == 0) {
+                    continue;
+                }
+                best[s] = 0;
+                int top = 0;
+                stack[0] = s;
+                cursor[0] = graph.start(s);
+                
+                while (top >= 0) {
+                    int n = stack[top];
+                    if (top >= maxDepth || cursor[top] >= graph.end(n)) {
+                        top--;
+                        continue;
+                    }
+                    int m = graph.target(cursor[top]++);
+                    if (mark(m)) {
+                        nodes[count++] = m;
+                        if (!visitor.onVisit(onto.termAt(m), top + 1))
+                            return count;
+                    } else if (!limited || best[m] <= top + 1) {
+                        continue;
+                    }
+                    // Reached for the first time or along a shorter path
+                    best[m] = top + 1;
+                    stack[++top] = m;
+                    cursor[top] = graph.start(m);
+                }
+            }
+            return count;
+        } finally {
+            unmark(count);
+        }
+    }
+    
+    /**
+     * Finds all terms reachable from the starts, using several threads.
+     * 
+     * <p>The frontier of each level is split into chunks expanded in
+     * parallel; terms are claimed by atomic updates of a shared bitset.
+     * Small frontiers are expanded by the calling thread.</p>
+     * 
+     * @param starts terms at depth 0
+     * @param maxDepth terms farther than this are not reached
+     * @param executor runs the expansion of chunks
+     * @return reached terms, including the starts
+     * @throws CancellationException if the thread is interrupted
+     */
+    public TermSet parallelBfs(Iterable<? extends Term> starts, int maxDepth,
+            ExecutorService executor) {
+        AtomicLongArray seen = new AtomicLongArray(visited.length);
+        IntBitmap.Builder reached = new IntBitmap.Builder();
+        
+        int[] frontier = new int[16];
+        int size = 0;
+        for (Term t : starts) {
+            int i = onto.indexOf(t);
+            if (i < 0) throw new IllegalArgumentException(
+                    "Term " + t + " does not belong to the ontology.");
+            if (i >= graph.size() || !claim(seen, i)) continue;
+            if (size == frontier.length)
+                frontier = Arrays.copyOf(frontier, 2*size);
+            frontier[size++] = i;
+            reached.add(i);
+        }
+        
+        for (int d = 0; d < maxDepth && size > 0; d++) {
+            int[][] parts;
+            if (size <= CHUNK) {
+                parts = new int[][] {
+                    new Expansion(seen, frontier, 0, size).call()};
+            } else
+                parts = expand(seen, frontier, size, executor);
+            
+            // Each part carries its size in the first element
+            size = 0;
+            for (int[] p : parts) size += p[0];
+            frontier = new int[size];
+            int k = 0;
+            for (int[] p : parts) {
+                System.arraycopy(p, 1, frontier, k, p[0]);
+                k += p[0];
+            }
+            for (int i = 0; i < size; i++) reached.add(frontier[i]);
+        }
+        return new TermSet(onto, reached.build());
+    }
+    
+    /**
+     * Expands chunks of a frontier in parallel.
+     */
+    private int[][] expand(AtomicLongArray seen, int[] frontier, int size,
+            ExecutorService executor) {
+        List<Future<int[]>> tasks = new ArrayList<Future<int[]>>();
+        for (int from = 0; from < size; from += CHUNK)
+            tasks.add(executor.submit(new Expansion(seen, frontier,
+                    from, Math.min(size, from + CHUNK))));
+        
+        int[][] parts = new int[tasks.size()][];
+        try {
+            for (int i = 0; i < parts.length; i++)
+                parts[i] = tasks.get(i).get();
+            return parts;
+            
+        } catch (InterruptedException ex) {
+            for (Future<int[]> f : tasks) f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Traversal was interrupted.");
+            
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+    
+    private static boolean claim(AtomicLongArray seen, int n) {
+        long bit = 1L << n;
+        while (true) {
+            long w = seen.get(n >>> 6);
+            if ((w & bit) != 0) return false;
+            if (seen.compareAndSet(n >>> 6, w, w | bit)) return true;
+        }
+    }
+    
+    /**
+     * Expands a part of a frontier.
+     */
+    private final class Expansion implements Callable<int[]> {
+        
+        private final AtomicLongArray seen;
+        
+        private final int[] level;
+        
+        private final int lo, hi;
+        
+        Expansion(AtomicLongArray seen, int[] level, int lo, int hi) {
+            this.seen = seen;
+            this.level = level;
+            this.lo = lo;
+            this.hi = hi;
+        }
+        
+        /**
+         * @return newly claimed nodes, preceded by their number
+         */
+        @Override
+        public int[] call() {
+            int[] out = new int[16];
+            int k = 1;
+            for (int j = lo; j < hi; j++) {
+                int n = level[j];
+                for (int i = graph.start(n); i < graph.end(n); i++) {
+                    int m = graph.target(i);
+                    if (!claim(seen, m)) continue;
+                    if (k == out.length) out = Arrays.copyOf(out, 2*k);
+                    out[k++] = m;
+                }
+            }
+            out[0] = k - 1;
+            return out;
+        }
+    }
+}
@@ -21,6 +21,7 @@
  */
 package cz.cvut.felk.ida.simplyobo.ontology;
 
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -39,5 +40,11 @@ public interface Type {
     public boolean transitive();
 
     public Set<? extends Type> transitiveOver();
+
+    public boolean symmetric();
+
+    public Set<? extends Type> inverseOf();
+
+    public List<? extends List<? extends Type>> holdsOverChain();
     
 }
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.parser;
+
+import cz.cvut.felk.ida.simplyobo.tools.Interner;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Streaming parser of gene association files in the GAF format.
+ * 
+ * <p>Only the columns needed to join annotations with an ontology are
+ * read: the database and object ID (columns 1 and 2), which identify the
+ * gene, the qualifier (column 4) and the term ID (column 5). Columns are
+ * located by scanning for tabs, without splitting the line. Genes are
+ * interned, so every distinct gene is copied out of the input once and
+ * reported by a number.</p>
+ * 
+ * <p>Lines starting with {@code !} are comments. The listener is always
+ * called from the thread, which called {@code parse}, in the order of
+ * lines in the file.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class GafParser {
+    
+    /** Lines parsed by one task of the parallel parser. */
+    private static final int BATCH = 4096;
+    
+    /** Batches parsed ahead of the listener. */
+    private static final int WINDOW = 16;
+    
+    private GafListener sink;
+    
+    private final Interner genes = new Interner();
+    
+    private int negated = 0;
+    
+    public GafParser(GafListener sink) {
+        setListener(sink);
+    }
+    
+    public void setListener(GafListener sink) {
+        this.sink = sink;
+    }
+    
+    public GafListener getListener() {
+        return sink;
+    }
+    
+    /**
+     * Returns the gene with the given number.
+     * 
+     * @return database and object ID separated by a colon,
+     * e.g. {@code UniProtKB:P12345}
+     */
+    public String gene(int gene) {
+        return genes.get(gene).replace('\t', ':');
+    }
+    
+    /**
+     * Finds the number of a gene.
+     * 
+     * @param gene database and object ID separated by a colon
+     * @return the number or {@code -1} if the gene was not read
+     */
+    public int find(String gene) {
+        int i = gene.indexOf(':');
+        if (i < 0) return -1;
+        return genes.find(gene.substring(0, i) + '\t' + gene.substring(i+1));
+    }
+    
+    /**
+     * Number of distinct genes read so far.
+     */
+    public int genes() {
+        return genes.size();
+    }
+    
+    /**
+     * Number of annotations skipped for the {@code NOT} qualifier.
+     */
+    public int negated() {
+        return negated;
+    }
+    
+    /**
+     * Finds the term ID in one line.
+     * 
+     * @param line line of the file
+     * @param no number of the line used in error messages
+     * @param tabs receives the positions of the first five tabs
+     * @return numeric part of the term ID or {@code -1} for a comment
+     * @throws SyntaxError if the line has too few columns or a bad term ID
+     */
+    public static int term(String line, int no, int[] tabs) {
+        if (line.length() == 0 || line.charAt(0) == '!') return -1;
+        
+        int c = -1;
+        for (int i = 0; i < 5; i++) {
+            c = line.indexOf('\t', c + 1);
+            if (c < 0) throw new SyntaxError(
+                    "Line " + no + " has fewer than 5 columns.");
+            tabs[i] = c;
+        }
+        return termId(line, tabs[3] + 1, tabs[4], no);
+    }
+    
+    /**
+     * Finds the columns of one line.
+     * 
+     * @param line line of the file
+     * @param no number of the line used in error messages
+     * @param tabs scratch array for five positions
+     * @param out receives the start and end of the gene and the term ID
+     * @param at position in {@code out}
+     * @throws SyntaxError if the line has too few columns or a bad term ID
+     */
+    static void scan(String line, int no, int[] tabs, int[] out, int at) {
+        int term = term(line, no, tabs);
+        out[at] = 0;
+        out[at+1] = tabs[1];
+        out[at+2] = term < 0 || !negated(line, tabs[2] + 1, tabs[3])
+                ? term : -2;
+    }
+    
+    /**
+     * Tells whether a line has the {@code NOT} qualifier.
+     * 
+     * @param line line of the file
+     * @param tabs positions of tabs found by {@link #term}
+     */
+    public static boolean negated(String line, int[] tabs) {
+        return negated(line, tabs[2] + 1, tabs[3]);
+    }
+    
+    private static boolean negated(String line, int from, int to) {
+        int i = from;
+        while (i < to) {
+            int j = line.indexOf('|', i);
+            if (j < 0 || j > to) j = to;
+            if (j - i == 3 && line.startsWith("NOT", i)) return true;
+            i = j + 1;
+        }
+        return false;
+    }
+    
+    private static int termId(String line, int from, int to, int no) {
+        int i = line.indexOf(':', from);
+        if (i < 0 || i >= to - 1) throw new SyntaxError(
+                "Line " + no + " has no term ID in column 5.");
+        int id = 0;
+        for (i++; i < to; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9' || id > (Integer.MAX_VALUE - 9) / 10)
+                throw new SyntaxError("Line " + no + " has a bad term ID \""
+                        + line.substring(from, to) + "\".");
+            id = 10*id + (c - '0');
+        }
+        return id;
+    }
+    
+    private void deliver(String line, int[] cols, int at) {
+        int term = cols[at+2];
+        if (term == -2) negated++;
+        if (term < 0) return;
+        sink.onAnnotation(genes.intern(line, cols[at], cols[at+1]), term);
+    }
+    
+    private static BufferedReader buffered(Reader r) {
+        return r instanceof BufferedReader
+                ? (BufferedReader) r : new BufferedReader(r);
+    }
+    
+    /**
+     * Parses the file in the calling thread.
+     */
+    public void parse(Reader gafFile) throws IOException {
+        BufferedReader b = buffered(gafFile);
+        if (sink instanceof DocBegEndAware)
+            ((DocBegEndAware) sink).parsingBegun();
+        
+        int[] cols = new int[3];
+        int[] tabs = new int[5];
+        int no = 0;
+        String l;
+        while ((l = b.readLine()) != null) {
+            scan(l, ++no, tabs, cols, 0);
+            deliver(l, cols, 0);
+        }
+        
+        if (sink instanceof DocBegEndAware)
+            ((DocBegEndAware) sink).parsingEnded();
+    }
+    
+    /**
+     * Parses the file, scanning lines in parallel.
+     * 
+     * <p>The calling thread reads lines in batches and passes them to the
+     * executor, which locates the columns. Genes are interned and the
+     * listener called back in the calling thread.</p>
+     * 
+     * @throws CancellationException if the thread is interrupted
+     */
+    public void parse(Reader gafFile, ExecutorService executor)
+            throws IOException {
+        BufferedReader b = buffered(gafFile);
+        if (sink instanceof DocBegEndAware)
+            ((DocBegEndAware) sink).parsingBegun();
+        
+        List<String[]> lines = new ArrayList<String[]>();
+        List<Future<int[]>> pending = new ArrayList<Future<int[]>>();
+        try {
+            int no = 0;
+            while (true) {
+                String[] batch = new String[BATCH];
+                int n = 0;
+                String l;
+                while (n < BATCH && (l = b.readLine()) != null) batch[n++] = l;
+                if (n == 0) break;
+                
+                final String[] ls = batch;
+                final int count = n, first = no + 1;
+                no += n;
+                lines.add(ls);
+                pending.add(executor.submit(new Callable<int[]>() {
+                    @Override
+                    public int[] call() {
+                        int[] cols = new int[3 * count];
+                        int[] tabs = new int[5];
+                        for (int i = 0; i < count; i++)
+                            scan(ls[i], first + i, tabs, cols, 3*i);
+                        return cols;
+                    }
+                }));
+                
+                if (pending.size() >= WINDOW) deliver(lines, pending);
+                if (n < BATCH) break;
+            }
+            while (!pending.isEmpty()) deliver(lines, pending);
+            
+        } catch (InterruptedException ex) {
+            for (Future<int[]> f : pending) f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Parsing was interrupted.");
+            
+        } catch (ExecutionException ex) {
+            for (Future<int[]> f : pending) f.cancel(true);
+            if (ex.getCause() instanceof SyntaxError)
+                throw (SyntaxError) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        }
+        
+        if (sink instanceof DocBegEndAware)
+            ((DocBegEndAware) sink).parsingEnded();
+    }
+    
+    /** Waits for the oldest batch and passes it to the listener. */
+    private void deliver(List<String[]> lines, List<Future<int[]>> pending)
+            throws InterruptedException, ExecutionException {
+        int[] cols = pending.get(0).get();
+        String[] ls = lines.get(0);
+        pending.remove(0);
+        lines.remove(0);
+        for (int i = 0; 3*i < cols.length; i++) deliver(ls[i], cols, 3*i);
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.parser;
+
+import cz.cvut.felk.ida.simplyobo.tools.IntIntMap;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads only the part of an OBO file reachable from a few seed terms.
+ * 
+ * <p>The file is read twice. The first pass ({@link #scan}) keeps nothing
+ * but the IDs of {@code is_a} edges and of the chosen relations, packed
+ * into an array. Terms reachable from the seeds along these edges, i.e.
+ * their ancestors, form the subgraph. The second pass ({@link #load})
+ * passes to the listener only the stanzas of terms in the subgraph and
+ * all typedefs, and drops relations leading out of the subgraph.</p>
+ * 
+ * <p>Typical usage looks like:
+ * <pre>
+ * SubgraphLoader l = new SubgraphLoader(seeds, Arrays.asList("part_of"));
+ * l.scan(new FileReader("gene-ontology.obo"));
+ * Ontology o = new Reasoner();
+ * l.load(new FileReader("gene-ontology.obo"), o);
+ * </pre>
+ * Since the listener is notified about the end of the document, a
+ * {@code Reasoner} reasons over the subgraph only.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class SubgraphLoader {
+    
+    private final int[] seeds;
+    
+    private final Set<String> relations;
+    
+    /** Terms of the subgraph; {@code null} before the first pass. */
+    private IntIntMap subgraph = null;
+    
+    private int size = 0;
+    
+    /**
+     * @param seeds numeric IDs of seed terms, e.g. 8150 for GO:0008150
+     * @param relations IDs of relations followed besides {@code is_a}
+     */
+    public SubgraphLoader(Collection<Integer> seeds,
+            Collection<String> relations) {
+        this.seeds = new int[seeds.size()];
+        int i = 0;
+        for (Integer s : seeds) this.seeds[i++] = s;
+        this.relations = new HashSet<String>(relations);
+    }
+    
+    /**
+     * Parses the numeric part of a term ID at the start of a value.
+     * 
+     * @return the number or {@code -1} if the value is not a GO ID
+     */
+    static int goId(String val, int from) {
+        while (from < val.length() && val.charAt(from) == ' ') from++;
+        if (!val.startsWith("GO:", from)) return -1;
+        int id = 0, i = from + 3;
+        for (; i < val.length(); i++) {
+            char c = val.charAt(i);
+            if (c < '0' || c > '9') break;
+            id = 10*id + (c - '0');
+        }
+        return i == from + 3 ? -1 : id;
+    }
+    
+    /** Target of an edge followed by the loader or {@code -1}. */
+    private int target(String tag, String val) {
+        if ("is_a".equals(tag)) return goId(val, 0);
+        if (!"relationship".equals(tag)) return -1;
+        
+        int space = val.indexOf(' ');
+        if (space < 0 || !relations.contains(val.substring(0, space)))
+            return -1;
+        return goId(val, space + 1);
+    }
+    
+    /**
+     * First pass: collects edges and computes the subgraph.
+     * 
+     * @param obo ontology in OBO format
+     * @throws IOException if the Reader cannot be read
+     */
+    public void scan(Reader obo) throws IOException {
+        final long[][] edges = { new long[1024] };
+        final int[] n = { 0 };
+        
+        new LineByLineParser(new LineByLineListener() {
+            
+            private boolean term = false;
+            
+            private int id = -1;
+            
+            /** Targets met before the ID of the stanza. */
+            private final List<Integer> early = new ArrayList<Integer>();
+            
+            private void add(int to) {
+                if (n[0] == edges[0].length)
+                    edges[0] = Arrays.copyOf(edges[0], 2 * n[0]);
+                edges[0][n[0]++] = ((long) id << 32) | to;
+            }
+            
+            @Override
+            public void onStanza(String stanza) {
+                term = "Term".equals(stanza);
+                id = -1;
+                early.clear();
+            }
+            
+            @Override
+            public void onTagValue(String tag, String value) {
+                if (!term) return;
+                if ("id".equals(tag)) {
+                    id = goId(value, 0);
+                    if (id >= 0) for (int to : early) add(to);
+                    early.clear();
+                    return;
+                }
+                
+                int to = target(tag, value);
+                if (to < 0) return;
+                if (id < 0) early.add(to); else add(to);
+            }
+        }).parse(obo);
+        
+        // Walk from the seeds over edges sorted by their source
+        long[] e = edges[0];
+        Arrays.sort(e, 0, n[0]);
+        subgraph = new IntIntMap(seeds.length * 4, 0);
+        int[] queue = new int[Math.max(16, seeds.length)];
+        int head = 0, tail = 0;
+        for (int s : seeds) {
+            if (subgraph.containsKey(s)) continue;
+            subgraph.put(s, 1);
+            if (tail == queue.length) queue = Arrays.copyOf(queue, 2*tail);
+            queue[tail++] = s;
+        }
+        while (head < tail) {
+            long from = (long) queue[head++] << 32;
+            int i = Arrays.binarySearch(e, 0, n[0], from);
+            if (i < 0) i = -i - 1;
+            for (; i < n[0] && (e[i] & 0xFFFFFFFF00000000L) == from; i++) {
+                int to = (int) e[i];
+                if (subgraph.containsKey(to)) continue;
+                subgraph.put(to, 1);
+                if (tail == queue.length) queue = Arrays.copyOf(queue, 2*tail);
+                queue[tail++] = to;
+            }
+        }
+        size = tail;
+    }
+    
+    private void checkScanned() {
+        if (subgraph == null) throw new IllegalStateException(
+                "The file must be scanned first.");
+    }
+    
+    /**
+     * Number of terms in the subgraph, seeds included.
+     */
+    public int size() {
+        checkScanned();
+        return size;
+    }
+    
+    /**
+     * Indicates whether a term belongs to the subgraph.
+     * 
+     * @param id numeric ID of the term
+     */
+    public boolean contains(int id) {
+        checkScanned();
+        return subgraph.containsKey(id);
+    }
+    
+    /**
+     * Second pass: passes the subgraph to the listener.
+     * 
+     * <p>The header and all typedefs are passed unchanged. Stanzas of
+     * terms outside the subgraph are skipped; the {@code is_a} and
+     * {@code relationship} tags of other terms are kept only if they lead
+     * into the subgraph.</p>
+     * 
+     * @param obo the same file as in {@link #scan}
+     * @param sink receiver of the subgraph, e.g. an empty ontology
+     * @throws IOException if the Reader cannot be read
+     * @throws IllegalStateException if the file was not scanned
+     */
+    public void load(Reader obo, final StanzaListener sink)
+            throws IOException {
+        checkScanned();
+        new LineByLineParser(new StanzaCollector(new Filter(sink))).parse(obo);
+    }
+    
+    /** Passes stanzas of the subgraph to another listener. */
+    private class Filter implements StanzaListener, DocBegEndAware {
+        
+        private final StanzaListener sink;
+        
+        Filter(StanzaListener sink) {
+            this.sink = sink;
+        }
+        
+        @Override
+        public void onHeader(List<TagValuePair> header) {
+            sink.onHeader(header);
+        }
+        
+        @Override
+        public void onStanza(String name, List<TagValuePair> tagVals) {
+            if (!"Term".equals(name)) {
+                sink.onStanza(name, tagVals);
+                return;
+            }
+            
+            List<TagValuePair> kept
+                    = new ArrayList<TagValuePair>(tagVals.size());
+            for (TagValuePair tvp : tagVals) {
+                if ("id".equals(tvp.tag())
+                        && !subgraph.containsKey(goId(tvp.val(), 0)))
+                    return;
+                
+                if ("is_a".equals(tvp.tag())
+                        || "relationship".equals(tvp.tag())) {
+                    String v = tvp.val();
+                    int to = "is_a".equals(tvp.tag()) ? goId(v, 0)
+                            : goId(v, Math.max(0, v.indexOf(' ') + 1));
+                    if (!subgraph.containsKey(to)) continue;
+                }
+                kept.add(tvp);
+            }
+            sink.onStanza(name, kept);
+        }
+        
+        @Override
+        public void parsingBegun() {
+            if (sink instanceof DocBegEndAware)
+                ((DocBegEndAware) sink).parsingBegun();
+        }
+        
+        @Override
+        public void parsingEnded() {
+            if (sink instanceof DocBegEndAware)
+                ((DocBegEndAware) sink).parsingEnded();
+        }
+    }
+}
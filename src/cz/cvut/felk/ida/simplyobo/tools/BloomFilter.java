@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+/**
+ * Blocked Bloom filter over 64-bit hashes.
+ * 
+ * <p>The filter answers whether a key might have been added. A negative
+ * answer is always right; a positive one is wrong with a probability of
+ * about 1% while the filter holds at most {@link #capacity()} keys.</p>
+ * 
+ * <p>All bits of a key are set in a single block of 512 bits, which is
+ * one cache line, so a query costs one memory access. The filter does
+ * not grow; owners rebuild it with a bigger capacity when it is full.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class BloomFilter {
+    
+    /** Bits reserved per key. */
+    private static final int BITS_PER_KEY = 12;
+    
+    /** Bits set per key, each addressed by 9 bits of the hash. */
+    private static final int PROBES = 7;
+    
+    private final long[] bits;
+    
+    private final int blocks;
+    
+    private final int capacity;
+    
+    private int count = 0;
+    
+    /**
+     * Creates an empty filter.
+     * 
+     * @param capacity number of keys the filter is sized for
+     */
+    public BloomFilter(int capacity) {
+        this.capacity = Math.max(capacity, 64);
+        this.blocks = (int) (((long) this.capacity * BITS_PER_KEY + 511) / 512);
+        this.bits = new long[8 * blocks];
+    }
+    
+    /**
+     * Combines hash codes of three objects into a well mixed 64-bit hash.
+     */
+    public static long hash(Object a, Object b, Object c) {
+        long h = a.hashCode();
+        h = h * 0x9E3779B97F4A7C15L + b.hashCode();
+        h = h * 0x9E3779B97F4A7C15L + c.hashCode();
+        return mix(h);
+    }
+    
+    /** Finalizer of the 64-bit MurmurHash3. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+    
+    private int block(long hash) {
+        return (int) (((hash >>> 32) * blocks) >>> 32) << 3;
+    }
+    
+    /**
+     * Adds a key to the filter.
+     */
+    public void add(long hash) {
+        int base = block(hash);
+        long h = mix(hash);
+        for (int i = 0; i < PROBES; i++, h >>>= 9) {
+            int bit = (int) h & 511;
+            bits[base + (bit >>> 6)] |= 1L << bit;
+        }
+        count++;
+    }
+    
+    /**
+     * Checks, whether a key might have been added.
+     * 
+     * @return {@code false} if the key was certainly not added
+     */
+    public boolean mightContain(long hash) {
+        int base = block(hash);
+        long h = mix(hash);
+        for (int i = 0; i < PROBES; i++, h >>>= 9) {
+            int bit = (int) h & 511;
+            if ((bits[base + (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Number of keys the filter was sized for.
+     */
+    public int capacity() {
+        return capacity;
+    }
+    
+    /**
+     * Number of keys added so far.
+     */
+    public int count() {
+        return count;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strongly connected components of a directed graph.
+ *
+ * <p>Components are found by an iterative version of Tarjan's algorithm,
+ * so that long chains do not overflow the stack. They are numbered in
+ * reverse topological order: a component has edges only to components
+ * with a smaller number. Processing components from {@code 0} upwards
+ * therefore visits every successor before its predecessors.</p>
+ *
+ * <p>The graph is explored from the given roots. Nodes reachable from the
+ * roots are included as well, even if they were not listed.</p>
+ *
+ * @param <N> node of the graph
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class Condensation<N> {
+
+    /**
+     * Lists outgoing edges of a node.
+     *
+     * @param <N> node of the graph
+     */
+    public interface Successors<N> {
+
+        /**
+         * Returns the direct successors of the given node.
+         *
+         * @param node node of the graph
+         * @return nodes, to which an edge from {@code node} leads
+         */
+        public Iterable<? extends N> of(N node);
+
+    }
+
+    private final Map<N,Integer> comp = new HashMap<N,Integer>();
+
+    private final List<List<N>> members = new ArrayList<List<N>>();
+
+    private final List<int[]> succs = new ArrayList<int[]>();
+
+    private final List<Boolean> cyclic = new ArrayList<Boolean>();
+
+    /**
+     * Finds the components of the graph.
+     *
+     * @param roots nodes, from which the graph is explored
+     * @param succ successor function of the graph
+     */
+    public Condensation(Iterable<? extends N> roots, Successors<N> succ) {
+
+        Map<N,Integer> index = new HashMap<N,Integer>();
+        List<Integer> lowlink = new ArrayList<Integer>();
+        List<N> stack = new ArrayList<N>();
+        List<N> callNode = new ArrayList<N>();
+        List<Iterator<? extends N>> callIter
+                = new ArrayList<Iterator<? extends N>>();
+
+        for (N root : roots) {
+            if (index.containsKey(root)) continue;
+
+            index.put(root, lowlink.size());
+            lowlink.add(lowlink.size());
+            stack.add(root);
+            callNode.add(root);
+            callIter.add(succ.of(root).iterator());
+
+            while (!callNode.isEmpty()) {
+                int top = callNode.size() - 1;
+                N v = callNode.get(top);
+                Iterator<? extends N> it = callIter.get(top);
+                int vi = index.get(v);
+
+                if (it.hasNext()) {
+                    N w = it.next();
+                    Integer wi = index.get(w);
+
+                    if (wi == null) {
+                        index.put(w, lowlink.size());
+                        lowlink.add(lowlink.size());
+                        stack.add(w);
+                        callNode.add(w);
+                        callIter.add(succ.of(w).iterator());
+
+                    } else if (!comp.containsKey(w)) {
+                        // w is still on the stack
+                        lowlink.set(vi, Math.min(lowlink.get(vi), wi));
+                    }
+                    continue;
+                }
+
+                callNode.remove(top);
+                callIter.remove(top);
+
+                if (top > 0) {
+                    int ui = index.get(callNode.get(top-1));
+                    lowlink.set(ui, Math.min(lowlink.get(ui),lowlink.get(vi)));
+                }
+
+                if (lowlink.get(vi) == vi) {
+                    Integer c = members.size();
+                    List<N> scc = new ArrayList<N>();
+                    N w;
+                    do {
+                        w = stack.remove(stack.size() - 1);
+                        comp.put(w, c);
+                        scc.add(w);
+                    } while (w != v && !w.equals(v));
+                    members.add(Collections.unmodifiableList(scc));
+                }
+            }
+        }
+
+        // Edges of the condensed graph
+        for (int c = 0; c < members.size(); c++) {
+            boolean loop = members.get(c).size() > 1;
+            int[] out = new int[4];
+            int n = 0;
+
+            for (N v : members.get(c))
+            for (N w : succ.of(v)) {
+                int d = comp.get(w);
+                if (d == c) { loop = true; continue; }
+                if (n == out.length) out = Arrays.copyOf(out, 2*n);
+                out[n++] = d;
+            }
+
+            Arrays.sort(out, 0, n);
+            int m = 0;
+            for (int i = 0; i < n; i++)
+                if (m == 0 || out[m-1] != out[i]) out[m++] = out[i];
+
+            succs.add(Arrays.copyOf(out, m));
+            cyclic.add(loop);
+        }
+    }
+
+    /**
+     * Number of components found.
+     */
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * Returns the component of the given node.
+     *
+     * @param node queried node
+     * @return number of the component or {@code -1}
+     * if the node was not reached from the roots
+     */
+    public int component(N node) {
+        Integer c = comp.get(node);
+        return c == null ? -1 : c;
+    }
+
+    /**
+     * Returns nodes of the given component.
+     *
+     * @param c number of the component
+     * @return unmodifiable list of nodes
+     */
+    public List<N> members(int c) {
+        return members.get(c);
+    }
+
+    /**
+     * Returns components directly reachable from the given component.
+     *
+     * <p>All numbers in the array are smaller than {@code c}.
+     * The array must not be modified.</p>
+     *
+     * @param c number of the component
+     * @return sorted array of successor components
+     */
+    public int[] successors(int c) {
+        return succs.get(c);
+    }
+
+    /**
+     * Indicates whether the component contains a cycle.
+     *
+     * <p>This happens if the component has more than one node or if its
+     * only node has an edge to itself.</p>
+     *
+     * @param c number of the component
+     * @return {@code true} if a node of {@code c} reaches itself
+     */
+    public boolean cyclic(int c) {
+        return cyclic.get(c);
+    }
+}
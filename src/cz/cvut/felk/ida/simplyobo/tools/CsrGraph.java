@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import cz.cvut.felk.ida.simplyobo.tools.Condensation.Successors;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable directed graph in the compressed sparse row format.
+ * 
+ * <p>Nodes are numbers from {@code 0} to {@code size()-1}. Successors of
+ * node {@code n} are {@code target(i)} for {@code i} from
+ * {@code start(n)} to {@code end(n)-1}, sorted and without duplicates.
+ * All of them are stored in one array, so walking the graph touches
+ * memory sequentially and allocates nothing.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public final class CsrGraph {
+    
+    private final int[] offsets;
+    
+    private final int[] targets;
+    
+    private CsrGraph(int[] offsets, int[] targets) {
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+    
+    /**
+     * Collects edges of a new graph in any order.
+     */
+    public static final class Builder {
+        
+        private final int size;
+        
+        private long[] edges = new long[64];
+        
+        private int n = 0;
+        
+        /**
+         * @param size number of nodes of the graph
+         */
+        public Builder(int size) {
+            this.size = size;
+        }
+        
+        /**
+         * Adds an edge; duplicate edges are stored once.
+         * 
+         * @return this builder
+         */
+        public Builder add(int from, int to) {
+            if (from < 0 || from >= size || to < 0 || to >= size)
+                throw new IndexOutOfBoundsException(
+                        "Edge " + from + "->" + to + " outside of the graph.");
+            if (n == edges.length) edges = Arrays.copyOf(edges, 2*n);
+            edges[n++] = ((long) from << 32) | to;
+            return this;
+        }
+        
+        /**
+         * Creates the graph of edges added so far.
+         */
+        public CsrGraph build() {
+            Arrays.sort(edges, 0, n);
+            int[] offsets = new int[size + 1];
+            int[] targets = new int[n];
+            int m = 0;
+            for (int i = 0; i < n; i++) {
+                if (i > 0 && edges[i] == edges[i-1]) continue;
+                offsets[(int) (edges[i] >>> 32) + 1]++;
+                targets[m++] = (int) edges[i];
+            }
+            for (int i = 0; i < size; i++) offsets[i+1] += offsets[i];
+            return new CsrGraph(offsets, Arrays.copyOf(targets, m));
+        }
+    }
+    
+    /**
+     * Number of nodes.
+     */
+    public int size() {
+        return offsets.length - 1;
+    }
+    
+    /**
+     * Number of edges.
+     */
+    public int edges() {
+        return targets.length;
+    }
+    
+    /**
+     * Position of the first successor of a node.
+     */
+    public int start(int node) {
+        return offsets[node];
+    }
+    
+    /**
+     * Position after the last successor of a node.
+     */
+    public int end(int node) {
+        return offsets[node + 1];
+    }
+    
+    /**
+     * Number of successors of a node.
+     */
+    public int degree(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+    
+    /**
+     * Successor stored at the given position.
+     */
+    public int target(int i) {
+        return targets[i];
+    }
+    
+    /**
+     * Graph with all edges reversed.
+     */
+    public CsrGraph reverse() {
+        int[] off = new int[offsets.length];
+        for (int t : targets) off[t + 1]++;
+        for (int i = 0; i + 1 < off.length; i++) off[i+1] += off[i];
+        
+        int[] fill = Arrays.copyOf(off, off.length - 1);
+        int[] tgt = new int[targets.length];
+        for (int n = 0; n < size(); n++)
+            for (int i = offsets[n]; i < offsets[n+1]; i++)
+                tgt[fill[targets[i]]++] = n;
+        return new CsrGraph(off, tgt);
+    }
+    
+    /**
+     * Nodes reachable from every node, the node itself included.
+     * 
+     * <p>Cycles are collapsed first, so nodes of a cycle share one bitmap.
+     * Reachable sets of a component are unions of the sets of its
+     * successors, which are always computed before.</p>
+     * 
+     * @return bitmap of reachable nodes for every node
+     */
+    public IntBitmap[] reachable() {
+        int n = size();
+        List<Integer> all = new ArrayList<Integer>(n);
+        for (int i = 0; i < n; i++) all.add(i);
+        Condensation<Integer> c = new Condensation<Integer>(all,
+                new Successors<Integer>() {
+            @Override
+            public Iterable<Integer> of(Integer node) {
+                List<Integer> out = new ArrayList<Integer>(degree(node));
+                for (int i = start(node); i < end(node); i++)
+                    out.add(target(i));
+                return out;
+            }
+        });
+        
+        int[][] compReach = new int[c.size()][];
+        IntUnion union = new IntUnion();
+        int[] buf = new int[16];
+        IntBitmap[] out = new IntBitmap[n];
+        for (int k = 0; k < c.size(); k++) {
+            int[] own = new int[c.members(k).size()];
+            for (int i = 0; i < own.length; i++) own[i] = c.members(k).get(i);
+            Arrays.sort(own);
+            
+            union.clear();
+            union.add(own);
+            for (int d : c.successors(k)) union.add(compReach[d]);
+            int m = 0;
+            while (union.hasNext()) {
+                if (m == buf.length) buf = Arrays.copyOf(buf, 2*m);
+                buf[m++] = union.next();
+            }
+            compReach[k] = Arrays.copyOf(buf, m);
+            
+            IntBitmap b = IntBitmap.of(compReach[k]);
+            for (int t : own) out[t] = b;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+
+/**
+ * Closes integer triples under chain rules using the disk.
+ * 
+ * <p>Triples {@code (s, v, o)} are closed under rules of the form
+ * "{@code x r y} and {@code y q z} implies {@code x r z}", given as
+ * a matrix {@code rules[r][q]}. This covers both transitive relations
+ * ({@code rules[r][r]}) and relations transitive over other ones.</p>
+ * 
+ * <p>The closure is computed by semi-naive iteration. All sets of triples
+ * are kept in sorted {@link TripleRun}s: the known triples and the triples
+ * new in the last round, each sorted by subject and by object. A round joins
+ * the new triples with the known ones by merging the runs and removes
+ * already known triples by another merge. Only the buffers of the
+ * {@link TripleSorter}s and the triples sharing a single join key are kept in
+ * memory.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class ExternalClosure {
+    
+    /**
+     * Receiver of derived triples.
+     */
+    public interface Sink {
+        
+        /**
+         * Called once for every derived triple.
+         */
+        public void add(int s, int v, int o);
+        
+        /**
+         * Called after every round of the closure.
+         * 
+         * @param rounds number of rounds finished so far
+         */
+        public void round(int rounds);
+        
+    }
+    
+    private final boolean[][] rules;
+    
+    private final File dir;
+    
+    private final int capacity;
+    
+    private TripleSorter stated;
+    
+    private int rounds = 0;
+
+    /**
+     * Creates a closure with no triples.
+     * 
+     * @param rules {@code rules[r][q]} is {@code true} if relation
+     * {@code r} is transitive over relation {@code q}
+     * @param dir directory for temporary files or {@code null}
+     * @param capacity maximum number of triples in a single sort buffer
+     */
+    public ExternalClosure(boolean[][] rules, File dir, int capacity) {
+        this.rules = rules;
+        this.dir = dir;
+        this.capacity = capacity;
+        this.stated = new TripleSorter(dir, capacity);
+    }
+    
+    /**
+     * Adds a stated triple.
+     * 
+     * @throws IOException if a buffer cannot be spilled
+     */
+    public void add(int s, int v, int o) throws IOException {
+        stated.add(s, v, o);
+    }
+    
+    /**
+     * Number of rounds of the last {@link #close(Sink)}.
+     */
+    public int rounds() {
+        return rounds;
+    }
+    
+    /**
+     * Computes the closure of the stated triples.
+     * 
+     * @param sink receives each derived triple once
+     * @return number of derived triples
+     * @throws IOException if the temporary files cannot be used
+     * @throws InterruptedIOException if the thread was interrupted
+     */
+    public long close(Sink sink) throws IOException {
+        
+        TripleRun allS = null, allO = null, newS = null, newO = null;
+        long derived = 0;
+        rounds = 0;
+        
+        try {
+            allS = run(stated.sort());
+            stated = new TripleSorter(dir, capacity);
+            allO = run(reorder(allS, null));
+            
+            newS = run(allS.open());
+            newO = run(allO.open());
+            
+            while (newS.size() > 0) {
+                if (Thread.currentThread().isInterrupted())
+                    throw new InterruptedIOException("Closure interrupted.");
+                rounds++;
+                
+                // Join the new triples with the known ones
+                TripleSorter cand = new TripleSorter(dir, capacity);
+                try {
+                    join(newO.open(), allS.open(), cand);
+                    join(allO.open(), newS.open(), cand);
+                    newS.write(TripleSorter.minus(cand.sort(), allS.open()));
+                } finally {
+                    cand.discard();
+                }
+                newO.write(reorder(newS, sink));
+                derived += newS.size();
+                if (sink != null) sink.round(rounds);
+                
+                TripleRun nextS = run(TripleSorter.union(
+                        Arrays.asList(allS.open(), newS.open())));
+                allS.delete();
+                allS = nextS;
+                
+                TripleRun nextO = run(TripleSorter.union(
+                        Arrays.asList(allO.open(), newO.open())));
+                allO.delete();
+                allO = nextO;
+            }
+        } finally {
+            for (TripleRun r : new TripleRun[] {allS, allO, newS, newO})
+                if (r != null) r.delete();
+        }
+        return derived;
+    }
+    
+    /**
+     * Deletes the runs spilled by {@link #add}, if the closure is not
+     * going to be computed.
+     */
+    public void discard() {
+        stated.discard();
+    }
+    
+    /**
+     * Writes the cursor into a new run, which is deleted if that fails.
+     */
+    private TripleRun run(TripleCursor in) throws IOException {
+        TripleRun r;
+        try {
+            r = new TripleRun(dir);
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+        boolean done = false;
+        try {
+            r.write(in);
+            done = true;
+            return r;
+        } finally {
+            if (!done) r.delete();
+        }
+    }
+    
+    /**
+     * Sorts a subject-ordered run by objects, optionally reporting it.
+     */
+    private TripleCursor reorder(TripleRun svo, Sink sink) throws IOException {
+        TripleSorter ovs = new TripleSorter(dir, capacity);
+        boolean done = false;
+        TripleCursor in = svo.open();
+        try {
+            while (in.next()) {
+                ovs.add(in.c(), in.b(), in.a());
+                if (sink != null) sink.add(in.a(), in.b(), in.c());
+            }
+            done = true;
+        } finally {
+            in.close();
+            if (!done) ovs.discard();
+        }
+        return ovs.sort();
+    }
+    
+    /**
+     * Merge-joins {@code (y, r, x)} with {@code (y, q, z)}.
+     * 
+     * <p>Produces {@code (x, r, z)} whenever {@code r} is transitive over
+     * {@code q}. Both inputs must be sorted by {@code y}.</p>
+     */
+    private void join(TripleCursor left, TripleCursor right, TripleSorter out)
+            throws IOException {
+        
+        int[] lg = new int[16];
+        int[] rg = new int[16];
+        
+        try {
+            boolean lv = left.next();
+            boolean rv = right.next();
+            
+            while (lv && rv) {
+                int y = left.a();
+                if (right.a() < y) { rv = right.next(); continue; }
+                if (right.a() > y) { lv = left.next(); continue; }
+                
+                // Collect both groups with the same join key
+                int ln = 0;
+                do {
+                    if (ln == lg.length) lg = Arrays.copyOf(lg, 2*ln);
+                    lg[ln++] = left.b(); lg[ln++] = left.c();
+                } while ((lv = left.next()) && left.a() == y);
+                
+                int rn = 0;
+                do {
+                    if (rn == rg.length) rg = Arrays.copyOf(rg, 2*rn);
+                    rg[rn++] = right.b(); rg[rn++] = right.c();
+                } while ((rv = right.next()) && right.a() == y);
+                
+                for (int i = 0; i < ln; i += 2)
+                for (int j = 0; j < rn; j += 2)
+                    if (lg[i] < rules.length && rg[j] < rules[lg[i]].length
+                            && rules[lg[i]][rg[j]])
+                        out.add(lg[i+1], lg[i], rg[j+1]);
+            }
+        } finally {
+            left.close();
+            right.close();
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed set of non-negative integers.
+ * 
+ * <p>The set is a bitmap split into 64-bit words, of which only the
+ * non-empty ones are stored together with their positions. Sets of
+ * clustered values (such as terms of one branch of an ontology, which
+ * get consecutive numbers) therefore take a few bits per element, and
+ * sparse sets take at most 12 bytes per element.</p>
+ * 
+ * <p>Set operations merge the word lists without decoding single
+ * elements. Intersections and differences gallop over positions missing
+ * in the other set, so a small set is combined with a big one in time
+ * close to the size of the small one. {@link #intersectCardinality} and
+ * {@link #andNotCardinality} do not even build the result.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public final class IntBitmap {
+    
+    /** Set without elements. */
+    public static final IntBitmap EMPTY
+            = new IntBitmap(new int[0], new long[0], 0);
+    
+    /** Positions of the stored words, increasing. */
+    private final int[] keys;
+    
+    /** Non-zero words. */
+    private final long[] words;
+    
+    private final int cardinality;
+    
+    private IntBitmap(int[] keys, long[] words, int n) {
+        if (keys.length != n) {
+            keys = Arrays.copyOf(keys, n);
+            words = Arrays.copyOf(words, n);
+        }
+        this.keys = keys;
+        this.words = words;
+        
+        int c = 0;
+        for (long w : words) c += Long.bitCount(w);
+        this.cardinality = c;
+    }
+    
+    /**
+     * Collects elements of a new set in any order.
+     */
+    public static final class Builder {
+        
+        private int[] values = new int[16];
+        
+        private int n = 0;
+        
+        /**
+         * Adds an element.
+         * 
+         * @param x non-negative integer
+         * @return this builder
+         */
+        public Builder add(int x) {
+            if (x < 0) throw new IllegalArgumentException(
+                    "Negative value " + x + " cannot be stored.");
+            if (n == values.length) values = Arrays.copyOf(values, 2*n);
+            values[n++] = x;
+            return this;
+        }
+        
+        /**
+         * Creates the set of elements added so far.
+         */
+        public IntBitmap build() {
+            Arrays.sort(values, 0, n);
+            int[] keys = new int[n];
+            long[] words = new long[n];
+            int k = -1;
+            for (int i = 0; i < n; i++) {
+                int key = values[i] >>> 6;
+                if (k < 0 || keys[k] != key) keys[++k] = key;
+                words[k] |= 1L << values[i];
+            }
+            return new IntBitmap(keys, words, k+1);
+        }
+    }
+    
+    /**
+     * Creates a set of the given elements.
+     */
+    public static IntBitmap of(int... values) {
+        Builder b = new Builder();
+        for (int x : values) b.add(x);
+        return b.build();
+    }
+    
+    /**
+     * Number of elements.
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+    
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+    
+    /**
+     * Checks, whether the set contains the given element.
+     */
+    public boolean contains(int x) {
+        if (x < 0) return false;
+        int i = Arrays.binarySearch(keys, x >>> 6);
+        return i >= 0 && (words[i] & (1L << x)) != 0;
+    }
+    
+    /**
+     * Finds the smallest element at least as big as {@code from}.
+     * 
+     * @return the element or {@code -1} if there is none
+     */
+    public int next(int from) {
+        if (from < 0) from = 0;
+        int i = Arrays.binarySearch(keys, from >>> 6);
+        if (i >= 0) {
+            long w = words[i] & (-1L << from);
+            if (w != 0) return (keys[i] << 6) + Long.numberOfTrailingZeros(w);
+            i++;
+        } else
+            i = -i - 1;
+        
+        if (i >= keys.length) return -1;
+        return (keys[i] << 6) + Long.numberOfTrailingZeros(words[i]);
+    }
+    
+    /**
+     * Lists the elements in increasing order.
+     */
+    public int[] toArray() {
+        int[] out = new int[cardinality];
+        int k = 0;
+        for (int i = 0; i < keys.length; i++)
+            for (long w = words[i]; w != 0; w &= w - 1)
+                out[k++] = (keys[i] << 6) + Long.numberOfTrailingZeros(w);
+        return out;
+    }
+    
+    /**
+     * Set of elements contained in this or the other set.
+     */
+    public IntBitmap union(IntBitmap other) {
+        if (other.isEmpty()) return this;
+        if (isEmpty()) return other;
+        
+        int[] k = new int[keys.length + other.keys.length];
+        long[] w = new long[k.length];
+        int i = 0, j = 0, n = 0;
+        while (i < keys.length || j < other.keys.length) {
+            int a = i < keys.length ? keys[i] : Integer.MAX_VALUE;
+            int b = j < other.keys.length ? other.keys[j] : Integer.MAX_VALUE;
+            k[n] = Math.min(a, b);
+            w[n++] = (a <= b ? words[i++] : 0) | (b <= a ? other.words[j++] : 0);
+        }
+        return new IntBitmap(k, w, n);
+    }
+    
+    /**
+     * Set of elements contained in both sets.
+     */
+    public IntBitmap intersect(IntBitmap other) {
+        int[] k = new int[Math.min(keys.length, other.keys.length)];
+        long[] w = new long[k.length];
+        int i = 0, j = 0, n = 0;
+        while (i < keys.length && j < other.keys.length) {
+            int a = keys[i], b = other.keys[j];
+            if (a == b) {
+                long x = words[i++] & other.words[j++];
+                if (x != 0) { k[n] = a; w[n++] = x; }
+            } else if (a < b)
+                i = SortedInts.gallop(keys, i + 1, keys.length, b);
+            else
+                j = SortedInts.gallop(other.keys, j + 1, other.keys.length, a);
+        }
+        return n == 0 ? EMPTY : new IntBitmap(k, w, n);
+    }
+    
+    /**
+     * Set of elements contained in this set, but not in the other one.
+     */
+    public IntBitmap andNot(IntBitmap other) {
+        if (isEmpty() || other.isEmpty()) return this;
+        
+        int[] k = new int[keys.length];
+        long[] w = new long[k.length];
+        int j = 0, n = 0;
+        boolean changed = false;
+        for (int i = 0; i < keys.length; i++) {
+            j = SortedInts.gallop(other.keys, j, other.keys.length, keys[i]);
+            long x = words[i];
+            if (j < other.keys.length && other.keys[j] == keys[i])
+                x &= ~other.words[j];
+            changed |= x != words[i];
+            if (x != 0) { k[n] = keys[i]; w[n++] = x; }
+        }
+        return changed ? new IntBitmap(k, w, n) : this;
+    }
+    
+    /**
+     * Size of the intersection, computed without building it.
+     */
+    public int intersectCardinality(IntBitmap other) {
+        int i = 0, j = 0, c = 0;
+        while (i < keys.length && j < other.keys.length) {
+            int a = keys[i], b = other.keys[j];
+            if (a == b)
+                c += Long.bitCount(words[i++] & other.words[j++]);
+            else if (a < b)
+                i = SortedInts.gallop(keys, i + 1, keys.length, b);
+            else
+                j = SortedInts.gallop(other.keys, j + 1, other.keys.length, a);
+        }
+        return c;
+    }
+    
+    /**
+     * Size of the difference, computed without building it.
+     */
+    public int andNotCardinality(IntBitmap other) {
+        return cardinality - intersectCardinality(other);
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof IntBitmap)) return false;
+        IntBitmap other = (IntBitmap) obj;
+        return Arrays.equals(keys, other.keys)
+                && Arrays.equals(words, other.words);
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(keys) + Arrays.hashCode(words);
+    }
+    
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
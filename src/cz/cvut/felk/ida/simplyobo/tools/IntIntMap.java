@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import java.util.Arrays;
+
+/**
+ * Map from integers to integers without boxing.
+ * 
+ * <p>Keys and values live in two flat arrays with open addressing and
+ * linear probing, so a lookup is a few array reads. Mappings cannot be
+ * removed.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public final class IntIntMap {
+    
+    private static final int FREE = Integer.MIN_VALUE;
+    
+    private final int missing;
+    
+    private int[] keys;
+    
+    private int[] values;
+    
+    private int size = 0;
+    
+    /**
+     * Creates an empty map.
+     * 
+     * @param expected expected number of mappings
+     * @param missing value returned for absent keys
+     */
+    public IntIntMap(int expected, int missing) {
+        this.missing = missing;
+        int cap = 16;
+        while (cap < 2L * expected) cap <<= 1;
+        keys = new int[cap];
+        values = new int[cap];
+        Arrays.fill(keys, FREE);
+    }
+    
+    private static int slot(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+    
+    /**
+     * Maps a key to a value, replacing the previous value.
+     * 
+     * @param key any integer except {@link Integer#MIN_VALUE}
+     */
+    public void put(int key, int value) {
+        if (key == FREE) throw new IllegalArgumentException(
+                "Key " + key + " is reserved.");
+        if (2 * (size + 1) > keys.length) grow();
+        
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != FREE && keys[i] != key) i = (i + 1) & mask;
+        if (keys[i] == FREE) {
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+    }
+    
+    /**
+     * Returns the value of a key.
+     * 
+     * @return the value or the {@code missing} value given to the
+     * constructor
+     */
+    public int get(int key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != FREE) {
+            if (keys[i] == key) return values[i];
+            i = (i + 1) & mask;
+        }
+        return missing;
+    }
+    
+    public boolean containsKey(int key) {
+        if (key == FREE) return false;
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != FREE) {
+            if (keys[i] == key) return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+    
+    /**
+     * Number of mappings.
+     */
+    public int size() {
+        return size;
+    }
+    
+    private void grow() {
+        int[] k = keys, v = values;
+        keys = new int[2 * k.length];
+        values = new int[2 * k.length];
+        Arrays.fill(keys, FREE);
+        size = 0;
+        for (int i = 0; i < k.length; i++)
+            if (k[i] != FREE) put(k[i], v[i]);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily iterated union of sorted integer arrays.
+ * 
+ * <p>Elements are produced in increasing order without duplicates by
+ * merging the arrays through a binary heap; the union is never stored.
+ * An instance is meant to be reused: after {@link #clear()} it accepts
+ * new arrays and allocates memory only if it has to grow.</p>
+ * 
+ * <pre>
+ * IntUnion u = new IntUnion();
+ * for (...) {
+ *     u.clear();
+ *     u.add(a, na);
+ *     u.add(b, nb);
+ *     while (u.hasNext()) use(u.next());
+ * }
+ * </pre>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public final class IntUnion {
+    
+    private int[][] arrays = new int[8][];
+    
+    private int[] pos = new int[8];
+    
+    private int[] end = new int[8];
+    
+    /** Indexes of non-exhausted arrays, ordered as a heap. */
+    private int[] heap = new int[8];
+    
+    private int count = 0;
+    
+    private int size = 0;
+    
+    private boolean started = false;
+    
+    private int last;
+    
+    /**
+     * Removes all arrays from the union.
+     */
+    public void clear() {
+        for (int i = 0; i < count; i++) arrays[i] = null;
+        count = 0;
+        size = 0;
+        started = false;
+    }
+    
+    /**
+     * Adds a sorted array to the union.
+     * 
+     * <p>Arrays must not be added during iteration.</p>
+     * 
+     * @param a sorted array, which must not change until {@link #clear()}
+     * @param n number of leading elements of {@code a} in the set
+     */
+    public void add(int[] a, int n) {
+        if (n <= 0) return;
+        if (count == arrays.length) {
+            arrays = Arrays.copyOf(arrays, 2*count);
+            pos = Arrays.copyOf(pos, 2*count);
+            end = Arrays.copyOf(end, 2*count);
+            heap = Arrays.copyOf(heap, 2*count);
+        }
+        arrays[count] = a;
+        pos[count] = 0;
+        end[count] = n;
+        heap[size] = count;
+        up(size++);
+        count++;
+    }
+    
+    /**
+     * Adds a whole sorted array to the union.
+     */
+    public void add(int[] a) {
+        add(a, a.length);
+    }
+    
+    private int head(int h) {
+        int i = heap[h];
+        return arrays[i][pos[i]];
+    }
+    
+    private void up(int h) {
+        int x = heap[h], v = arrays[x][pos[x]];
+        while (h > 0) {
+            int p = (h - 1) >>> 1;
+            if (head(p) <= v) break;
+            heap[h] = heap[p];
+            h = p;
+        }
+        heap[h] = x;
+    }
+    
+    private void down(int h) {
+        int x = heap[h], v = arrays[x][pos[x]];
+        while (true) {
+            int c = 2*h + 1;
+            if (c >= size) break;
+            if (c + 1 < size && head(c+1) < head(c)) c++;
+            if (head(c) >= v) break;
+            heap[h] = heap[c];
+            h = c;
+        }
+        heap[h] = x;
+    }
+    
+    /** Drops elements not bigger than the last one returned. */
+    private void skip() {
+        while (size > 0 && started && head(0) <= last) {
+            int i = heap[0];
+            if (++pos[i] < end[i]) {
+                down(0);
+            } else {
+                heap[0] = heap[--size];
+                if (size > 0) down(0);
+            }
+        }
+    }
+    
+    /**
+     * Checks, whether another element follows.
+     */
+    public boolean hasNext() {
+        skip();
+        return size > 0;
+    }
+    
+    /**
+     * Returns the next smallest element of the union.
+     * 
+     * @throws NoSuchElementException if the union is exhausted
+     */
+    public int next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        last = head(0);
+        started = true;
+        return last;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import java.util.Arrays;
+
+/**
+ * Assigns dense numbers to strings, looked up by a range of characters.
+ * 
+ * <p>Strings are numbered from {@code 0} in the order of their first
+ * occurrence. A lookup hashes the characters in place, so a string is
+ * copied out of the surrounding text only when it is seen for the first
+ * time. The class is not thread-safe.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public final class Interner {
+    
+    /** Number of the string in every slot plus one; 0 is a free slot. */
+    private int[] slots = new int[64];
+    
+    private int[] hashes = new int[32];
+    
+    private String[] strings = new String[32];
+    
+    private int size = 0;
+    
+    private static int hash(CharSequence s, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) h = 31*h + s.charAt(i);
+        return h ^ (h >>> 16);
+    }
+    
+    private static boolean same(String a, CharSequence s, int from, int to) {
+        if (a.length() != to - from) return false;
+        for (int i = 0; i < a.length(); i++)
+            if (a.charAt(i) != s.charAt(from + i)) return false;
+        return true;
+    }
+    
+    private int slot(int h, CharSequence s, int from, int to) {
+        int mask = slots.length - 1;
+        int i = h & mask;
+        while (slots[i] != 0) {
+            int k = slots[i] - 1;
+            if (hashes[k] == h && same(strings[k], s, from, to)) break;
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+    
+    /**
+     * Returns the number of a string, adding it if it is new.
+     * 
+     * @param s text containing the string
+     * @param from index of the first character of the string
+     * @param to index after the last character of the string
+     */
+    public int intern(CharSequence s, int from, int to) {
+        int h = hash(s, from, to);
+        int i = slot(h, s, from, to);
+        if (slots[i] != 0) return slots[i] - 1;
+        
+        if (size == strings.length) {
+            strings = Arrays.copyOf(strings, 2*size);
+            hashes = Arrays.copyOf(hashes, 2*size);
+        }
+        strings[size] = s.subSequence(from, to).toString();
+        hashes[size] = h;
+        slots[i] = ++size;
+        
+        if (2 * size > slots.length) {
+            slots = new int[2 * slots.length];
+            int mask = slots.length - 1;
+            for (int k = 0; k < size; k++) {
+                int j = hashes[k] & mask;
+                while (slots[j] != 0) j = (j + 1) & mask;
+                slots[j] = k + 1;
+            }
+        }
+        return size - 1;
+    }
+    
+    /**
+     * Returns the number of a whole string, adding it if it is new.
+     */
+    public int intern(String s) {
+        return intern(s, 0, s.length());
+    }
+    
+    /**
+     * Finds the number of a string.
+     * 
+     * @return the number or {@code -1} if the string was never interned
+     */
+    public int find(CharSequence s) {
+        int i = slot(hash(s, 0, s.length()), s, 0, s.length());
+        return slots[i] - 1;
+    }
+    
+    /**
+     * Returns the string with the given number.
+     */
+    public String get(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException(
+                "No string number " + id + ".");
+        return strings[id];
+    }
+    
+    /**
+     * Number of strings.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -46,6 +46,15 @@ import java.util.Map;
  */
 public class MMSet<X,Y,Z> extends HashMap<X,MSet<Y,Z>> implements Iterable<X> {
 
+    /**
+     * Creates an empty MMSet.
+     */
+    public MMSet() {}
+    
+    private MMSet(int size) {
+        super(Math.max(16, (int) (size / 0.75f) + 1));
+    }
+
     /**
      * Inserts the given key-key-value triple into the map.
      * 
@@ -89,6 +98,19 @@ public class MMSet<X,Y,Z> extends HashMap<X,MSet<Y,Z>> implements Iterable<X> {
         return out;
     }
 
+    /**
+     * Creates a copy, whose hash tables are just big enough for the content.
+     * 
+     * @return new MMSet with the same triples
+     * @see MSet#compacted()
+     */
+    public MMSet<X,Y,Z> compacted() {
+        MMSet<X,Y,Z> out = new MMSet<X,Y,Z>(size());
+        for (Map.Entry<X,MSet<Y,Z>> e : entrySet())
+            out.put(e.getKey(), e.getValue().compacted());
+        return out;
+    }
+
     /**
      * Iterates over primary keys.
      */
@@ -42,6 +42,15 @@ import java.util.Set;
  */
 public class MSet<K,V> extends HashMap<K,Set<V>> implements Iterable<K> {
 
+    /**
+     * Creates an empty MSet.
+     */
+    public MSet() {}
+    
+    private MSet(int size) {
+        super(Math.max(16, (int) (size / 0.75f) + 1));
+    }
+
     /**
      * Inserts the given key-value pair into the map.
      * 
@@ -83,6 +92,21 @@ public class MSet<K,V> extends HashMap<K,Set<V>> implements Iterable<K> {
         return out;
     }
     
+    /**
+     * Creates a copy, whose hash tables are just big enough for the content.
+     * 
+     * <p>Hash tables never shrink, so a map, from which many mappings were
+     * removed, keeps its peak size. The copy frees that memory.</p>
+     * 
+     * @return new MSet with the same mappings
+     */
+    public MSet<K,V> compacted() {
+        MSet<K,V> out = new MSet<K,V>(size());
+        for (Map.Entry<K,Set<V>> e : entrySet())
+            out.put(e.getKey(), new HashSet<V>(e.getValue()));
+        return out;
+    }
+    
     /**
      * Iterates over all keys.
      */
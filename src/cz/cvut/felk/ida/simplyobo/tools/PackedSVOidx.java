@@ -0,0 +1,796 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Three-way index, which stores triples in sorted integer arrays.
+ * 
+ * <p>Subjects, verbs and objects are dictionary-encoded to integers.
+ * Each of the four {@link SVOidx.Perm permutations} is a sorted array of
+ * encoded triples with a sparse block index over its first column, so
+ * every query is a binary search followed by a range scan. Returned sets
+ * are views of the arrays, which take no extra memory. Compared to the
+ * nested hash maps of {@link SVOidx}, a triple costs 48 bytes instead of
+ * several hash entries per permutation.</p>
+ * 
+ * <p>New triples are collected in a small hash index and merged into the
+ * arrays in batches, once the buffer grows to a fraction of the arrays.
+ * Until then, query results combine the arrays with the buffer. A merge
+ * replaces the arrays, so sets returned earlier keep showing the triples
+ * known at the time of their creation.</p>
+ * 
+ * <p>The dictionaries and arrays are immutable and published together
+ * by a single volatile write, so queries read them without locking.
+ * The lock is only taken while some triples wait in the buffer.</p>
+ * 
+ * <p>Removed triples are cut out of the arrays at once, which takes
+ * time linear in their size; use {@link #removeAll} to remove many
+ * triples in a single pass.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class PackedSVOidx<S,V,O> extends SVOidx<S,V,O> {
+    
+    /** Minimal number of buffered triples triggering a merge. */
+    private static final int MIN_BATCH = 4096;
+    
+    /** Dictionaries and arrays, replaced as a whole by every change. */
+    private volatile State<S,V,O> state = new State<S,V,O>(
+            new Dict<S>(), new Dict<V>(), new Dict<O>());
+    
+    private SVOidx<S,V,O> buffer = new SVOidx<S,V,O>();
+    
+    /** Written after {@link #state}, so it must be read before it. */
+    private volatile int buffered = 0;
+    
+    /**
+     * Creates an empty index.
+     */
+    public PackedSVOidx() {
+        super(EnumSet.of(Perm.SVO));
+    }
+    
+    /**
+     * Creates an index containing the same triples as the given one.
+     * 
+     * <p>The triples are sorted in one pass, which is much faster than
+     * adding them one by one.</p>
+     * 
+     * @param other index to be copied
+     */
+    public PackedSVOidx(SVOidx<S,V,O> other) {
+        this();
+        State<S,V,O> st = state;
+        Encoder<S> es = new Encoder<S>(st.dictS);
+        Encoder<V> ev = new Encoder<V>(st.dictV);
+        Encoder<O> eo = new Encoder<O>(st.dictO);
+        int[] t = new int[48];
+        int n = 0;
+        for (S s : other.allS())
+        for (V v : other.getVbyS(s))
+        for (O o : other.getO(s, v)) {
+            if (3*n == t.length) t = Arrays.copyOf(t, 2*t.length);
+            t[3*n  ] = es.encode(s);
+            t[3*n+1] = ev.encode(v);
+            t[3*n+2] = eo.encode(o);
+            n++;
+        }
+        state = merge(st, es.dict, ev.dict, eo.dict, t, n);
+    }
+    
+    @Override
+    public synchronized void add(S s, V v, O o) {
+        if (contains(s, v, o)) return;
+        buffer.add(s, v, o);
+        filterAdd(s, v, o);
+        modified();
+        if (++buffered >= Math.max(MIN_BATCH, state.svo.n / 4)) flush();
+    }
+    
+    /**
+     * Merges all buffered triples into the sorted arrays.
+     */
+    public synchronized void flush() {
+        if (buffered == 0) return;
+        
+        State<S,V,O> st = state;
+        Encoder<S> es = new Encoder<S>(st.dictS);
+        Encoder<V> ev = new Encoder<V>(st.dictV);
+        Encoder<O> eo = new Encoder<O>(st.dictO);
+        int[] t = new int[3*buffered];
+        int n = 0;
+        for (S s : buffer.allS())
+        for (V v : buffer.getVbyS(s))
+        for (O o : buffer.getO(s, v)) {
+            t[3*n  ] = es.encode(s);
+            t[3*n+1] = ev.encode(v);
+            t[3*n+2] = eo.encode(o);
+            n++;
+        }
+        state = merge(st, es.dict, ev.dict, eo.dict, t, n);
+        
+        buffer = new SVOidx<S,V,O>();
+        buffered = 0;
+    }
+    
+    @Override
+    public synchronized boolean remove(S s, V v, O o) {
+        SVOidx<S,V,O> one = new SVOidx<S,V,O>(EnumSet.of(Perm.SVO));
+        one.add(s, v, o);
+        return removeAll(one) > 0;
+    }
+    
+    /**
+     * Removes all given triples.
+     * 
+     * <p>Triples are removed from the arrays in a single pass, so removing
+     * many triples at once is much faster than one by one.</p>
+     */
+    @Override
+    public synchronized int removeAll(SVOidx<S,V,O> triples) {
+        if (triples == this) triples = new SVOidx<S,V,O>(
+                EnumSet.of(Perm.SVO), this);
+        
+        State<S,V,O> st = state;
+        int[] t = new int[48];
+        int n = 0, m = 0;
+        for (S s : triples.allS())
+        for (V v : triples.getVbyS(s))
+        for (O o : triples.getO(s, v)) {
+            if (buffered > 0 && buffer.remove(s, v, o)) {
+                buffered--;
+                n++;
+                continue;
+            }
+            int a = st.dictS.id(s), b = st.dictV.id(v), c = st.dictO.id(o);
+            if (!st.svo.contains(a, b, c)) continue;
+            
+            if (3*m == t.length) t = Arrays.copyOf(t, 2*t.length);
+            t[3*m  ] = a;
+            t[3*m+1] = b;
+            t[3*m+2] = c;
+            m++;
+        }
+        
+        if (m > 0) {
+            int[] p = new int[3*m];
+            state = new State<S,V,O>(st.dictS, st.dictV, st.dictO,
+                    st.svo.minus(permute(t, m, p, 0, 1, 2), m),
+                    st.ovs.minus(permute(t, m, p, 2, 1, 0), m),
+                    st.vso.minus(permute(t, m, p, 1, 0, 2), m),
+                    st.vos.minus(permute(t, m, p, 1, 2, 0), m));
+        }
+        removed += n + m;
+        if (n + m > 0) modified();
+        return n + m;
+    }
+    
+    /**
+     * Merges buffered triples and drops dictionary entries of values,
+     * which no longer occur in any triple.
+     */
+    @Override
+    public synchronized void compact() {
+        flush();
+        
+        State<S,V,O> st = state;
+        Encoder<S> es = new Encoder<S>(new Dict<S>());
+        Encoder<V> ev = new Encoder<V>(new Dict<V>());
+        Encoder<O> eo = new Encoder<O>(new Dict<O>());
+        Packed p = st.svo;
+        int[] t = new int[3*p.n];
+        for (int i = 0; i < p.n; i++) {
+            t[3*i  ] = es.encode(st.dictS.value(p.a[i]));
+            t[3*i+1] = ev.encode(st.dictV.value(p.b[i]));
+            t[3*i+2] = eo.encode(st.dictO.value(p.c[i]));
+        }
+        // Readers see either the old or the new state, never a mixture
+        state = merge(new State<S,V,O>(es.dict, ev.dict, eo.dict),
+                es.dict, ev.dict, eo.dict, t, p.n);
+        
+        if (getFilter()) setFilter(true);
+        removed = 0;
+        modified();
+    }
+    
+    /**
+     * Sorts the given SVO triples into every permutation and merges them
+     * with the arrays of a state.
+     * 
+     * @return new state with the given dictionaries
+     */
+    private static <S,V,O> State<S,V,O> merge(State<S,V,O> st,
+            Dict<S> ds, Dict<V> dv, Dict<O> dO, int[] t, int n) {
+        int[] p = new int[3*n];
+        return new State<S,V,O>(ds, dv, dO,
+                st.svo.merge(permute(t, n, p, 0, 1, 2), n),
+                st.ovs.merge(permute(t, n, p, 2, 1, 0), n),
+                st.vso.merge(permute(t, n, p, 1, 0, 2), n),
+                st.vos.merge(permute(t, n, p, 1, 2, 0), n));
+    }
+    
+    private static int[] permute(int[] t, int n, int[] p,
+            int a, int b, int c) {
+        for (int i = 0; i < n; i++) {
+            p[3*i  ] = t[3*i+a];
+            p[3*i+1] = t[3*i+b];
+            p[3*i+2] = t[3*i+c];
+        }
+        TripleSorter.sort(p, 0, n);
+        return p;
+    }
+    
+    /**
+     * Number of distinct triples in the index.
+     */
+    public synchronized int size() {
+        return state.svo.n + buffered;
+    }
+    
+    @Override
+    public Set<Perm> eager() {
+        return Collections.unmodifiableSet(EnumSet.allOf(Perm.class));
+    }
+    
+    @Override
+    public boolean isBuilt(Perm p) {
+        return true;
+    }
+    
+    /**
+     * Answers a query from the arrays and, if needed, from the buffer.
+     * 
+     * <p>The lock is taken only if some triples are buffered; the arrays
+     * are then queried again, because a merge might have emptied the
+     * buffer in the meantime.</p>
+     */
+    private <X> Set<X> ask(SVOidxQuery<S,V,O,X> query) {
+        if (buffered == 0) return query.packed(state);
+        synchronized (this) {
+            Set<X> packed = query.packed(state);
+            if (buffered == 0) return packed;
+            Set<X> extra = query.ask(buffer);
+            if (extra.isEmpty()) return packed;
+            if (packed.isEmpty()) return Collections.unmodifiableSet(extra);
+            return new Union<X>(packed, extra);
+        }
+    }
+    
+    private interface SVOidxQuery<S,V,O,X> {
+        Set<X> packed(State<S,V,O> st);
+        Set<X> ask(SVOidx<S,V,O> idx);
+    }
+    
+    @Override
+    public Set<S> allS() {
+        used(Perm.SVO);
+        return ask(new SVOidxQuery<S,V,O,S>() {
+            public Set<S> packed(State<S,V,O> st) {
+                return new Column<S>(st.dictS, st.svo.a, 0, st.svo.n, true);
+            }
+            public Set<S> ask(SVOidx<S,V,O> idx) { return idx.allS(); }
+        });
+    }
+    
+    @Override
+    public Set<V> allV() {
+        used(Perm.VSO);
+        return ask(new SVOidxQuery<S,V,O,V>() {
+            public Set<V> packed(State<S,V,O> st) {
+                return new Column<V>(st.dictV, st.vso.a, 0, st.vso.n, true);
+            }
+            public Set<V> ask(SVOidx<S,V,O> idx) { return idx.allV(); }
+        });
+    }
+    
+    @Override
+    public Set<O> allO() {
+        used(Perm.OVS);
+        return ask(new SVOidxQuery<S,V,O,O>() {
+            public Set<O> packed(State<S,V,O> st) {
+                return new Column<O>(st.dictO, st.ovs.a, 0, st.ovs.n, true);
+            }
+            public Set<O> ask(SVOidx<S,V,O> idx) { return idx.allO(); }
+        });
+    }
+    
+    @Override
+    public Set<S> getS(final V v, final O o) {
+        used(Perm.VOS);
+        return ask(new SVOidxQuery<S,V,O,S>() {
+            public Set<S> packed(State<S,V,O> st) {
+                Packed p = st.vos;
+                int x = st.dictV.id(v), y = st.dictO.id(o);
+                int from = p.lower(x, y), to = p.lower(x, y+1);
+                return new Column<S>(st.dictS, p.c, from, to, false);
+            }
+            public Set<S> ask(SVOidx<S,V,O> idx) { return idx.getS(v, o); }
+        });
+    }
+    
+    @Override
+    public Set<O> getO(final S s, final V v) {
+        used(Perm.SVO);
+        return ask(new SVOidxQuery<S,V,O,O>() {
+            public Set<O> packed(State<S,V,O> st) {
+                Packed p = st.svo;
+                int x = st.dictS.id(s), y = st.dictV.id(v);
+                int from = p.lower(x, y), to = p.lower(x, y+1);
+                return new Column<O>(st.dictO, p.c, from, to, false);
+            }
+            public Set<O> ask(SVOidx<S,V,O> idx) { return idx.getO(s, v); }
+        });
+    }
+    
+    @Override
+    public Set<V> getVbyS(final S s) {
+        used(Perm.SVO);
+        return ask(new SVOidxQuery<S,V,O,V>() {
+            public Set<V> packed(State<S,V,O> st) {
+                Packed p = st.svo;
+                int x = st.dictS.id(s);
+                int from = p.lower(x), to = p.lower(x+1);
+                return new Column<V>(st.dictV, p.b, from, to, true);
+            }
+            public Set<V> ask(SVOidx<S,V,O> idx) { return idx.getVbyS(s); }
+        });
+    }
+    
+    @Override
+    public Set<V> getVbyO(final O o) {
+        used(Perm.OVS);
+        return ask(new SVOidxQuery<S,V,O,V>() {
+            public Set<V> packed(State<S,V,O> st) {
+                Packed p = st.ovs;
+                int x = st.dictO.id(o);
+                int from = p.lower(x), to = p.lower(x+1);
+                return new Column<V>(st.dictV, p.b, from, to, true);
+            }
+            public Set<V> ask(SVOidx<S,V,O> idx) { return idx.getVbyO(o); }
+        });
+    }
+    
+    @Override
+    public Set<S> getSbyV(final V v) {
+        used(Perm.VSO);
+        return ask(new SVOidxQuery<S,V,O,S>() {
+            public Set<S> packed(State<S,V,O> st) {
+                Packed p = st.vso;
+                int x = st.dictV.id(v);
+                int from = p.lower(x), to = p.lower(x+1);
+                return new Column<S>(st.dictS, p.b, from, to, true);
+            }
+            public Set<S> ask(SVOidx<S,V,O> idx) { return idx.getSbyV(v); }
+        });
+    }
+    
+    @Override
+    public Set<O> getObyV(final V v) {
+        used(Perm.VOS);
+        return ask(new SVOidxQuery<S,V,O,O>() {
+            public Set<O> packed(State<S,V,O> st) {
+                Packed p = st.vos;
+                int x = st.dictV.id(v);
+                int from = p.lower(x), to = p.lower(x+1);
+                return new Column<O>(st.dictO, p.b, from, to, true);
+            }
+            public Set<O> ask(SVOidx<S,V,O> idx) { return idx.getObyV(v); }
+        });
+    }
+    
+    @Override
+    @Deprecated
+    public Map<V,Set<O>> getVO(S s) {
+        Map<V,Set<O>> m = new HashMap<V,Set<O>>();
+        for (V v : getVbyS(s)) m.put(v, getO(s, v));
+        return m.isEmpty() ? null : m;
+    }
+
+    @Override
+    @Deprecated
+    public Map<V,Set<S>> getVS(O o) {
+        Map<V,Set<S>> m = new HashMap<V,Set<S>>();
+        for (V v : getVbyO(o)) m.put(v, getS(v, o));
+        return m.isEmpty() ? null : m;
+    }
+
+    @Override
+    @Deprecated
+    public Map<S,Set<O>> getSO(V v) {
+        Map<S,Set<O>> m = new HashMap<S,Set<O>>();
+        for (S s : getSbyV(v)) m.put(s, getO(s, v));
+        return m.isEmpty() ? null : m;
+    }
+
+    @Override
+    @Deprecated
+    public Map<O,Set<S>> getOS(V v) {
+        Map<O,Set<S>> m = new HashMap<O,Set<S>>();
+        for (O o : getObyV(v)) m.put(o, getS(v, o));
+        return m.isEmpty() ? null : m;
+    }
+    
+    @Override
+    public boolean contains(S s, V v, O o) {
+        if (filterRejects(s, v, o)) return false;
+        
+        used(Perm.SVO);
+        boolean pending = buffered > 0;
+        State<S,V,O> st = state;
+        if (st.svo.contains(st.dictS.id(s), st.dictV.id(v), st.dictO.id(o)))
+            return true;
+        if (!pending) return filterChecked(false);
+        synchronized (this) {
+            st = state;
+            return filterChecked(st.svo.contains(st.dictS.id(s),
+                    st.dictV.id(v), st.dictO.id(o))
+                    || buffered > 0 && buffer.contains(s, v, o));
+        }
+    }
+    
+    /**
+     * Dictionaries and sorted arrays of one version of the index.
+     * Instances are immutable once published.
+     */
+    private static final class State<S,V,O> {
+        
+        final Dict<S> dictS;
+        
+        final Dict<V> dictV;
+        
+        final Dict<O> dictO;
+        
+        final Packed svo, ovs, vso, vos;
+        
+        State(Dict<S> dictS, Dict<V> dictV, Dict<O> dictO) {
+            this(dictS, dictV, dictO,
+                    Packed.EMPTY, Packed.EMPTY, Packed.EMPTY, Packed.EMPTY);
+        }
+        
+        State(Dict<S> dictS, Dict<V> dictV, Dict<O> dictO,
+                Packed svo, Packed ovs, Packed vso, Packed vos) {
+            this.dictS = dictS;
+            this.dictV = dictV;
+            this.dictO = dictO;
+            this.svo = svo;
+            this.ovs = ovs;
+            this.vso = vso;
+            this.vos = vos;
+        }
+    }
+    
+    /**
+     * Bidirectional mapping between values and dense integers.
+     * 
+     * <p>A published dictionary is never changed, so it is read without
+     * locking. New values are added to a copy by an {@link Encoder}.</p>
+     */
+    private static final class Dict<X> {
+        
+        private final Map<X,Integer> ids;
+        
+        private Object[] values;
+        
+        private int size;
+        
+        Dict() {
+            ids = new HashMap<X,Integer>();
+            values = new Object[16];
+        }
+        
+        /** Creates a copy, which can be extended. */
+        Dict(Dict<X> other) {
+            ids = new HashMap<X,Integer>(other.ids);
+            values = Arrays.copyOf(other.values,
+                    Math.max(16, 2*other.size));
+            size = other.size;
+        }
+        
+        int add(X x) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, 2*size);
+            ids.put(x, size);
+            values[size] = x;
+            return size++;
+        }
+        
+        /** Returns the code of the value or {@code -1} if it is unknown. */
+        int id(Object x) {
+            Integer i = ids.get(x);
+            return i == null ? -1 : i;
+        }
+        
+        @SuppressWarnings("unchecked")
+        X value(int i) {
+            return (X) values[i];
+        }
+    }
+    
+    /**
+     * Encodes values, copying the dictionary on the first unknown one.
+     */
+    private static final class Encoder<X> {
+        
+        Dict<X> dict;
+        
+        private boolean copied = false;
+        
+        Encoder(Dict<X> dict) {
+            this.dict = dict;
+        }
+        
+        int encode(X x) {
+            int i = dict.id(x);
+            if (i >= 0) return i;
+            if (!copied) {
+                dict = new Dict<X>(dict);
+                copied = true;
+            }
+            return dict.add(x);
+        }
+    }
+    
+    /**
+     * Lexicographically sorted triples with a block index.
+     * Instances are immutable.
+     */
+    private static final class Packed {
+        
+        static final Packed EMPTY = new Packed(new int[0], 0);
+        
+        /** Every {@code BLOCK}-th value of the first column is indexed. */
+        static final int BLOCK = 64;
+        
+        final int[] a, b, c;
+        
+        final int n;
+        
+        final int[] blocks;
+        
+        /** Creates the arrays from sorted, duplicate-free triples. */
+        Packed(int[] t, int n) {
+            this.n = n;
+            a = new int[n];
+            b = new int[n];
+            c = new int[n];
+            for (int i = 0; i < n; i++) {
+                a[i] = t[3*i];
+                b[i] = t[3*i+1];
+                c[i] = t[3*i+2];
+            }
+            blocks = new int[(n + BLOCK - 1) / BLOCK];
+            for (int i = 0; i < blocks.length; i++)
+                blocks[i] = a[i * BLOCK];
+        }
+        
+        /** First position, whose first column is at least {@code x}. */
+        int lower(int x) {
+            // First block starting with at least x
+            int lo = 0, hi = blocks.length;
+            while (lo < hi) {
+                int m = (lo + hi) >>> 1;
+                if (blocks[m] < x) lo = m + 1; else hi = m;
+            }
+            // The position is in the preceding block
+            int to = Math.min(n, lo * BLOCK);
+            lo = lo == 0 ? 0 : (lo - 1) * BLOCK;
+            hi = to;
+            while (lo < hi) {
+                int m = (lo + hi) >>> 1;
+                if (a[m] < x) lo = m + 1; else hi = m;
+            }
+            return lo;
+        }
+        
+        /** First position, whose first two columns are at least (x,y). */
+        int lower(int x, int y) {
+            int lo = lower(x), hi = lower(x+1);
+            while (lo < hi) {
+                int m = (lo + hi) >>> 1;
+                if (b[m] < y) lo = m + 1; else hi = m;
+            }
+            return lo;
+        }
+        
+        boolean contains(int x, int y, int z) {
+            if (x < 0 || y < 0 || z < 0) return false;
+            int from = lower(x, y), to = lower(x, y+1);
+            return Arrays.binarySearch(c, from, to, z) >= 0;
+        }
+        
+        /** Removes sorted triples, which are all present. */
+        Packed minus(int[] t, int m) {
+            int[] out = new int[3*n];
+            int j = 0, k = 0;
+            for (int i = 0; i < n; i++) {
+                if (j < m && a[i] == t[3*j]
+                        && b[i] == t[3*j+1] && c[i] == t[3*j+2]) {
+                    j++;
+                    continue;
+                }
+                out[3*k] = a[i]; out[3*k+1] = b[i]; out[3*k+2] = c[i];
+                k++;
+            }
+            return new Packed(out, k);
+        }
+        
+        /** Merges sorted triples (possibly with duplicates) in. */
+        Packed merge(int[] t, int m) {
+            int[] out = new int[3*(n + m)];
+            int i = 0, j = 0, k = 0;
+            while (i < n || j < m) {
+                int x, y, z;
+                int cmp = i == n ? 1 : j == m ? -1 : TripleSorter.compare(
+                        a[i], b[i], c[i], t[3*j], t[3*j+1], t[3*j+2]);
+                if (cmp <= 0) {
+                    x = a[i]; y = b[i]; z = c[i]; i++;
+                    if (cmp == 0) j++;
+                } else {
+                    x = t[3*j]; y = t[3*j+1]; z = t[3*j+2]; j++;
+                }
+                if (k > 0 && out[3*k-3] == x
+                        && out[3*k-2] == y && out[3*k-1] == z) continue;
+                out[3*k] = x; out[3*k+1] = y; out[3*k+2] = z;
+                k++;
+            }
+            return new Packed(out, k);
+        }
+    }
+    
+    /**
+     * Values of a sorted range of a column, decoded by a dictionary.
+     */
+    private static final class Column<X> extends AbstractSet<X> {
+        
+        private final Dict<X> dict;
+        
+        private final int[] col;
+        
+        private final int from, to;
+        
+        /** Whether the range may contain the same value repeatedly. */
+        private final boolean repeats;
+        
+        private int size = -1;
+        
+        Column(Dict<X> dict, int[] col, int from, int to, boolean repeats) {
+            this.dict = dict;
+            this.col = col;
+            this.from = from;
+            this.to = Math.max(from, to);
+            this.repeats = repeats;
+        }
+        
+        @Override
+        public Iterator<X> iterator() {
+            return new Iterator<X>() {
+                int i = from;
+                
+                public boolean hasNext() {
+                    return i < to;
+                }
+                
+                public X next() {
+                    if (i >= to) throw new NoSuchElementException();
+                    int x = col[i++];
+                    if (repeats) while (i < to && col[i] == x) i++;
+                    return dict.value(x);
+                }
+                
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+        
+        @Override
+        public int size() {
+            if (!repeats) return to - from;
+            if (size < 0) {
+                int k = 0;
+                for (int i = from; i < to; i++)
+                    if (i == from || col[i] != col[i-1]) k++;
+                size = k;
+            }
+            return size;
+        }
+        
+        @Override
+        public boolean isEmpty() {
+            return from == to;
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            int x = dict.id(o);
+            return x >= 0 && Arrays.binarySearch(col, from, to, x) >= 0;
+        }
+    }
+    
+    /**
+     * Union of two sets, computed on the fly.
+     */
+    private static final class Union<X> extends AbstractSet<X> {
+        
+        private final Set<X> first, second;
+        
+        Union(Set<X> first, Set<X> second) {
+            this.first = first;
+            this.second = second;
+        }
+        
+        @Override
+        public Iterator<X> iterator() {
+            final Iterator<X> one = first.iterator();
+            final Iterator<X> two = second.iterator();
+            return new Iterator<X>() {
+                X next = advance();
+                
+                private X advance() {
+                    if (one.hasNext()) return one.next();
+                    while (two.hasNext()) {
+                        X x = two.next();
+                        if (!first.contains(x)) return x;
+                    }
+                    return null;
+                }
+                
+                public boolean hasNext() {
+                    return next != null;
+                }
+                
+                public X next() {
+                    if (next == null) throw new NoSuchElementException();
+                    X x = next;
+                    next = advance();
+                    return x;
+                }
+                
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+        
+        @Override
+        public int size() {
+            int k = first.size();
+            for (X x : second) if (!first.contains(x)) k++;
+            return k;
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            return first.contains(o) || second.contains(o);
+        }
+    }
+}
@@ -22,47 +22,493 @@
 package cz.cvut.felk.ida.simplyobo.tools;
 
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Three-way index, which builds a lot of indexes.
  * 
- * TODO: Documentation of SVOidx
+ * <p>Triples are stored in up to four nested maps ({@link Perm permutations}),
+ * each of them answering a different kind of query. The SVO permutation
+ * is always maintained, because it holds the triples. Other permutations
+ * are either maintained eagerly on every {@link #add(Object,Object,Object)},
+ * or built in bulk from SVO when they are queried for the first time and
+ * kept up to date from then on.</p>
+ * 
+ * <p>On request, the index counts queries answered by each permutation,
+ * see {@link #setCounting(boolean)} and {@link #uses(Perm)}, so that the
+ * eagerly maintained permutations can be tuned for a given workload.
+ * The same switch enables statistics of the Bloom filter. Counting is
+ * off by default, as it adds a shared atomic update to every query.</p>
  *
  * @author Radomír Černoch (radomir.cernoch at gmail.com)
  */
 public class SVOidx<S,V,O> {
     
-    private final MMSet<S,V,O> SVO = new MMSet<S,V,O>();
+    /**
+     * Order of the keys in a nested map of the index.
+     */
+    public enum Perm {
+        /** Answers {@link #getO}, {@link #getVbyS} and {@link #contains}. */
+        SVO,
+        /** Answers {@link #getVbyO} and {@link #allO}. */
+        OVS,
+        /** Answers {@link #getSbyV}. */
+        VSO,
+        /** Answers {@link #getS}, {@link #getObyV} and {@link #allV}. */
+        VOS;
+    }
+    
+    private final EnumSet<Perm> eager;
+    
+    private final AtomicLongArray uses
+            = new AtomicLongArray(Perm.values().length);
+    
+    private volatile boolean counting = false;
+    
+    private volatile MMSet<S,V,O> SVO = new MMSet<S,V,O>();
+    
+    private volatile BloomFilter filter = null;
+    
+    /** Triples removed since the last compaction. */
+    protected long removed = 0;
+    
+    /** Plain field like the permutations, which are not thread-safe either. */
+    private long modifications = 0;
+    
+    /** Rejected, passed and falsely passed queries of the filter. */
+    private final AtomicLongArray filterStats = new AtomicLongArray(3);
+    
+    private volatile MMSet<O,V,S> OVS = null;
     
-    private final MMSet<O,V,S> OVS = new MMSet<O,V,S>();
+    private volatile MMSet<V,S,O> VSO = null;
     
-    private final MMSet<V,S,O> VSO = new MMSet<V,S,O>();
+    private volatile MMSet<V,O,S> VOS = null;
     
-    private final MMSet<V,O,S> VOS = new MMSet<V,O,S>();
+    /**
+     * Creates an empty index, which maintains all permutations.
+     */
+    public SVOidx() {
+        this(EnumSet.allOf(Perm.class));
+    }
+    
+    /**
+     * Creates an empty index, which maintains the given permutations.
+     * 
+     * @param eager permutations maintained from the start; SVO is always
+     * maintained, the others are built on their first query
+     */
+    public SVOidx(Set<Perm> eager) {
+        this.eager = eager.isEmpty()
+                ? EnumSet.noneOf(Perm.class) : EnumSet.copyOf(eager);
+        this.eager.add(Perm.SVO);
+        
+        if (this.eager.contains(Perm.OVS)) OVS = new MMSet<O,V,S>();
+        if (this.eager.contains(Perm.VSO)) VSO = new MMSet<V,S,O>();
+        if (this.eager.contains(Perm.VOS)) VOS = new MMSet<V,O,S>();
+    }
+    
+    /**
+     * Creates an index containing the same triples as the given one.
+     * 
+     * <p>The new index maintains the same permutations eagerly.
+     * Later changes to either index do not affect the other.</p>
+     * 
+     * @param other index to be copied
+     */
+    public SVOidx(SVOidx<S,V,O> other) {
+        this(other.eager, other);
+    }
+    
+    /**
+     * Creates an index containing the same triples as the given one.
+     * 
+     * @param eager permutations maintained from the start
+     * @param other index to be copied
+     */
+    public SVOidx(Set<Perm> eager, SVOidx<S,V,O> other) {
+        this(eager);
+        for (S s : other.allS())
+        for (V v : other.getVbyS(s))
+        for (O o : other.getO(s, v))
+            add(s, v, o);
+    }
     
     public void add(S s, V v, O o) {
-        SVO.add(s,v,o);
-        OVS.add(o,v,s);
-        VSO.add(v,s,o);
-        VOS.add(v,o,s);
+        if (!SVO.add(s,v,o)) return;
+        filterAdd(s, v, o);
+        modified();
+        
+        MMSet<O,V,S> ovs = OVS;
+        if (ovs != null) ovs.add(o,v,s);
+        
+        MMSet<V,S,O> vso = VSO;
+        if (vso != null) vso.add(v,s,o);
+        
+        MMSet<V,O,S> vos = VOS;
+        if (vos != null) vos.add(v,o,s);
+    }
+    
+    /**
+     * Removes a triple from all permutations.
+     * 
+     * <p>Emptied keys are dropped, but hash tables keep their size until
+     * {@link #compact()} is called.</p>
+     * 
+     * @return {@code true} if the index contained the triple
+     */
+    public boolean remove(S s, V v, O o) {
+        if (!SVO.rem(s,v,o)) return false;
+        
+        MMSet<O,V,S> ovs = OVS;
+        if (ovs != null) ovs.rem(o,v,s);
+        
+        MMSet<V,S,O> vso = VSO;
+        if (vso != null) vso.rem(v,s,o);
+        
+        MMSet<V,O,S> vos = VOS;
+        if (vos != null) vos.rem(v,o,s);
+        
+        removed++;
+        modified();
+        return true;
+    }
+    
+    /**
+     * Removes all given triples.
+     * 
+     * @param triples triples to be removed
+     * @return number of triples, which were removed
+     */
+    public int removeAll(SVOidx<S,V,O> triples) {
+        if (triples == this) triples = new SVOidx<S,V,O>(
+                EnumSet.of(Perm.SVO), this);
+        
+        int n = 0;
+        for (S s : triples.allS())
+        for (V v : triples.getVbyS(s))
+        for (O o : triples.getO(s, v))
+            if (remove(s, v, o)) n++;
+        return n;
+    }
+    
+    /**
+     * Removes all triples with the given subject.
+     * 
+     * @return number of triples, which were removed
+     */
+    public int removeBySubject(S s) {
+        SVOidx<S,V,O> doomed = new SVOidx<S,V,O>(EnumSet.of(Perm.SVO));
+        for (V v : getVbyS(s))
+        for (O o : getO(s, v))
+            doomed.add(s, v, o);
+        return removeAll(doomed);
+    }
+    
+    /**
+     * Removes all triples with the given object.
+     * 
+     * <p>Together with {@link #removeBySubject} it removes an obsolete
+     * term from the index.</p>
+     * 
+     * @return number of triples, which were removed
+     */
+    public int removeByObject(O o) {
+        SVOidx<S,V,O> doomed = new SVOidx<S,V,O>(EnumSet.of(Perm.SVO));
+        for (V v : getVbyO(o))
+        for (S s : getS(v, o))
+            doomed.add(s, v, o);
+        return removeAll(doomed);
+    }
+    
+    /**
+     * Number of triples removed since the last {@link #compact()}.
+     */
+    public long removed() {
+        return removed;
+    }
+    
+    /**
+     * Releases memory left over by removed triples.
+     * 
+     * <p>Eagerly maintained permutations are copied into tightly sized
+     * hash tables. Lazily built ones are dropped and built again on their
+     * next query. The Bloom filter, which cannot forget removed triples,
+     * is rebuilt.</p>
+     * 
+     * <p>Sets returned by queries before compaction keep showing the old
+     * tables and do not reflect later changes.</p>
+     */
+    public synchronized void compact() {
+        SVO = SVO.compacted();
+        
+        MMSet<O,V,S> ovs = OVS;
+        if (ovs != null) OVS = eager.contains(Perm.OVS) ? ovs.compacted() : null;
+        
+        MMSet<V,S,O> vso = VSO;
+        if (vso != null) VSO = eager.contains(Perm.VSO) ? vso.compacted() : null;
+        
+        MMSet<V,O,S> vos = VOS;
+        if (vos != null) VOS = eager.contains(Perm.VOS) ? vos.compacted() : null;
+        
+        if (filter != null) setFilter(true);
+        removed = 0;
+        modified();
+    }
+    
+    /**
+     * Counts changes of the index.
+     * 
+     * <p>The number grows with every added or removed triple and with
+     * every {@link #compact()}. Caches built from the index keep it and
+     * compare it to find out whether they are still up to date.</p>
+     * 
+     * <p>The counter is a plain field, so that adding triples costs no
+     * shared atomic update. Readers in other threads see it as current as
+     * the triples themselves, i.e. after the index was handed over to
+     * them safely.</p>
+     */
+    public long modifications() {
+        return modifications;
+    }
+    
+    /**
+     * Records a change of the index; subclasses call it on every change.
+     */
+    protected final void modified() {
+        modifications++;
+    }
+    
+    /**
+     * Permutations, which are maintained from the start.
+     */
+    public Set<Perm> eager() {
+        return Collections.unmodifiableSet(eager);
+    }
+    
+    /**
+     * Indicates whether the permutation is built.
+     * 
+     * @param p queried permutation
+     * @return {@code true} if it is maintained eagerly or it was queried
+     */
+    public boolean isBuilt(Perm p) {
+        switch (p) {
+            case OVS: return OVS != null;
+            case VSO: return VSO != null;
+            case VOS: return VOS != null;
+            default:  return true;
+        }
+    }
+    
+    /**
+     * Switches counting of queries on or off.
+     * 
+     * <p>Counts are kept when counting is switched off and resumed when
+     * it is switched on again.</p>
+     */
+    public void setCounting(boolean on) {
+        counting = on;
+    }
+    
+    /**
+     * Indicates whether queries are counted.
+     */
+    public boolean isCounting() {
+        return counting;
+    }
+    
+    /**
+     * Number of queries answered by the permutation.
+     * 
+     * @param p queried permutation
+     * @return number of queries counted since the creation of the index
+     * @see #setCounting(boolean)
+     */
+    public long uses(Perm p) {
+        return uses.get(p.ordinal());
+    }
+    
+    /**
+     * Puts a Bloom filter in front of {@link #contains}.
+     * 
+     * <p>The filter answers most queries for absent triples without
+     * touching the index. It is built from the triples already stored,
+     * kept up to date by {@link #add(Object,Object,Object)} and rebuilt
+     * twice as big whenever it fills up.</p>
+     * 
+     * @param on {@code true} to build the filter, {@code false} to drop it
+     */
+    public void setFilter(boolean on) {
+        if (!on) { filter = null; return; }
+        
+        int n = 0;
+        for (S s : allS())
+        for (V v : getVbyS(s))
+            n += getO(s, v).size();
+        buildFilter(2 * n);
+    }
+    
+    /**
+     * Indicates whether {@link #contains} is fronted by a Bloom filter.
+     */
+    public boolean getFilter() {
+        return filter != null;
+    }
+    
+    /**
+     * Number of {@link #contains} queries answered by the filter alone.
+     * 
+     * @see #setCounting(boolean)
+     */
+    public long filterRejected() {
+        return filterStats.get(0);
+    }
+    
+    /**
+     * Number of {@link #contains} queries passed by the filter to the index.
+     * 
+     * @see #setCounting(boolean)
+     */
+    public long filterPassed() {
+        return filterStats.get(1);
+    }
+    
+    /**
+     * Number of queries passed by the filter for absent triples.
+     * 
+     * @see #setCounting(boolean)
+     */
+    public long filterFalsePositives() {
+        return filterStats.get(2);
+    }
+    
+    private void buildFilter(int capacity) {
+        BloomFilter f = new BloomFilter(capacity);
+        for (S s : allS())
+        for (V v : getVbyS(s))
+        for (O o : getO(s, v))
+            f.add(BloomFilter.hash(s, v, o));
+        filter = f;
+    }
+    
+    /**
+     * Records a new triple in the filter, if there is one.
+     */
+    protected final void filterAdd(S s, V v, O o) {
+        BloomFilter f = filter;
+        if (f == null) return;
+        f.add(BloomFilter.hash(s, v, o));
+        if (f.count() > f.capacity()) buildFilter(2 * f.capacity());
+    }
+    
+    /**
+     * Checks the filter before a lookup.
+     * 
+     * @return {@code true} if the triple is certainly absent
+     */
+    protected final boolean filterRejects(S s, V v, O o) {
+        BloomFilter f = filter;
+        if (f == null) return false;
+        if (f.mightContain(BloomFilter.hash(s, v, o))) {
+            if (counting) filterStats.incrementAndGet(1);
+            return false;
+        }
+        if (counting) filterStats.incrementAndGet(0);
+        return true;
+    }
+    
+    /**
+     * Counts the result of a lookup passed by the filter.
+     * 
+     * @param found result of the lookup
+     * @return {@code found}
+     */
+    protected final boolean filterChecked(boolean found) {
+        if (!found && counting && filter != null)
+            filterStats.incrementAndGet(2);
+        return found;
+    }
+    
+    /**
+     * Counts a query answered by the given permutation.
+     */
+    protected void used(Perm p) {
+        if (counting) uses.incrementAndGet(p.ordinal());
+    }
+    
+    private MMSet<S,V,O> svo() {
+        used(Perm.SVO);
+        return SVO;
+    }
+    
+    private MMSet<O,V,S> ovs() {
+        used(Perm.OVS);
+        MMSet<O,V,S> x = OVS;
+        if (x == null) synchronized (this) {
+            x = OVS;
+            if (x == null) {
+                x = new MMSet<O,V,S>();
+                for (Map.Entry<S,MSet<V,O>> sEntry : SVO.entrySet())
+                for (Map.Entry<V,Set<O>> vEntry : sEntry.getValue().entrySet())
+                for (O o : vEntry.getValue())
+                    x.add(o, vEntry.getKey(), sEntry.getKey());
+                OVS = x;
+            }
+        }
+        return x;
+    }
+    
+    private MMSet<V,S,O> vso() {
+        used(Perm.VSO);
+        MMSet<V,S,O> x = VSO;
+        if (x == null) synchronized (this) {
+            x = VSO;
+            if (x == null) {
+                x = new MMSet<V,S,O>();
+                for (Map.Entry<S,MSet<V,O>> sEntry : SVO.entrySet())
+                for (Map.Entry<V,Set<O>> vEntry : sEntry.getValue().entrySet())
+                for (O o : vEntry.getValue())
+                    x.add(vEntry.getKey(), sEntry.getKey(), o);
+                VSO = x;
+            }
+        }
+        return x;
+    }
+    
+    private MMSet<V,O,S> vos() {
+        used(Perm.VOS);
+        MMSet<V,O,S> x = VOS;
+        if (x == null) synchronized (this) {
+            x = VOS;
+            if (x == null) {
+                x = new MMSet<V,O,S>();
+                for (Map.Entry<S,MSet<V,O>> sEntry : SVO.entrySet())
+                for (Map.Entry<V,Set<O>> vEntry : sEntry.getValue().entrySet())
+                for (O o : vEntry.getValue())
+                    x.add(vEntry.getKey(), o, sEntry.getKey());
+                VOS = x;
+            }
+        }
+        return x;
     }
 
     public Set<S> allS() {
-        return Collections.unmodifiableSet(SVO.keySet());
+        return Collections.unmodifiableSet(svo().keySet());
     }
     
     public Set<V> allV() {
-        return Collections.unmodifiableSet(VOS.keySet());
+        return Collections.unmodifiableSet(vos().keySet());
     }
     
     public Set<O> allO() {
-        return Collections.unmodifiableSet(OVS.keySet());
+        return Collections.unmodifiableSet(ovs().keySet());
     }
     
     public Set<S> getS(V v, O o) {
-        MSet<O,S> x = VOS.get(v);
+        MSet<O,S> x = vos().get(v);
         if (x == null) return Collections.EMPTY_SET;
         
         Set<S> y = x.get(o);
@@ -72,7 +518,7 @@ public class SVOidx<S,V,O> {
     }
     
     public Set<O> getO(S s, V v) {
-        MSet<V,O> x = SVO.get(s);
+        MSet<V,O> x = svo().get(s);
         if (x == null) return Collections.EMPTY_SET;
         
         Set<O> y = x.get(v);
@@ -82,56 +528,58 @@ public class SVOidx<S,V,O> {
     }
         
     public Set<V> getVbyS(S s) {
-        MSet<V,O> x = SVO.get(s);
+        MSet<V,O> x = svo().get(s);
         if (x == null) return Collections.EMPTY_SET;                        
         return Collections.unmodifiableSet(x.keySet());
     }
     
     public Set<V> getVbyO(O o) {
-        MSet<V,S> x = OVS.get(o);
+        MSet<V,S> x = ovs().get(o);
         if (x == null) return Collections.EMPTY_SET;                        
         return Collections.unmodifiableSet(x.keySet());
     }
     
     public Set<S> getSbyV(V v) {
-        MSet<S,O> x = VSO.get(v);
+        MSet<S,O> x = vso().get(v);
         if (x == null) return Collections.EMPTY_SET;                        
         return Collections.unmodifiableSet(x.keySet());
     }
     
     public Set<O> getObyV(V v) {
-        MSet<O,S> x = VOS.get(v);
+        MSet<O,S> x = vos().get(v);
         if (x == null) return Collections.EMPTY_SET;                        
         return Collections.unmodifiableSet(x.keySet());
     }
     
     @Deprecated
     public Map<V,Set<O>> getVO(S s) {
-        return SVO.get(s);
+        return svo().get(s);
     }
 
     @Deprecated
     public Map<V,Set<S>> getVS(O o) {
-        return OVS.get(o);
+        return ovs().get(o);
     }
 
     @Deprecated
     public Map<S,Set<O>> getSO(V v) {
-        return VSO.get(v);
+        return vso().get(v);
     }
 
     @Deprecated
     public Map<O,Set<S>> getOS(V v) {
-        return VOS.get(v);
+        return vos().get(v);
     }
     
     public boolean contains(S s, V v, O o) {
-        MSet<V,O> x = SVO.get(s);
-        if (x == null) return false;
+        if (filterRejects(s, v, o)) return false;
+        
+        MSet<V,O> x = svo().get(s);
+        if (x == null) return filterChecked(false);
         
         Set<O> y = x.get(v);     
-        if (y == null) return false;
+        if (y == null) return filterChecked(false);
                 
-        return y.contains(o);
+        return filterChecked(y.contains(o));
     }
-}
\ No newline at end of file
+}
@@ -37,13 +37,17 @@ public final class SetUtils {
     /**
      * Computes the intersection of two sets.
      * 
+     * <p>The smaller set is iterated and the bigger one is probed.
+     * Sets of integers are better intersected as {@link IntBitmap}s.</p>
+     * 
      * @param <X> type of the set
      * @param a one set
      * @param b second set
      * @return items, which are contained in both sets
      */
     public static <X> Set<X> intersection(Set<X> a, Set<X> b) {
-        Set<X> out = new HashSet<X>();
+        if (a.size() > b.size()) { Set<X> t = a; a = b; b = t; }
+        Set<X> out = new HashSet<X>(2 * a.size());
         for (X x : a) if (b.contains(x)) out.add(x);
         return out;
     }
@@ -57,7 +61,8 @@ public final class SetUtils {
      * @return set containing the {@code set} and {@code arr}
      */
     public static <X> Set<X> merge(Set<X> set, X... arr) {
-        Set<X> out = new HashSet<X>(set);
+        Set<X> out = new HashSet<X>(2 * (set.size() + arr.length));
+        out.addAll(set);
         out.addAll(Arrays.asList(arr));
         return out;
     }
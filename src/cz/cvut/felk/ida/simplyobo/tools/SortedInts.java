@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+/**
+ * Searches in sorted arrays of distinct integers.
+ * 
+ * <p>{@link IntBitmap} uses it to skip over the keys of the bigger set,
+ * when intersecting or subtracting sets of very different sizes.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public final class SortedInts {
+    
+    private SortedInts() {}
+    
+    /**
+     * Finds the first element at least as big as the key.
+     * 
+     * <p>The search probes positions {@code from+1}, {@code from+3},
+     * {@code from+7}, ... and then bisects the last step. It is therefore
+     * fast if the result is close to {@code from}.</p>
+     * 
+     * @param a sorted array
+     * @param from first position searched
+     * @param to position after the last one searched
+     * @param key searched value
+     * @return the smallest {@code i} in {@code [from,to)} such that
+     * {@code a[i] >= key}, or {@code to}
+     */
+    public static int gallop(int[] a, int from, int to, int key) {
+        if (from >= to || a[from] >= key) return from;
+        
+        // a[lo] < key holds throughout
+        int lo = from, step = 1;
+        while (lo + step < to && a[lo + step] < key) {
+            lo += step;
+            step <<= 1;
+        }
+        int hi = Math.min(to, lo + step);
+        
+        lo++;
+        while (lo < hi) {
+            int m = (lo + hi) >>> 1;
+            if (a[m] < key) lo = m + 1; else hi = m;
+        }
+        return lo;
+    }
+}
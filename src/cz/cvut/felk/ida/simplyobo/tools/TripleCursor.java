@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import java.io.IOException;
+
+/**
+ * Reads a sequence of integer triples one by one.
+ * 
+ * <p>A cursor starts before the first triple; call {@link #next()} to move
+ * onto it. Components of the current triple are returned by {@link #a()},
+ * {@link #b()} and {@link #c()}.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public interface TripleCursor {
+    
+    /**
+     * Moves to the next triple.
+     * 
+     * @return {@code false} if there are no more triples
+     * @throws IOException if the underlying file cannot be read
+     */
+    public boolean next() throws IOException;
+    
+    /**
+     * First component of the current triple.
+     */
+    public int a();
+    
+    /**
+     * Second component of the current triple.
+     */
+    public int b();
+    
+    /**
+     * Third component of the current triple.
+     */
+    public int c();
+    
+    /**
+     * Releases resources held by the cursor.
+     * 
+     * @throws IOException if the underlying file cannot be closed
+     */
+    public void close() throws IOException;
+    
+}
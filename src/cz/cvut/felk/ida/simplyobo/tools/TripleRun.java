@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * File of integer triples, which can be read repeatedly.
+ * 
+ * <p>The run is written once from a {@link TripleCursor} and then opened
+ * any number of times. Triples are stored as raw big-endian integers, so
+ * the order of the triples is the order of the written cursor.</p>
+ * 
+ * <p>The file is removed only by {@link #delete()}, which the owner must
+ * call also when an error occurs. It is not registered for deletion on
+ * exit, since the JVM would keep the path of every run until then.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class TripleRun {
+    
+    private static final int BUFFER = 1 << 16;
+    
+    private final File file;
+    
+    private long size = 0;
+
+    /**
+     * Creates an empty run in a new temporary file.
+     * 
+     * @param dir directory for the file or {@code null} for the default
+     * @throws IOException if the file cannot be created
+     */
+    public TripleRun(File dir) throws IOException {
+        file = File.createTempFile("simplyobo", ".run", dir);
+    }
+    
+    /**
+     * Replaces the content of the run by all triples of the cursor.
+     * 
+     * <p>The cursor is closed afterwards.</p>
+     * 
+     * @param in triples to be written
+     * @return number of written triples
+     * @throws IOException if the file cannot be written
+     */
+    public long write(TripleCursor in) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file), BUFFER));
+        size = 0;
+        try {
+            while (in.next()) {
+                out.writeInt(in.a());
+                out.writeInt(in.b());
+                out.writeInt(in.c());
+                size++;
+            }
+        } finally {
+            out.close();
+            in.close();
+        }
+        return size;
+    }
+    
+    /**
+     * Number of triples in the run.
+     */
+    public long size() {
+        return size;
+    }
+    
+    /**
+     * Opens the run for reading from the first triple.
+     * 
+     * @return cursor over the triples
+     * @throws IOException if the file cannot be opened
+     */
+    public TripleCursor open() throws IOException {
+        final long n = size;
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file), BUFFER));
+        
+        return new TripleCursor() {
+            private long read = 0;
+            private int a, b, c;
+            
+            @Override
+            public boolean next() throws IOException {
+                if (read == n) return false;
+                a = in.readInt();
+                b = in.readInt();
+                c = in.readInt();
+                read++;
+                return true;
+            }
+
+            @Override
+            public int a() { return a; }
+
+            @Override
+            public int b() { return b; }
+
+            @Override
+            public int c() { return c; }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+    
+    /**
+     * Deletes the underlying file. It can be called repeatedly.
+     */
+    public void delete() {
+        file.delete();
+        size = 0;
+    }
+}
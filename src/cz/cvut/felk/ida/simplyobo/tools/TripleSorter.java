@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorts integer triples, which do not need to fit into memory.
+ * 
+ * <p>Triples are collected in a buffer of fixed capacity. Whenever the buffer
+ * is full, it is sorted and spilled into a {@link TripleRun}. The sorted
+ * result is produced by merging all runs. Triples are ordered
+ * lexicographically by {@code (a, b, c)}; to sort in another order, permute
+ * the components when adding them.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class TripleSorter {
+    
+    private final File dir;
+    
+    private final int capacity;
+    
+    private final List<TripleRun> runs = new ArrayList<TripleRun>();
+    
+    private int[] buf = new int[3*16];
+    
+    private int n = 0;
+
+    /**
+     * Creates an empty sorter.
+     * 
+     * @param dir directory for spilled runs or {@code null} for the default
+     * @param capacity maximum number of triples kept in memory
+     */
+    public TripleSorter(File dir, int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive.");
+        
+        this.dir = dir;
+        this.capacity = capacity;
+    }
+    
+    /**
+     * Adds a triple to be sorted.
+     * 
+     * @throws IOException if a full buffer cannot be spilled
+     */
+    public void add(int a, int b, int c) throws IOException {
+        if (n == capacity) spill();
+        
+        if (3*n == buf.length)
+            buf = Arrays.copyOf(buf,
+                    3 * (int) Math.min(capacity, 2L*n));
+        
+        buf[3*n] = a; buf[3*n+1] = b; buf[3*n+2] = c;
+        n++;
+    }
+    
+    /**
+     * Number of runs spilled to the disk so far.
+     */
+    public int spilled() {
+        return runs.size();
+    }
+    
+    private void spill() throws IOException {
+        sort(buf, 0, n);
+        TripleRun run = new TripleRun(dir);
+        // Registered first, so that discard() deletes a half-written run
+        runs.add(run);
+        run.write(new Buffer(buf, n));
+        n = 0;
+    }
+    
+    /**
+     * Deletes all spilled runs.
+     * 
+     * <p>The sorter must not be used afterwards, nor the cursor returned
+     * by {@link #sort()}. Calling it again, or after the cursor has been
+     * closed, does nothing.</p>
+     */
+    public void discard() {
+        for (TripleRun run : runs) run.delete();
+        runs.clear();
+        buf = null;
+    }
+    
+    /**
+     * Returns all added triples sorted and without duplicates.
+     * 
+     * <p>The sorter must not be used after calling this method. Spilled runs
+     * are deleted when the returned cursor is closed.</p>
+     * 
+     * @return sorted triples
+     * @throws IOException if the runs cannot be read
+     */
+    public TripleCursor sort() throws IOException {
+        sort(buf, 0, n);
+        
+        List<TripleCursor> ins = new ArrayList<TripleCursor>();
+        ins.add(new Buffer(buf, n));
+        try {
+            for (TripleRun run : runs) ins.add(run.open());
+        } catch (IOException ex) {
+            for (TripleCursor in : ins) in.close();
+            discard();
+            throw ex;
+        }
+        buf = null;
+        
+        final TripleCursor merged = union(ins);
+        return new TripleCursor() {
+            @Override
+            public boolean next() throws IOException { return merged.next(); }
+            @Override
+            public int a() { return merged.a(); }
+            @Override
+            public int b() { return merged.b(); }
+            @Override
+            public int c() { return merged.c(); }
+            @Override
+            public void close() throws IOException {
+                merged.close();
+                for (TripleRun run : runs) run.delete();
+                runs.clear();
+            }
+        };
+    }
+    
+    /**
+     * Compares two triples lexicographically.
+     */
+    public static int compare(int a1, int b1, int c1, int a2, int b2, int c2) {
+        if (a1 != a2) return a1 < a2 ? -1 : 1;
+        if (b1 != b2) return b1 < b2 ? -1 : 1;
+        if (c1 != c2) return c1 < c2 ? -1 : 1;
+        return 0;
+    }
+    
+    private static int compare(TripleCursor x, TripleCursor y) {
+        return compare(x.a(), x.b(), x.c(), y.a(), y.b(), y.c());
+    }
+    
+    /**
+     * Merges sorted cursors into one sorted cursor without duplicates.
+     * 
+     * @param ins sorted cursors, which are closed with the result
+     * @return union of all input triples
+     */
+    public static TripleCursor union(final List<TripleCursor> ins) {
+        return new TripleCursor() {
+            
+            // Binary min-heap of cursors, which are not exhausted
+            private final TripleCursor[] heap = new TripleCursor[ins.size()];
+            private int size = -1;
+            private int a, b, c;
+            private boolean first = true;
+            
+            private void down(int i) {
+                TripleCursor x = heap[i];
+                while (2*i+1 < size) {
+                    int j = 2*i+1;
+                    if (j+1 < size && compare(heap[j+1], heap[j]) < 0) j++;
+                    if (compare(heap[j], x) >= 0) break;
+                    heap[i] = heap[j];
+                    i = j;
+                }
+                heap[i] = x;
+            }
+            
+            @Override
+            public boolean next() throws IOException {
+                if (size < 0) {
+                    size = 0;
+                    for (TripleCursor in : ins)
+                        if (in.next()) heap[size++] = in;
+                    for (int i = size/2 - 1; i >= 0; i--) down(i);
+                }
+                
+                while (size > 0) {
+                    TripleCursor top = heap[0];
+                    boolean dup = !first && a == top.a()
+                            && b == top.b() && c == top.c();
+                    if (!dup) {
+                        a = top.a(); b = top.b(); c = top.c();
+                        first = false;
+                    }
+                    
+                    if (!top.next()) heap[0] = heap[--size];
+                    if (size > 0) down(0);
+                    if (!dup) return true;
+                }
+                return false;
+            }
+
+            @Override
+            public int a() { return a; }
+
+            @Override
+            public int b() { return b; }
+
+            @Override
+            public int c() { return c; }
+
+            @Override
+            public void close() throws IOException {
+                for (TripleCursor in : ins) in.close();
+            }
+        };
+    }
+    
+    /**
+     * Returns triples of one sorted cursor, which are not in another.
+     * 
+     * @param x sorted triples to be returned
+     * @param y sorted triples to be left out
+     * @return sorted difference, which closes both inputs
+     */
+    public static TripleCursor minus(final TripleCursor x,
+                                     final TripleCursor y) {
+        return new TripleCursor() {
+            private boolean yValid = true;
+            private boolean yStarted = false;
+            
+            @Override
+            public boolean next() throws IOException {
+                if (!yStarted) { yValid = y.next(); yStarted = true; }
+                
+                while (x.next()) {
+                    int cmp = -1;
+                    while (yValid && (cmp = compare(y, x)) < 0)
+                        yValid = y.next();
+                    
+                    if (!yValid || cmp != 0) return true;
+                }
+                return false;
+            }
+
+            @Override
+            public int a() { return x.a(); }
+
+            @Override
+            public int b() { return x.b(); }
+
+            @Override
+            public int c() { return x.c(); }
+
+            @Override
+            public void close() throws IOException {
+                x.close();
+                y.close();
+            }
+        };
+    }
+    
+    /**
+     * Sorts triples {@code from} (inclusive) to {@code to} (exclusive)
+     * stored in a flat array.
+     */
+    static void sort(int[] t, int from, int to) {
+        while (to - from > 16) {
+            int p = from + (to - from) / 2;
+            int pa = t[3*p], pb = t[3*p+1], pc = t[3*p+2];
+            
+            // Hoare partitioning by the middle triple
+            int i = from - 1, j = to;
+            while (true) {
+                do i++; while (compare(t[3*i],t[3*i+1],t[3*i+2],pa,pb,pc) < 0);
+                do j--; while (compare(t[3*j],t[3*j+1],t[3*j+2],pa,pb,pc) > 0);
+                if (i >= j) break;
+                swap(t, i, j);
+            }
+            
+            // Recurse into the smaller half, loop over the larger one
+            if (j + 1 - from < to - j - 1) {
+                sort(t, from, j + 1);
+                from = j + 1;
+            } else {
+                sort(t, j + 1, to);
+                to = j + 1;
+            }
+        }
+        
+        for (int i = from + 1; i < to; i++)
+        for (int j = i; j > from && compare(t[3*j-3], t[3*j-2], t[3*j-1],
+                t[3*j], t[3*j+1], t[3*j+2]) > 0; j--)
+            swap(t, j, j-1);
+    }
+    
+    private static void swap(int[] t, int i, int j) {
+        for (int k = 0; k < 3; k++) {
+            int x = t[3*i+k];
+            t[3*i+k] = t[3*j+k];
+            t[3*j+k] = x;
+        }
+    }
+    
+    /**
+     * Cursor over a sorted buffer, which skips duplicates.
+     */
+    private static class Buffer implements TripleCursor {
+        
+        private final int[] t;
+        private final int n;
+        private int i = -1;
+
+        Buffer(int[] t, int n) {
+            this.t = t;
+            this.n = n;
+        }
+
+        @Override
+        public boolean next() {
+            do { i++; } while (i < n && i > 0 && t[3*i] == t[3*i-3]
+                    && t[3*i+1] == t[3*i-2] && t[3*i+2] == t[3*i-1]);
+            return i < n;
+        }
+
+        @Override
+        public int a() { return t[3*i]; }
+
+        @Override
+        public int b() { return t[3*i+1]; }
+
+        @Override
+        public int c() { return t[3*i+2]; }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.tools.IntBitmap;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests gene annotations of the small ontology.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class AnnotationsTest {
+    
+    private Ontology onto;
+    
+    private Annotations ann;
+    
+    @Before
+    public void setUp() throws IOException {
+        onto = new Ontology(new InputStreamReader(
+                getClass().getResourceAsStream("small.obo")));
+        ann = new Annotations(onto, new InputStreamReader(
+                getClass().getResourceAsStream("small.gaf")));
+    }
+    
+    private Term t(int id) {
+        return onto.findTerm(id);
+    }
+    
+    @Test
+    public void testCounts() {
+        assertEquals(4, ann.genes());
+        assertEquals(3, ann.annotatedGenes());
+        assertEquals(1, ann.unknown());
+        assertEquals(1, ann.negated());
+        
+        assertEquals(3, ann.count(t(1)));
+        assertEquals(2, ann.count(t(2)));
+        assertEquals(1, ann.count(t(6)));
+        assertEquals(2, ann.count(t(9)));
+        assertEquals(11, ann.counts().size());
+    }
+    
+    @Test
+    public void testTruePath() {
+        // Gene A of term 6 reaches 5 by part_of from 4, then 3 by is_a
+        IntBitmap a = ann.genes(t(3));
+        assertEquals(3, a.cardinality());
+        assertEquals("UniProtKB:A", ann.gene(ann.genes(t(4)).next(0)));
+        assertEquals(2, ann.count(t(5)));
+        assertEquals(2, ann.count(t(8)));
+    }
+    
+    @Test
+    public void testParallel() throws IOException {
+        ExecutorService exec = Executors.newFixedThreadPool(2);
+        try {
+            Annotations par = new Annotations(onto, new InputStreamReader(
+                    getClass().getResourceAsStream("small.gaf")), exec);
+            for (Term t : onto.allTerms())
+                assertEquals(ann.genes(t), par.genes(t));
+        } finally {
+            exec.shutdown();
+        }
+    }
+    
+    @Test
+    public void testInformationContent() {
+        Similarity sim = new Similarity(ann);
+        assertEquals(0, sim.ic(t(1)), 1e-9);
+        assertEquals(Math.log(3), sim.ic(t(6)), 1e-9);
+        assertEquals(Math.log(3. / 2), sim.ic(t(2)), 1e-9);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.parser.LineByLineParser;
+import cz.cvut.felk.ida.simplyobo.parser.StanzaCollector;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the batch queries of {@link Ontology} on the small ontology.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class BatchQueryTest {
+    
+    private Ontology onto;
+    
+    @Before
+    public void setUp() throws IOException {
+        onto = new Ontology(new InputStreamReader(
+                getClass().getResourceAsStream("small.obo")));
+    }
+    
+    @Test
+    public void testFindTerms() {
+        Term[] out = new Term[3];
+        onto.findTerms(new int[] {5, 42, 1}, out);
+        assertEquals(onto.findTerm(5), out[0]);
+        assertNull(out[1]);
+        assertEquals(onto.findTerm(1), out[2]);
+    }
+    
+    @Test
+    public void testFindTermsAfterParse() throws IOException {
+        Term[] out = new Term[2];
+        onto.findTerms(new int[] {42, 5}, out);
+        assertNull(out[0]);
+        
+        new LineByLineParser(new StanzaCollector(onto)).parse(
+                new StringReader("format-version: 1.2\n\n"
+                + "[Term]\nid: GO:0000042\nis_a: GO:0000005\n\n"));
+        onto.findTerms(new int[] {42, 5}, out);
+        assertEquals(onto.findTerm(42), out[0]);
+        assertEquals(onto.findTerm(5), out[1]);
+    }
+    
+    @Test
+    public void testRelation() {
+        int[] ids = {5, 42, 9, 4};
+        int[][] r = onto.relation(ids, onto.findType("part_of"));
+        assertArrayEquals(new int[] {0, 1, 1, 2, 3}, r[0]);
+        assertArrayEquals(new int[] {8, 8, 5}, r[1]);
+        
+        // Buffer too small: offsets only, the needed size is returned
+        int[] offsets = new int[ids.length + 1];
+        assertEquals(3, onto.relation(ids, onto.findType("part_of"),
+                offsets, new int[1]));
+        assertArrayEquals(r[0], offsets);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testShortOffsets() {
+        onto.relation(new int[] {5, 4}, onto.findType("part_of"),
+                new int[2], new int[8]);
+    }
+    
+    @Test
+    public void testRelationAfterRemoval() {
+        Type partOf = onto.findType("part_of");
+        assertEquals(1, onto.relation(new int[] {4}, partOf)[1].length);
+        
+        onto.svoIdx.removeBySubject((Ontology.TermImpl) onto.findTerm(4));
+        assertEquals(0, onto.relation(new int[] {4}, partOf)[1].length);
+    }
+    
+    @Test
+    public void testIsA() {
+        int[][] r = onto.relation(new int[] {5, 1}, null);
+        assertArrayEquals(new int[] {0, 2, 2}, r[0]);
+        assertEquals(2, r[1].length);
+        assertTrue(r[1][0] + r[1][1] == 5 && r[1][0] * r[1][1] == 6);
+    }
+}
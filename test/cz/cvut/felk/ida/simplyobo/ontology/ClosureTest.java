@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.parser.LineByLineParser;
+import cz.cvut.felk.ida.simplyobo.parser.StanzaCollector;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link Reasoner} on a small ontology with cycles.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class ClosureTest {
+
+    protected Reasoner onto;
+
+    @Before
+    public void setUp() throws IOException {
+        onto = new Reasoner();
+        load(onto);
+    }
+    
+    protected void load(Ontology o) throws IOException {
+        Reader oboFile = new InputStreamReader(
+                getClass().getResourceAsStream("small.obo"));
+
+        new LineByLineParser(new StanzaCollector(o)).parse(oboFile);
+    }
+    
+    protected Set<Term> terms(Integer... ids) {
+        Set<Term> out = new HashSet<Term>();
+        for (Integer id : ids) out.add(onto.findTerm(id));
+        return out;
+    }
+
+    @Test
+    public void testTransitiveWithCycle() {
+        Type partOf = onto.findType("part_of");
+        
+        assertEquals(terms(5,8,9), onto.findTerm(4).relation(partOf));
+        assertEquals(terms(8,9),   onto.findTerm(5).relation(partOf));
+        assertEquals(terms(8,9),   onto.findTerm(8).relation(partOf));
+        assertEquals(terms(8,9),   onto.findTerm(9).relation(partOf));
+    }
+    
+    @Test
+    public void testTransitiveOver() {
+        Type regulates = onto.findType("regulates");
+        
+        assertEquals(terms(4,5,8,9), onto.findTerm(10).relation(regulates));
+    }
+    
+    @Test
+    public void testStreaming() throws IOException {
+        final List<String> triples = new ArrayList<String>();
+        
+        onto = new Reasoner();
+        onto.setRetainInferred(false);
+        onto.setListener(new InferenceListener() {
+            @Override
+            public void onInferred(Term s, Type v, Term o) {
+                triples.add(s.id() + " " + v.id() + " " + o.id());
+            }
+        });
+        load(onto);
+        
+        assertEquals(15, triples.size());
+        assertTrue(triples.contains("10 regulates 9"));
+        assertTrue(triples.contains("8 part_of 8"));
+        assertTrue(triples.contains("3 has_part 6"));
+        
+        // 'part_of' is needed for 'regulates', 'has_part' is not stored
+        Type partOf = onto.findType("part_of");
+        Type hasPart = onto.findType("has_part");
+        assertEquals(terms(5,8,9), onto.findTerm(4).relation(partOf));
+        assertEquals(terms(7), onto.findTerm(3).relation(hasPart));
+    }
+    
+    @Test
+    public void testStreamingKeepsOnlyNeeded() throws IOException {
+        for (long budget : new long[] {0, 48}) {
+            final List<Object[]> triples = new ArrayList<Object[]>();
+            onto = new Reasoner();
+            onto.setRetainInferred(false);
+            onto.setMemoryBudget(budget, null);
+            onto.setListener(new InferenceListener() {
+                @Override
+                public void onInferred(Term s, Type v, Term o) {
+                    triples.add(new Object[] {s, v, o});
+                }
+            });
+            load(onto);
+            
+            // Only 'part_of' is needed for deriving other relations
+            Type partOf = onto.findType("part_of");
+            assertEquals(15, triples.size());
+            for (Object[] t : triples) {
+                Term s = (Term) t[0], o = (Term) t[2];
+                Type v = (Type) t[1];
+                if (v != partOf) assertFalse(s.relation(v).contains(o));
+            }
+            assertTrue(onto.findTerm(7).relation(
+                    onto.findType("surrounds")).isEmpty());
+        }
+    }
+    
+    @Test
+    public void testFilter() throws IOException {
+        onto = new Reasoner();
+        onto.setFilter(true);
+        onto.triples().setCounting(true);
+        load(onto);
+        
+        Type regulates = onto.findType("regulates");
+        assertEquals(terms(4,5,8,9), onto.findTerm(10).relation(regulates));
+        assertTrue(onto.triples().getFilter());
+        assertTrue(onto.triples().filterRejected() > 0);
+    }
+    
+    @Test
+    public void testBackground() throws Exception {
+        ExecutorService exec = Executors.newSingleThreadExecutor();
+        final CountDownLatch latch = new CountDownLatch(1);
+        exec.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws InterruptedException {
+                latch.await();
+                return null;
+            }
+        });
+        
+        onto = new Reasoner(exec);
+        load(onto);
+        
+        Type regulates = onto.findType("regulates");
+        assertFalse(onto.isReasoned());
+        assertEquals(terms(4), onto.findTerm(10).relation(regulates));
+        
+        latch.countDown();
+        onto.future().get();
+        
+        assertTrue(onto.isReasoned());
+        assertEquals(1.0, onto.progress(), 0.0);
+        assertEquals(terms(4,5,8,9), onto.findTerm(10).relation(regulates));
+        exec.shutdown();
+    }
+    
+    @Test
+    public void testMemoryBudget() throws IOException {
+        onto = new Reasoner();
+        onto.setMemoryBudget(48, null);
+        load(onto);
+        
+        Type partOf = onto.findType("part_of");
+        Type regulates = onto.findType("regulates");
+        assertEquals(terms(5,8,9), onto.findTerm(4).relation(partOf));
+        assertEquals(terms(8,9),   onto.findTerm(9).relation(partOf));
+        assertEquals(terms(4,5,8,9), onto.findTerm(10).relation(regulates));
+    }
+    
+    @Test
+    public void testProgress() throws IOException {
+        onto = new Reasoner();
+        final List<Double> seen = recordProgress(onto);
+        load(onto);
+        assertProgress(seen);
+    }
+    
+    @Test
+    public void testProgressMemoryBudget() throws IOException {
+        onto = new Reasoner();
+        onto.setMemoryBudget(48, null);
+        final List<Double> seen = recordProgress(onto);
+        load(onto);
+        assertProgress(seen);
+    }
+    
+    private List<Double> recordProgress(final Reasoner r) {
+        final List<Double> seen = new ArrayList<Double>();
+        r.setListener(new InferenceListener() {
+            @Override
+            public void onInferred(Term s, Type v, Term o) {
+                seen.add(r.progress());
+            }
+        });
+        return seen;
+    }
+    
+    private void assertProgress(List<Double> seen) {
+        assertFalse(seen.isEmpty());
+        for (int i = 1; i < seen.size(); i++)
+            assertTrue(seen.get(i - 1) <= seen.get(i));
+        assertTrue(seen.get(seen.size() - 1) < 1);
+        assertTrue(seen.get(seen.size() - 1) > 0);
+        assertTrue(onto.isReasoned());
+        assertEquals(1.0, onto.progress(), 0.0);
+    }
+    
+    @Test
+    public void testAxioms() {
+        Term t2 = onto.findTerm(2);
+        Term t3 = onto.findTerm(3);
+        
+        // symmetric
+        assertEquals(terms(2), t3.relation(onto.findType("adjacent_to")));
+        assertEquals(terms(3), t2.relation(onto.findType("adjacent_to")));
+        
+        // inverse
+        assertEquals(terms(6), onto.findTerm(7).relation(
+                onto.findType("surrounds")));
+        
+        // chain
+        Type locIn = onto.findType("located_in");
+        assertEquals(terms(3), onto.findTerm(4).relation(locIn));
+        assertEquals(terms(3), onto.findTerm(9).relation(locIn));
+        
+        // sub-relation
+        assertEquals(terms(6), onto.findTerm(11).relation(
+                onto.findType("regulates")));
+    }
+    
+    @Test
+    public void testPropagateOverIsA() throws IOException {
+        onto = new Reasoner();
+        onto.setPropagateOverIsA(true);
+        load(onto);
+        
+        // 6 is_a 4 part_of 5, which is_a 2 and 3, which is_a 1
+        Type partOf = onto.findType("part_of");
+        assertEquals(terms(1,2,3,5,8,9), onto.findTerm(6).relation(partOf));
+        assertEquals(terms(1,8,9), onto.findTerm(7).relation(partOf));
+    }
+}
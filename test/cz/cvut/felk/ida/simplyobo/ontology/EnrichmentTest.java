@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.ontology.Enrichment.Correction;
+import cz.cvut.felk.ida.simplyobo.ontology.Enrichment.Hit;
+import cz.cvut.felk.ida.simplyobo.tools.IntBitmap;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the enrichment analysis on generated annotations.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class EnrichmentTest {
+    
+    private static final double EPS = 1e-12;
+    
+    private Ontology onto;
+    
+    private Annotations ann;
+    
+    private Enrichment enr;
+    
+    @Before
+    public void setUp() throws IOException {
+        onto = new Ontology(new InputStreamReader(
+                getClass().getResourceAsStream("small.obo")));
+        
+        // Genes 0-9 annotated with term 6, genes 10-59 with term 10
+        StringBuilder gaf = new StringBuilder();
+        for (int i = 0; i < 60; i++)
+            gaf.append("DB\tg").append(i).append("\tg\tenables\tGO:")
+               .append(i < 10 ? "0000006" : "0000010").append("\tREF\tIDA\n");
+        ann = new Annotations(onto, new StringReader(gaf.toString()));
+        enr = new Enrichment(ann);
+    }
+    
+    private static double choose(int n, int k) {
+        double c = 1;
+        for (int i = 0; i < k; i++) c = c * (n - i) / (i + 1);
+        return c;
+    }
+    
+    private static double tail(int k, int size, int n, int total) {
+        double p = 0;
+        for (int i = k; i <= Math.min(size, n); i++)
+            p += choose(size, i) * choose(total - size, n - i);
+        return p / choose(total, n);
+    }
+    
+    private IntBitmap study(int... genes) {
+        List<String> names = new ArrayList<String>();
+        for (int g : genes) names.add("DB:g" + g);
+        return ann.geneSet(names);
+    }
+    
+    @Test
+    public void testUpperTail() {
+        assertEquals(tail(3, 10, 8, 60), enr.upperTail(3, 10, 8, 60), EPS);
+        assertEquals(tail(1, 10, 8, 60), enr.upperTail(1, 10, 8, 60), EPS);
+        assertEquals(tail(8, 10, 8, 60), enr.upperTail(8, 10, 8, 60), EPS);
+        assertEquals(1, enr.upperTail(0, 10, 8, 60), EPS);
+        assertEquals(0, enr.upperTail(9, 10, 8, 60), EPS);
+    }
+    
+    @Test
+    public void testSingle() {
+        List<Hit> hits = enr.test(study(0, 1, 2, 3, 20), Correction.NONE);
+        
+        Hit first = hits.get(0);
+        assertEquals(4, first.overlap());
+        assertEquals(10, first.termSize());
+        assertEquals(tail(4, 10, 5, 60), first.p(), EPS);
+        
+        // The root contains every gene, so it is not enriched at all
+        Hit last = hits.get(hits.size() - 1);
+        assertEquals(60, last.termSize());
+        assertEquals(1, last.p(), EPS);
+        
+        for (int i = 1; i < hits.size(); i++)
+            assertTrue(hits.get(i-1).p() <= hits.get(i).p());
+    }
+    
+    @Test
+    public void testCorrection() {
+        IntBitmap s = study(0, 1, 2, 3, 20);
+        List<Hit> raw = enr.test(s, Correction.NONE);
+        List<Hit> bonf = enr.test(s, Correction.BONFERRONI);
+        List<Hit> bh = enr.test(s, Correction.BENJAMINI_HOCHBERG);
+        
+        // Terms 7 and 11 have no genes and are not tested
+        int tests = 9;
+        assertEquals(Math.min(1, raw.get(0).p() * tests),
+                bonf.get(0).adjusted(), EPS);
+        for (int i = 0; i < bh.size(); i++) {
+            assertTrue(bh.get(i).adjusted() >= bh.get(i).p());
+            assertTrue(bh.get(i).adjusted() <= bonf.get(i).adjusted() + EPS);
+            if (i > 0) assertTrue(
+                    bh.get(i-1).adjusted() <= bh.get(i).adjusted());
+        }
+    }
+    
+    @Test
+    public void testBatch() {
+        List<IntBitmap> studies = Arrays.asList(
+                study(0, 1, 2, 3, 20), study(10, 11, 12), study(5));
+        ExecutorService exec = Executors.newFixedThreadPool(2);
+        try {
+            List<List<Hit>> out = enr.test(studies,
+                    Correction.BENJAMINI_HOCHBERG, exec);
+            assertEquals(3, out.size());
+            for (int i = 0; i < 3; i++) {
+                List<Hit> one = enr.test(studies.get(i),
+                        Correction.BENJAMINI_HOCHBERG);
+                assertEquals(one.size(), out.get(i).size());
+                for (int j = 0; j < one.size(); j++)
+                    assertEquals(one.get(j).adjusted(),
+                            out.get(i).get(j).adjusted(), EPS);
+            }
+        } finally {
+            exec.shutdown();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests lowest common ancestors on the small ontology.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class LcaIndexTest {
+    
+    private Ontology onto;
+    
+    private LcaIndex idx;
+    
+    @Before
+    public void setUp() throws IOException {
+        onto = new Ontology(new InputStreamReader(
+                getClass().getResourceAsStream("small.obo")));
+        idx = onto.lcaIndex();
+    }
+    
+    private Term t(int id) {
+        return onto.findTerm(id);
+    }
+    
+    @Test
+    public void testDepth() {
+        assertEquals(0, idx.depth(t(1)));
+        assertEquals(2, idx.depth(t(5)));
+        assertEquals(3, idx.depth(t(7)));
+    }
+    
+    @Test
+    public void testCycle() throws IOException {
+        // 2 and 3 form an is_a cycle below 1; 4 hangs below the cycle
+        Ontology o = new Ontology(new StringReader("format-version: 1.2\n\n"
+                + "[Term]\nid: GO:0000001\n\n"
+                + "[Term]\nid: GO:0000002\nis_a: GO:0000001\n"
+                + "is_a: GO:0000003\n\n"
+                + "[Term]\nid: GO:0000003\nis_a: GO:0000002\n\n"
+                + "[Term]\nid: GO:0000004\nis_a: GO:0000003\n\n"));
+        LcaIndex x = o.lcaIndex();
+        Levels levels = o.levels();
+        for (Term t : o.allTerms())
+            assertEquals(levels.maxDepth(t), x.depth(t));
+        assertEquals(3, x.depth(o.findTerm(4)));
+        
+        Set<Term> cycle = new HashSet<Term>(Arrays.asList(
+                o.findTerm(2), o.findTerm(3)));
+        assertTrue(cycle.contains(x.lca(o.findTerm(2), o.findTerm(3))));
+        assertTrue(cycle.contains(x.lca(o.findTerm(4), o.findTerm(2))));
+        assertEquals(o.findTerm(1), x.lca(o.findTerm(1), o.findTerm(4)));
+    }
+    
+    @Test
+    public void testLca() {
+        assertEquals(t(2), idx.lca(t(6), t(7)));
+        assertEquals(t(1), idx.lca(t(4), t(10)));
+        assertEquals(t(5), idx.lca(t(5), t(7)));
+        assertEquals(t(5), idx.lca(t(5), t(5)));
+        assertSame(idx, onto.lcaIndex());
+    }
+    
+    @Test
+    public void testMultipleInheritance() {
+        // The spanning tree reaches 7 through 2, not through 3
+        assertEquals(t(3), idx.lca(t(7), t(10)));
+        assertEquals(t(3), idx.lca(t(11), t(7)));
+    }
+    
+    @Test
+    public void testAllLowest() {
+        assertEquals(new HashSet<Term>(Arrays.asList(t(3))),
+                idx.lowestCommonAncestors(t(7), t(10)).asSet());
+        assertEquals(new HashSet<Term>(Arrays.asList(t(2))),
+                idx.lowestCommonAncestors(t(6), t(7)).asSet());
+    }
+    
+    @Test
+    public void testBatch() {
+        Term[] out = new Term[3];
+        idx.lca(new Term[] {t(6), t(4), t(7)},
+                new Term[] {t(7), t(10), t(10)}, out);
+        assertArrayEquals(new Term[] {t(2), t(1), t(3)}, out);
+    }
+    
+    @Test
+    public void testAgreesWithAncestors() {
+        for (int a = 1; a <= 11; a++)
+        for (int b = 1; b <= 11; b++) {
+            Term x = idx.lca(t(a), t(b));
+            assertTrue(idx.lowestCommonAncestors(t(a), t(b)).contains(x));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the topological order and levels of terms.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class LevelsTest {
+    
+    private Ontology onto;
+    
+    private Levels lv;
+    
+    @Before
+    public void setUp() throws IOException {
+        onto = new Ontology(new InputStreamReader(
+                getClass().getResourceAsStream("small.obo")));
+        lv = onto.levels();
+    }
+    
+    private Term t(int id) {
+        return onto.findTerm(id);
+    }
+    
+    private static String term(int id, int... parents) {
+        StringBuilder b = new StringBuilder("[Term]\nid: GO:")
+                .append(String.format("%07d", id)).append('\n');
+        for (int p : parents)
+            b.append("is_a: GO:").append(String.format("%07d", p)).append('\n');
+        return b.append('\n').toString();
+    }
+    
+    @Test
+    public void testOrder() {
+        List<Term> down = lv.topDown();
+        assertEquals(11, down.size());
+        Set<Term> seen = new HashSet<Term>();
+        for (Term x : down) {
+            for (Term p : x.isA()) assertTrue(seen.contains(p));
+            seen.add(x);
+        }
+        assertEquals(down.get(0), lv.bottomUp().get(10));
+    }
+    
+    @Test
+    public void testDepthAndLevels() {
+        assertEquals(0, lv.maxDepth(t(1)));
+        assertEquals(2, lv.maxDepth(t(5)));
+        assertEquals(3, lv.minDepth(t(7)));
+        assertEquals(4, lv.height());
+        assertEquals(4, lv.level(1).cardinality());
+        assertTrue(lv.level(3).contains(t(6)));
+        assertSame(lv, onto.levels());
+    }
+    
+    @Test
+    public void testMinMax() throws IOException {
+        String obo = term(1) + term(2, 1) + term(3, 2) + term(4, 3)
+                + term(5, 1, 3);
+        Ontology o = new Ontology(new StringReader(obo));
+        Levels l = o.levels();
+        assertEquals(1, l.minDepth(o.findTerm(5)));
+        assertEquals(3, l.maxDepth(o.findTerm(5)));
+    }
+    
+    @Test
+    public void testDeepChain() throws IOException {
+        StringBuilder obo = new StringBuilder(term(1));
+        for (int i = 2; i <= 50000; i++) obo.append(term(i, i - 1));
+        Ontology o = new Ontology(new StringReader(obo.toString()));
+        assertEquals(49999, o.levels().maxDepth(o.findTerm(50000)));
+        assertEquals(50000, o.levels().height());
+    }
+    
+    @Test
+    public void testCycle() throws IOException {
+        Ontology o = new Ontology(new StringReader(
+                term(1) + term(2, 1, 3) + term(3, 2) + term(4, 3)));
+        Levels l = o.levels();
+        assertEquals(4, l.topDown().size());
+        assertTrue(l.maxDepth(o.findTerm(4)) > l.maxDepth(o.findTerm(3)));
+    }
+    
+    @Test
+    public void testAggregate() {
+        Levels.Aggregator<Integer> paths = new Levels.Aggregator<Integer>() {
+            @Override
+            public Integer onTerm(Term term, List<Integer> children) {
+                int sum = 1;
+                for (Integer c : children) sum += c;
+                return sum;
+            }
+        };
+        
+        Map<Term,Integer> seq = lv.aggregate(paths, null);
+        assertEquals(13, (int) seq.get(t(1)));
+        assertEquals(5, (int) seq.get(t(3)));
+        assertEquals(1, (int) seq.get(t(7)));
+        
+        ExecutorService exec = Executors.newFixedThreadPool(2);
+        try {
+            assertEquals(seq, lv.aggregate(paths, exec));
+        } finally {
+            exec.shutdown();
+        }
+    }
+}
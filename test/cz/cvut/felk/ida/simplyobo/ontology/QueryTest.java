@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.parser.LineByLineParser;
+import cz.cvut.felk.ida.simplyobo.parser.StanzaCollector;
+import cz.cvut.felk.ida.simplyobo.tools.SVOidx;
+import cz.cvut.felk.ida.simplyobo.tools.SVOidx.Perm;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link Query} on the small ontology with cycles.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class QueryTest {
+
+    private Reasoner onto;
+    
+    private Type partOf, regulates, locatedIn;
+
+    @Before
+    public void setUp() throws IOException {
+        onto = new Reasoner();
+        Reader oboFile = new InputStreamReader(
+                getClass().getResourceAsStream("small.obo"));
+        new LineByLineParser(new StanzaCollector(onto)).parse(oboFile);
+        
+        partOf = onto.findType("part_of");
+        regulates = onto.findType("regulates");
+        locatedIn = onto.findType("located_in");
+    }
+    
+    @Test
+    public void testJoin() {
+        Query q = new Query();
+        Query.Var a = q.var("a"), t = q.var("t"), u = q.var("u");
+        q.where(a, regulates, t)
+         .where(t, partOf, u)
+         .where(u, locatedIn, onto.findTerm(3));
+        
+        Set<String> found = new HashSet<String>();
+        for (Query.Solution s : q.run(onto))
+            found.add(s.term(a).id() + " " + s.term(t).id()
+                    + " " + s.term(u).id());
+        
+        // The same query written by hand
+        Set<String> expected = new HashSet<String>();
+        for (Term x : onto.allTerms())
+        for (Term y : x.relation(regulates))
+        for (Term z : y.relation(partOf))
+            if (z.relation(locatedIn).contains(onto.findTerm(3)))
+                expected.add(x.id() + " " + y.id() + " " + z.id());
+        
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, found);
+    }
+    
+    @Test
+    public void testVariableRelation() {
+        Query q = new Query();
+        Query.Var r = q.var("r");
+        q.where(onto.findTerm(10), r, onto.findTerm(9));
+        
+        int n = 0;
+        for (Query.Solution s : q.run(onto)) {
+            assertEquals(regulates, s.type(r));
+            n++;
+        }
+        assertEquals(1, n);
+    }
+    
+    @Test
+    public void testLimit() {
+        Query q = new Query();
+        Query.Var x = q.var("x"), y = q.var("y");
+        q.where(x, partOf, y).limit(2);
+        
+        int n = 0;
+        for (Query.Solution s : q.run(onto)) n++;
+        assertEquals(2, n);
+    }
+    
+    @Test
+    public void testPlan() {
+        Query q = new Query();
+        Query.Var x = q.var("x"), r = q.var("r"), y = q.var("y");
+        q.where(x, r, y).where(onto.findTerm(10), regulates, x);
+        
+        // The bound pattern is evaluated first, its result feeds the other
+        List<Object[]> plan = q.plan(onto.statistics());
+        assertEquals(regulates, plan.get(0)[1]);
+        
+        // 10 regulates 4,5,8,9 and 11 regulates 6 as a sub-relation
+        assertEquals(5, onto.statistics().triples(regulates));
+        assertEquals(2, onto.statistics().subjects(regulates));
+    }
+    
+    @Test
+    public void testStatisticsAfterRemoval() {
+        assertEquals(5, onto.statistics().triples(regulates));
+        
+        onto.svoIdx.removeBySubject((Ontology.TermImpl) onto.findTerm(10));
+        assertEquals(1, onto.statistics().triples(regulates));
+        assertEquals(1, onto.statistics().subjects(regulates));
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStatisticsUseSvoOnly() {
+        SVOidx<Term,Type,Term> all = (SVOidx<Term,Type,Term>) (SVOidx) onto.triples();
+        SVOidx<Term,Type,Term> svo
+                = new SVOidx<Term,Type,Term>(EnumSet.of(Perm.SVO), all);
+        Statistics st = new Statistics(svo);
+        
+        for (Perm p : EnumSet.of(Perm.OVS, Perm.VSO, Perm.VOS))
+            assertFalse(svo.isBuilt(p));
+        
+        long triples = 0;
+        for (Type v : all.allV()) {
+            long n = 0;
+            for (Term x : all.getSbyV(v)) n += all.getO(x, v).size();
+            assertEquals(n, st.triples(v));
+            assertEquals(all.getSbyV(v).size(), st.subjects(v));
+            assertEquals(all.getObyV(v).size(), st.objects(v));
+            triples += n;
+        }
+        assertEquals(triples, st.triples());
+        assertEquals(onto.statistics().estimate(null, true, true),
+                st.estimate(null, true, true), 1e-9);
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.ontology.Traversal.Edge;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests random walks over the small ontology.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class RandomWalksTest {
+    
+    private Ontology onto;
+    
+    @Before
+    public void setUp() throws IOException {
+        onto = new Ontology(new InputStreamReader(
+                getClass().getResourceAsStream("small.obo")));
+    }
+    
+    private Term t(int id) {
+        return onto.findTerm(id);
+    }
+    
+    /** Collects walks as lists. */
+    private static class Collector implements RandomWalks.WalkListener {
+        
+        final List<List<Integer>> walks = new ArrayList<List<Integer>>();
+        
+        @Override
+        public void onWalk(int[] ids, int offset, int length) {
+            List<Integer> w = new ArrayList<Integer>();
+            for (int i = 0; i < length; i++) w.add(ids[offset + i]);
+            walks.add(w);
+        }
+    }
+    
+    @Test
+    public void testSteps() {
+        RandomWalks rw = new RandomWalks(onto, Edge.isA(), Edge.isA().inverse());
+        assertEquals(11, rw.startCount());
+        assertEquals(2 * 11, rw.edgeCount());
+        
+        Collector c = new Collector();
+        long total = rw.generate(3, 10, 7, null, c);
+        assertEquals(33, c.walks.size());
+        
+        long sum = 0;
+        for (List<Integer> w : c.walks) {
+            assertEquals(10, w.size());
+            sum += w.size();
+            for (int i = 1; i < w.size(); i++) {
+                Term a = t(w.get(i-1)), b = t(w.get(i));
+                assertTrue(a.isA().contains(b) || b.isA().contains(a));
+            }
+        }
+        assertEquals(sum, total);
+    }
+    
+    @Test
+    public void testDeadEnd() {
+        RandomWalks rw = new RandomWalks(onto, Edge.isA());
+        assertEquals(10, rw.startCount());
+        
+        Collector c = new Collector();
+        rw.generate(1, 10, 7, null, c);
+        for (List<Integer> w : c.walks) {
+            assertEquals(1, (int) w.get(w.size() - 1));
+            assertTrue(w.size() <= 4);
+        }
+    }
+    
+    @Test
+    public void testThreads() throws InterruptedException {
+        RandomWalks rw = new RandomWalks(onto,
+                new Edge[] {Edge.isA(), Edge.isA().inverse()},
+                new double[] {1, 1}, 0.5, 2);
+        
+        Collector single = new Collector();
+        rw.generate(100, 20, 42, null, single);
+        
+        ExecutorService exec = Executors.newFixedThreadPool(4);
+        try {
+            Collector multi = new Collector();
+            rw.generate(100, 20, 42, exec, multi);
+            assertEquals(single.walks, multi.walks);
+            
+            Collector other = new Collector();
+            rw.generate(100, 20, 43, exec, other);
+            assertFalse(single.walks.equals(other.walks));
+        } finally {
+            exec.shutdown();
+        }
+    }
+    
+    @Test
+    public void testWeights() {
+        // Term 5 is_a 2 and 3, part_of 8
+        RandomWalks rw = new RandomWalks(onto,
+                new Edge[] {Edge.isA(), Edge.of(onto.findType("part_of"))},
+                new double[] {1, 2}, 1, 1);
+        
+        Collector c = new Collector();
+        rw.generate(4000, 2, 1, null, c);
+        int from5 = 0, to8 = 0;
+        for (List<Integer> w : c.walks) {
+            if (w.get(0) != 5) continue;
+            from5++;
+            if (w.get(1) == 8) to8++;
+        }
+        assertEquals(4000, from5);
+        assertEquals(0.5, to8 / (double) from5, 0.05);
+    }
+    
+    @Test
+    public void testReturn() {
+        Edge[] both = {Edge.isA(), Edge.isA().inverse()};
+        double[] ones = {1, 1};
+        
+        Collector back = new Collector();
+        new RandomWalks(onto, both, ones, 0.01, 1).generate(200, 3, 1, null, back);
+        Collector plain = new Collector();
+        new RandomWalks(onto, both, ones, 1, 1).generate(200, 3, 1, null, plain);
+        Collector away = new Collector();
+        new RandomWalks(onto, both, ones, 100, 1).generate(200, 3, 1, null, away);
+        
+        // Leaves have to return, whatever the bias
+        assertTrue(returns(back) > 0.9);
+        assertTrue(returns(plain) > returns(away) + 0.1);
+    }
+    
+    private static double returns(Collector c) {
+        int n = 0;
+        for (List<Integer> w : c.walks)
+            if (w.get(2).equals(w.get(0))) n++;
+        return n / (double) c.walks.size();
+    }
+    
+    @Test
+    public void testWrite() throws IOException {
+        RandomWalks rw = new RandomWalks(onto, Edge.isA(), Edge.isA().inverse());
+        Collector c = new Collector();
+        rw.generate(5, 8, 3, null, c);
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long total = rw.write(5, 8, 3, null, bytes);
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        for (List<Integer> w : c.walks) {
+            assertEquals(w.size(), in.readInt());
+            for (int id : w) assertEquals(id, in.readInt());
+        }
+        assertEquals(-1, in.read());
+        assertEquals(5 * 11 * 8, total);
+        
+        StringWriter text = new StringWriter();
+        rw.write(5, 8, 3, null, text);
+        BufferedReader lines = new BufferedReader(
+                new StringReader(text.toString()));
+        for (List<Integer> w : c.walks) {
+            String[] tokens = lines.readLine().split(" ");
+            assertEquals(w.size(), tokens.length);
+            for (int i = 0; i < tokens.length; i++)
+                assertEquals((int) w.get(i), Integer.parseInt(tokens[i]));
+        }
+        assertNull(lines.readLine());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadWeight() {
+        new RandomWalks(onto, new Edge[] {Edge.isA()}, new double[] {0}, 1, 1);
+    }
+}
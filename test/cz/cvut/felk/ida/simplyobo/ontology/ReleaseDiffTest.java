@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.ontology.ReleaseDiff.Snapshot;
+import cz.cvut.felk.ida.simplyobo.parser.LineByLineParser;
+import cz.cvut.felk.ida.simplyobo.parser.StanzaCollector;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests differences between two small releases.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class ReleaseDiffTest {
+    
+    private static final String TYPEDEF
+            = "[Typedef]\nid: part_of\nname: part_of\nis_transitive: true\n\n";
+    
+    private static final String OLD = "format-version: 1.2\n\n"
+            + "[Term]\nid: GO:0000001\nname: root\n\n"
+            + "[Term]\nid: GO:0000002\nname: two\nis_a: GO:0000001 ! root\n\n"
+            + "[Term]\nid: GO:0000003\nname: three\nis_a: GO:0000001\n"
+            + "relationship: part_of GO:0000002 ! two\n\n"
+            + "[Term]\nid: GO:0000004\nname: four\nis_a: GO:0000001\n"
+            + "relationship: part_of GO:0000003\n\n" + TYPEDEF;
+    
+    private static final String NEW = "format-version: 1.2\n\n"
+            + "[Term]\nid: GO:0000004\nname: four\nis_a: GO:0000001\n"
+            + "relationship: part_of GO:0000003\n\n"
+            + "[Term]\nid: GO:0000001\nname: root\n\n"
+            + "[Term]\nid: GO:0000002\nname: second\nis_a: GO:0000001\n\n"
+            + "[Term]\nid: GO:0000003\nname: three\nis_a: GO:0000001\n\n"
+            + "[Term]\nid: GO:0000005\nname: five\nis_a: GO:0000002\n\n"
+            + TYPEDEF;
+    
+    /** Records changes as strings. */
+    private static class Recorder implements DiffListener {
+        
+        final List<String> seen = new ArrayList<String>();
+        
+        @Override
+        public void onTermAdded(int id, String name) {
+            seen.add("+" + id + " " + name);
+        }
+        
+        @Override
+        public void onTermRemoved(int id, String name) {
+            seen.add("-" + id + " " + name);
+        }
+        
+        @Override
+        public void onTermRenamed(int id, String oldName, String newName) {
+            seen.add("~" + id + " " + oldName + ">" + newName);
+        }
+        
+        @Override
+        public void onEdgeAdded(int from, String type, int to) {
+            seen.add("+" + from + " " + type + " " + to);
+        }
+        
+        @Override
+        public void onEdgeRemoved(int from, String type, int to) {
+            seen.add("-" + from + " " + type + " " + to);
+        }
+        
+        @Override
+        public void onInferredAdded(int from, String type, int to) {
+            seen.add("+" + from + " " + type + " " + to + " inferred");
+        }
+        
+        @Override
+        public void onInferredRemoved(int from, String type, int to) {
+            seen.add("-" + from + " " + type + " " + to + " inferred");
+        }
+    }
+    
+    private static Reasoner reasoner(String obo) throws IOException {
+        Reasoner r = new Reasoner();
+        new LineByLineParser(new StanzaCollector(r)).parse(new StringReader(obo));
+        return r;
+    }
+    
+    @Test
+    public void testStated() throws IOException {
+        Recorder r = new Recorder();
+        ReleaseDiff.compare(new StringReader(OLD), new StringReader(NEW), r);
+        assertEquals(Arrays.asList(
+                "~2 two>second", "+5 five",
+                "-3 part_of 2", "+5 is_a 2"), r.seen);
+    }
+    
+    @Test
+    public void testSame() throws IOException {
+        Recorder r = new Recorder();
+        ReleaseDiff.compare(new StringReader(NEW), new StringReader(NEW), r);
+        assertTrue(r.seen.isEmpty());
+    }
+    
+    @Test
+    public void testBinary() throws IOException {
+        Snapshot s = new Snapshot(new StringReader(OLD));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        s.write(out);
+        Snapshot t = Snapshot.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(4, t.terms());
+        assertEquals(s.edges(), t.edges());
+        assertEquals(0, t.inferredEdges());
+        
+        Recorder r = new Recorder();
+        ReleaseDiff.compare(s, t, r);
+        assertTrue(r.seen.isEmpty());
+    }
+    
+    @Test
+    public void testInferred() throws IOException {
+        Snapshot a = Snapshot.of(reasoner(OLD));
+        Snapshot b = Snapshot.of(reasoner(NEW));
+        
+        Recorder r = new Recorder();
+        ReleaseDiff.compare(a, b, r);
+        assertTrue(r.seen.contains("-3 part_of 2"));
+        assertTrue(r.seen.contains("-4 part_of 2 inferred"));
+        assertFalse(r.seen.contains("-4 part_of 2"));
+        assertFalse(r.seen.contains("-4 part_of 3"));
+        assertFalse(r.seen.contains("-4 part_of 3 inferred"));
+        assertTrue(a.inferredEdges() > 0);
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        a.write(out);
+        Snapshot c = Snapshot.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(a.inferredEdges(), c.inferredEdges());
+    }
+}
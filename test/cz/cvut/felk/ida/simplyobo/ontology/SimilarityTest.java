@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.ontology.Similarity.Match;
+import cz.cvut.felk.ida.simplyobo.ontology.Similarity.Measure;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the semantic similarity on the small ontology.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class SimilarityTest {
+    
+    private static final double EPS = 1e-9;
+    
+    private Ontology onto;
+    
+    private Similarity sim;
+    
+    @Before
+    public void setUp() throws IOException {
+        onto = new Ontology(new InputStreamReader(
+                getClass().getResourceAsStream("small.obo")));
+        sim = new Similarity(onto);
+    }
+    
+    private Term t(int id) {
+        return onto.findTerm(id);
+    }
+    
+    @Test
+    public void testStructuralIc() {
+        assertEquals(0, sim.ic(t(1)), EPS);
+        assertEquals(1, sim.ic(t(6)), EPS);
+        assertEquals(1 - Math.log(5) / Math.log(11), sim.ic(t(2)), EPS);
+        assertEquals(4, sim.ancestors(t(6)).cardinality());
+    }
+    
+    @Test
+    public void testMica() {
+        assertEquals(t(2), sim.mica(t(6), t(7)));
+        assertEquals(t(1), sim.mica(t(4), t(10)));
+        assertEquals(t(5), sim.mica(t(5), t(7)));
+        
+        double ic2 = sim.ic(t(2));
+        assertEquals(ic2, sim.similarity(t(6), t(7), Measure.RESNIK), EPS);
+        assertEquals(ic2, sim.similarity(t(6), t(7), Measure.LIN), EPS);
+        assertEquals(1 / (1 + 2 - 2*ic2),
+                sim.similarity(t(6), t(7), Measure.JIANG_CONRATH), EPS);
+        assertEquals(1, sim.similarity(t(6), t(6), Measure.LIN), EPS);
+    }
+    
+    @Test
+    public void testAnnotated() {
+        Map<Term,Integer> counts = new HashMap<Term,Integer>();
+        counts.put(t(6), 1);
+        counts.put(t(7), 1);
+        counts.put(t(10), 2);
+        Similarity a = new Similarity(onto, counts, Traversal.Edge.isA());
+        
+        assertEquals(0, a.ic(t(1)), EPS);
+        assertEquals(Math.log(2), a.ic(t(2)), EPS);
+        assertEquals(Math.log(4./3), a.ic(t(3)), EPS);
+        assertEquals(t(3), a.mica(t(7), t(10)));
+    }
+    
+    @Test
+    public void testBestMatchAverage() {
+        List<Term> x = Arrays.asList(t(6), t(10));
+        assertEquals(1, sim.bestMatchAverage(x, x, Measure.LIN), EPS);
+        assertEquals(0, sim.bestMatchAverage(x,
+                new ArrayList<Term>(), Measure.LIN), EPS);
+    }
+    
+    @Test
+    public void testPairwise() {
+        final List<Term> all = new ArrayList<Term>();
+        for (int i = 1; i <= 11; i++) all.add(t(i));
+        final double[][] out = new double[11][11];
+        
+        ExecutorService exec = Executors.newFixedThreadPool(2);
+        try {
+            sim.pairwise(all, all, Measure.LIN, exec,
+                    new Similarity.TileListener() {
+                @Override
+                public void onTile(int row, int col, int rows, int cols,
+                        double[] values) {
+                    for (int i = 0; i < rows; i++)
+                    for (int j = 0; j < cols; j++)
+                        out[row+i][col+j] = values[i*cols + j];
+                }
+            });
+        } finally {
+            exec.shutdown();
+        }
+        
+        for (int i = 0; i < 11; i++)
+        for (int j = 0; j < 11; j++)
+            assertEquals(sim.similarity(all.get(i), all.get(j), Measure.LIN),
+                    out[i][j], EPS);
+        assertEquals(1, out[5][5], EPS);
+    }
+    
+    /** Best k similarities by a scan of all terms. */
+    private double[] bruteForce(Collection<Term> query, int k, Measure m) {
+        List<Double> all = new ArrayList<Double>();
+        for (int i = 1; i <= 11; i++) {
+            if (query.contains(t(i))) continue;
+            double best = Double.NEGATIVE_INFINITY;
+            for (Term q : query)
+                best = Math.max(best, sim.similarity(q, t(i), m));
+            all.add(best);
+        }
+        Collections.sort(all, Collections.reverseOrder());
+        double[] out = new double[Math.min(k, all.size())];
+        for (int i = 0; i < out.length; i++) out[i] = all.get(i);
+        return out;
+    }
+    
+    private static double[] values(List<Match> ms) {
+        double[] out = new double[ms.size()];
+        for (int i = 0; i < out.length; i++) out[i] = ms.get(i).similarity();
+        return out;
+    }
+    
+    @Test
+    public void testMostSimilar() {
+        for (Measure m : Measure.values())
+        for (int k = 1; k <= 11; k++)
+        for (int q = 1; q <= 11; q++) {
+            List<Term> one = Arrays.asList(t(q));
+            assertArrayEquals(m + " k=" + k + " q=" + q, bruteForce(one, k, m),
+                    values(sim.mostSimilar(t(q), k, m)), EPS);
+        }
+        
+        List<Match> top = sim.mostSimilar(t(6), 1, Measure.LIN);
+        assertEquals(t(4), top.get(0).term());
+    }
+    
+    @Test
+    public void testMostSimilarToSet() {
+        List<Term> q = Arrays.asList(t(6), t(10));
+        for (Measure m : Measure.values())
+            assertArrayEquals(bruteForce(q, 4, m),
+                    values(sim.mostSimilar(q, 4, m)), EPS);
+    }
+    
+    @Test
+    public void testMostSimilarBatch() {
+        List<Term> qs = Arrays.asList(t(6), t(7), t(10));
+        ExecutorService exec = Executors.newFixedThreadPool(2);
+        try {
+            List<List<Match>> out = sim.mostSimilar(qs, 3, Measure.LIN, exec);
+            for (int i = 0; i < qs.size(); i++)
+                assertArrayEquals(values(sim.mostSimilar(qs.get(i), 3,
+                        Measure.LIN)), values(out.get(i)), EPS);
+        } finally {
+            exec.shutdown();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests mapping of the small ontology to its slim.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class SlimMapperTest {
+    
+    private Ontology onto;
+    
+    private SlimMapper mapper;
+    
+    @Before
+    public void setUp() throws IOException {
+        onto = new Ontology(new InputStreamReader(
+                getClass().getResourceAsStream("small.obo")));
+        mapper = new SlimMapper(onto, "test_slim");
+    }
+    
+    private Set<Term> terms(int... ids) {
+        Set<Term> out = new HashSet<Term>();
+        for (int id : ids) out.add(onto.findTerm(id));
+        return out;
+    }
+    
+    @Test
+    public void testSubset() {
+        assertEquals(Collections.singleton("test_slim"), onto.subsetNames());
+        assertEquals(terms(2, 3, 5), onto.subset("test_slim").asSet());
+        assertTrue(onto.subset("missing").isEmpty());
+    }
+    
+    @Test
+    public void testMap() {
+        assertEquals(terms(5), mapper.map(onto.findTerm(6)).asSet());
+        assertEquals(terms(5), mapper.map(onto.findTerm(4)).asSet());
+        assertEquals(terms(3), mapper.map(onto.findTerm(10)).asSet());
+        assertEquals(terms(2), mapper.map(onto.findTerm(2)).asSet());
+        assertEquals(terms(), mapper.map(onto.findTerm(1)).asSet());
+        assertEquals(terms(), mapper.map(onto.findTerm(8)).asSet());
+    }
+    
+    @Test
+    public void testBatch() {
+        int[] ids = {7, 999, 11, 1};
+        int[] offsets = new int[5];
+        assertEquals(2, mapper.map(ids, offsets, new int[1]));
+        
+        int[] slims = new int[2];
+        assertEquals(2, mapper.map(ids, offsets, slims));
+        assertArrayEquals(new int[] {0, 1, 1, 2, 2}, offsets);
+        assertArrayEquals(new int[] {5, 3}, slims);
+    }
+    
+    @Test
+    public void testStream() throws IOException {
+        StringWriter out = new StringWriter();
+        long n = mapper.map(new InputStreamReader(
+                getClass().getResourceAsStream("small.gaf")), out);
+        
+        String[] lines = out.toString().split("\n");
+        assertEquals(5, n);
+        assertEquals(7, lines.length);
+        assertEquals("!gaf-version: 2.2", lines[0]);
+        assertEquals(Arrays.asList("UniProtKB", "A", "geneA", "enables",
+                "GO:0000005", "PMID:1", "IDA"),
+                Arrays.asList(lines[2].split("\t")).subList(0, 7));
+        assertEquals("GO:0000003", lines[3].split("\t")[4]);
+        assertFalse(out.toString().contains("NOT"));
+    }
+    
+    @Test
+    public void testNegated() throws IOException {
+        StringWriter out = new StringWriter();
+        long n = mapper.map(new StringReader(
+                "UniProtKB\tB\tgeneB\tNOT|involved_in\tGO:0000010\tPMID:1\n"
+                + "UniProtKB\tB\tgeneB\tinvolved_in\tGO:0000010\tPMID:1\n"
+                + "UniProtKB\tB\tgeneB\tNOTE|involved_in\tGO:0000010\tPMID:1\n"),
+                out);
+        assertEquals(2, n);
+        assertEquals("UniProtKB\tB\tgeneB\tinvolved_in\tGO:0000003\tPMID:1\n"
+                + "UniProtKB\tB\tgeneB\tNOTE|involved_in\tGO:0000003\tPMID:1\n",
+                out.toString());
+    }
+}
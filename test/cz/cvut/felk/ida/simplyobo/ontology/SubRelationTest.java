@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.parser.LineByLineParser;
+import cz.cvut.felk.ida.simplyobo.parser.StanzaCollector;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests queries including sub-relations on the small ontology.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class SubRelationTest {
+    
+    private Ontology onto;
+    
+    private Type regulates, negReg;
+    
+    @Before
+    public void setUp() throws IOException {
+        onto = new Ontology(new InputStreamReader(
+                getClass().getResourceAsStream("small.obo")));
+        regulates = onto.findType("regulates");
+        negReg = onto.findType("negatively_regulates");
+    }
+    
+    @Test
+    public void testClosure() {
+        assertEquals(new HashSet<Type>(Arrays.asList(regulates, negReg)),
+                onto.subRelations(regulates));
+        assertEquals(new HashSet<Type>(Arrays.asList(negReg)),
+                onto.subRelations(negReg));
+    }
+    
+    @Test
+    public void testRelation() {
+        Term t11 = onto.findTerm(11), t10 = onto.findTerm(10);
+        assertTrue(t11.relation(regulates).isEmpty());
+        
+        onto.setIncludeSubRelations(true);
+        assertEquals(new HashSet<Term>(Arrays.asList(onto.findTerm(6))),
+                t11.relation(regulates));
+        assertEquals(new HashSet<Term>(Arrays.asList(onto.findTerm(4))),
+                t10.relation(regulates));
+        assertEquals(1, t11.relation(negReg).size());
+    }
+    
+    @Test
+    public void testTriplesAddedLater() throws IOException {
+        onto.setIncludeSubRelations(true);
+        assertEquals(1, onto.findTerm(11).relation(regulates).size());
+        
+        new LineByLineParser(new StanzaCollector(onto)).parse(
+                new StringReader("format-version: 1.2\n\n"
+                + "[Term]\nid: GO:0000012\n"
+                + "relationship: negatively_regulates GO:0000007\n\n"));
+        assertEquals(new HashSet<Term>(Arrays.asList(onto.findTerm(7))),
+                onto.findTerm(12).relation(regulates));
+    }
+    
+    @Test
+    public void testBatchAndTraversal() {
+        int[] ids = {10, 11};
+        onto.setIncludeSubRelations(true);
+        for (int k = 0; k < 2; k++) {
+            int[][] r = onto.relation(ids, regulates);
+            Traversal t = onto.traversal(Traversal.Edge.of(regulates));
+            for (int i = 0; i < ids.length; i++) {
+                Term x = onto.findTerm(ids[i]);
+                final Set<Term> reached = new HashSet<Term>();
+                t.bfs(Collections.singleton(x), 1, new Traversal.Visitor() {
+                    @Override
+                    public boolean onVisit(Term term, int d) {
+                        if (d > 0) reached.add(term);
+                        return true;
+                    }
+                });
+                
+                Set<Term> batch = new HashSet<Term>();
+                for (int j = r[0][i]; j < r[0][i+1]; j++)
+                    batch.add(onto.findTerm(r[1][j]));
+                assertEquals(x.relation(regulates), batch);
+                assertEquals(x.relation(regulates), reached);
+                assertEquals(x.relation(regulates),
+                        onto.relation(x, regulates).asSet());
+            }
+            assertEquals(k == 0 ? 1 : 0, r[0][2] - r[0][1]);
+            onto.setIncludeSubRelations(false);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.parser.SubgraphLoader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests loading of a subgraph of the small ontology.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class SubgraphTest {
+    
+    private Reader small() {
+        return new InputStreamReader(
+                getClass().getResourceAsStream("small.obo"));
+    }
+    
+    private static Set<Integer> ids(Iterable<? extends Term> ts) {
+        Set<Integer> out = new HashSet<Integer>();
+        for (Term t : ts) out.add(t.id());
+        return out;
+    }
+    
+    @Test
+    public void testAncestors() throws IOException {
+        SubgraphLoader l = new SubgraphLoader(Arrays.asList(6),
+                Collections.<String>emptySet());
+        l.scan(small());
+        assertEquals(4, l.size());
+        assertTrue(l.contains(2));
+        assertFalse(l.contains(5));
+        
+        Ontology o = new Ontology();
+        l.load(small(), o);
+        assertEquals(new HashSet<Integer>(Arrays.asList(1, 2, 4, 6)),
+                ids(o.allTerms()));
+        assertEquals(Collections.singleton(4), ids(o.findTerm(6).isA()));
+        
+        // Relations leading out of the subgraph are dropped
+        assertTrue(o.findTerm(2).relation(o.findType("adjacent_to")).isEmpty());
+        assertTrue(o.findTerm(4).relation(o.findType("part_of")).isEmpty());
+    }
+    
+    @Test
+    public void testRelations() throws IOException {
+        SubgraphLoader l = new SubgraphLoader(Arrays.asList(6),
+                Arrays.asList("part_of"));
+        l.scan(small());
+        assertEquals(8, l.size());
+        
+        Reasoner r = new Reasoner();
+        l.load(small(), r);
+        assertEquals(new HashSet<Integer>(Arrays.asList(1, 2, 3, 4, 5, 6, 8, 9)),
+                ids(r.allTerms()));
+        
+        // Reasoning runs on the subgraph: part_of is transitive
+        assertTrue(ids(r.findTerm(4).relation(r.findType("part_of")))
+                .containsAll(Arrays.asList(5, 8, 9)));
+    }
+    
+    @Test(expected=IllegalStateException.class)
+    public void testLoadBeforeScan() throws IOException {
+        new SubgraphLoader(Arrays.asList(6), Collections.<String>emptySet())
+                .load(small(), new Ontology());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link TermSet} on the small ontology.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class TermSetTest {
+    
+    private Ontology onto;
+    
+    @Before
+    public void setUp() throws IOException {
+        onto = new Ontology(new InputStreamReader(
+                getClass().getResourceAsStream("small.obo")));
+    }
+    
+    private Set<Term> terms(Integer... ids) {
+        Set<Term> out = new HashSet<Term>();
+        for (Integer id : ids) out.add(onto.findTerm(id));
+        return out;
+    }
+    
+    @Test
+    public void testAlgebra() {
+        TermSet a = onto.termSet(terms(1, 2, 3, 4));
+        TermSet b = onto.termSet(terms(3, 4, 5));
+        
+        assertEquals(terms(1, 2, 3, 4, 5), a.union(b).asSet());
+        assertEquals(terms(3, 4), a.intersect(b).asSet());
+        assertEquals(terms(1, 2), a.andNot(b).asSet());
+        assertEquals(2, a.intersectCardinality(b));
+        assertEquals(4, a.cardinality());
+        assertTrue(a.contains(onto.findTerm(1)));
+        assertFalse(a.contains(onto.findTerm(5)));
+        
+        assertEquals(onto.allTerms(), onto.allTermSet().asSet());
+    }
+    
+    @Test
+    public void testQueries() {
+        Type partOf = onto.findType("part_of");
+        
+        assertEquals(terms(2, 3), onto.isA(onto.findTerm(5)).asSet());
+        assertEquals(terms(5), onto.relation(onto.findTerm(4), partOf).asSet());
+        assertEquals(terms(4), onto.subjects(partOf, onto.findTerm(5)).asSet());
+    }
+    
+    @Test
+    public void testQueriesMatchTerms() {
+        for (boolean sub : new boolean[] {false, true}) {
+            onto.setIncludeSubRelations(sub);
+            for (Term t : onto.allTerms()) {
+                assertEquals(t.isA(), onto.isA(t).asSet());
+                for (Type v : onto.allTypes())
+                    assertEquals(t.relation(v), onto.relation(t, v).asSet());
+            }
+        }
+    }
+    
+    @Test
+    public void testDenseIndex() throws IOException {
+        StringBuilder obo = new StringBuilder("format-version: 1.2\n\n");
+        for (int i = 1; i <= 100; i++)
+            obo.append("[Term]\nid: GO:").append(1000000 + i)
+               .append("\nis_a: GO:1000001\n\n");
+        Ontology big = new Ontology(new StringReader(obo.toString()));
+        
+        for (Term t : big.allTerms())
+            assertSame(t, big.termAt(big.indexOf(t)));
+        assertEquals(-1, big.indexOf(onto.findTerm(1)));
+        assertEquals(100, big.allTermSet().cardinality());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testForeignTerm() throws IOException {
+        Ontology other = new Ontology(new InputStreamReader(
+                getClass().getResourceAsStream("small.obo")));
+        onto.termSet(other.allTerms());
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.ontology;
+
+import cz.cvut.felk.ida.simplyobo.ontology.Traversal.Edge;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link Traversal} on the small ontology.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class TraversalTest {
+    
+    private Ontology onto;
+    
+    @Before
+    public void setUp() throws IOException {
+        onto = new Ontology(new InputStreamReader(
+                getClass().getResourceAsStream("small.obo")));
+    }
+    
+    private Set<Term> terms(Integer... ids) {
+        Set<Term> out = new HashSet<Term>();
+        for (Integer id : ids) out.add(onto.findTerm(id));
+        return out;
+    }
+    
+    private Set<Term> root() {
+        return Collections.singleton(onto.findTerm(1));
+    }
+    
+    @Test
+    public void testBfs() {
+        Traversal t = onto.traversal(Edge.isA().inverse());
+        final Map<Integer,Integer> depth = new HashMap<Integer,Integer>();
+        Traversal.Visitor v = new Traversal.Visitor() {
+            @Override
+            public boolean onVisit(Term term, int d) {
+                assertNull(depth.put(term.id(), d));
+                return true;
+            }
+        };
+        
+        assertEquals(11, t.bfs(root(), Integer.MAX_VALUE, v));
+        assertEquals(Integer.valueOf(1), depth.get(8));
+        assertEquals(Integer.valueOf(2), depth.get(5));
+        assertEquals(Integer.valueOf(3), depth.get(7));
+        
+        // The visited bitset is reset for the next walk
+        depth.clear();
+        assertEquals(5, t.bfs(root(), 1, v));
+    }
+    
+    @Test
+    public void testDfs() {
+        Traversal t = onto.traversal(Edge.isA().inverse());
+        final Set<Term> seen = new HashSet<Term>();
+        
+        int n = t.dfs(root(), 1, new Traversal.Visitor() {
+            @Override
+            public boolean onVisit(Term term, int d) {
+                assertTrue(seen.add(term));
+                return true;
+            }
+        });
+        assertEquals(5, n);
+        assertEquals(terms(1, 2, 3, 8, 9), seen);
+        
+        // Early termination
+        n = t.dfs(root(), Integer.MAX_VALUE, new Traversal.Visitor() {
+            @Override
+            public boolean onVisit(Term term, int d) {
+                return d < 2;
+            }
+        });
+        assertEquals(3, n);
+    }
+    
+    @Test
+    public void testDfsShorterPath() throws IOException {
+        // 1 -> 2 -> 3 -> 4 and a shortcut 1 -> 3
+        Ontology o = new Ontology(new StringReader("format-version: 1.2\n\n"
+                + "[Term]\nid: GO:0000001\n\n"
+                + "[Term]\nid: GO:0000002\nis_a: GO:0000001\n\n"
+                + "[Term]\nid: GO:0000003\nis_a: GO:0000002\n"
+                + "is_a: GO:0000001\n\n"
+                + "[Term]\nid: GO:0000004\nis_a: GO:0000003\n\n"));
+        Traversal t = o.traversal(Edge.isA().inverse());
+        Set<Term> start = Collections.singleton(o.findTerm(1));
+        
+        final Set<Integer> bfs = new HashSet<Integer>();
+        final Set<Integer> dfs = new HashSet<Integer>();
+        t.bfs(start, 2, new Traversal.Visitor() {
+            @Override
+            public boolean onVisit(Term term, int d) {
+                bfs.add(term.id());
+                return true;
+            }
+        });
+        int n = t.dfs(start, 2, new Traversal.Visitor() {
+            @Override
+            public boolean onVisit(Term term, int d) {
+                assertTrue(dfs.add(term.id()));
+                return true;
+            }
+        });
+        assertEquals(new HashSet<Integer>(Arrays.asList(1, 2, 3, 4)), bfs);
+        assertEquals(bfs, dfs);
+        assertEquals(4, n);
+    }
+    
+    @Test
+    public void testParallel() {
+        Type partOf = onto.findType("part_of");
+        Traversal t = onto.traversal(Edge.isA(), Edge.of(partOf));
+        ExecutorService exec = Executors.newFixedThreadPool(2);
+        
+        TermSet up = t.parallelBfs(Collections.singleton(onto.findTerm(6)),
+                Integer.MAX_VALUE, exec);
+        assertEquals(terms(1, 2, 3, 4, 5, 6, 8, 9), up.asSet());
+        
+        up = t.parallelBfs(Collections.singleton(onto.findTerm(6)), 1, exec);
+        assertEquals(terms(4, 6), up.asSet());
+        exec.shutdown();
+    }
+}
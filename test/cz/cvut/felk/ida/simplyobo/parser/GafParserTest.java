@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.parser;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link GafParser} on generated annotation lines.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class GafParserTest {
+    
+    private static String line(String gene, String qualifier, String term) {
+        return "UniProtKB\t" + gene + "\t" + gene.toLowerCase() + "\t"
+                + qualifier + "\t" + term + "\tPMID:1\tIDA\t\tP\n";
+    }
+    
+    private static class Recorder implements GafListener {
+        
+        final List<String> seen = new ArrayList<String>();
+        
+        GafParser parser;
+        
+        @Override
+        public void onAnnotation(int gene, int term) {
+            seen.add(parser.gene(gene) + " " + term);
+        }
+    }
+    
+    @Test
+    public void testParse() throws Exception {
+        String gaf = "!gaf-version: 2.2\n"
+                + line("P1", "enables", "GO:0008150")
+                + line("P2", "NOT|enables", "GO:0000001")
+                + line("P1", "contributes_to", "GO:0000002");
+        
+        Recorder r = new Recorder();
+        r.parser = new GafParser(r);
+        r.parser.parse(new StringReader(gaf));
+        
+        assertEquals(2, r.seen.size());
+        assertEquals("UniProtKB:P1 8150", r.seen.get(0));
+        assertEquals("UniProtKB:P1 2", r.seen.get(1));
+        assertEquals(1, r.parser.genes());
+        assertEquals(1, r.parser.negated());
+    }
+    
+    @Test
+    public void testParallel() throws Exception {
+        StringBuilder gaf = new StringBuilder("!gaf-version: 2.2\n");
+        for (int i = 0; i < 20000; i++)
+            gaf.append(line("P" + (i % 777), i % 13 == 0 ? "NOT" : "enables",
+                    "GO:" + (i % 101)));
+        
+        Recorder seq = new Recorder();
+        seq.parser = new GafParser(seq);
+        seq.parser.parse(new StringReader(gaf.toString()));
+        
+        Recorder par = new Recorder();
+        par.parser = new GafParser(par);
+        ExecutorService exec = Executors.newFixedThreadPool(3);
+        try {
+            par.parser.parse(new StringReader(gaf.toString()), exec);
+        } finally {
+            exec.shutdown();
+        }
+        
+        assertEquals(seq.seen, par.seen);
+        assertEquals(seq.parser.negated(), par.parser.negated());
+        assertEquals(777, par.parser.genes());
+    }
+    
+    @Test(expected=SyntaxError.class)
+    public void testShortLine() throws Exception {
+        new GafParser(new Recorder()).parse(
+                new StringReader("UniProtKB\tP1\tp1\n"));
+    }
+    
+    @Test(expected=SyntaxError.class)
+    public void testBadTerm() throws Exception {
+        new GafParser(new Recorder()).parse(
+                new StringReader(line("P1", "enables", "GO:12a")));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class IntBitmapTest {
+    
+    private static SortedSet<Integer> toSet(IntBitmap b) {
+        SortedSet<Integer> out = new TreeSet<Integer>();
+        for (int x : b.toArray()) out.add(x);
+        return out;
+    }
+    
+    @Test
+    public void testAlgebra() {
+        Random rnd = new Random(5);
+        for (int round = 0; round < 20; round++) {
+            IntBitmap.Builder ba = new IntBitmap.Builder();
+            IntBitmap.Builder bb = new IntBitmap.Builder();
+            SortedSet<Integer> a = new TreeSet<Integer>();
+            SortedSet<Integer> b = new TreeSet<Integer>();
+            for (int i = 0; i < 200; i++) {
+                int x = rnd.nextInt(2000), y = rnd.nextInt(1000);
+                ba.add(x); a.add(x);
+                bb.add(y); b.add(y);
+            }
+            IntBitmap x = ba.build(), y = bb.build();
+            assertEquals(a, toSet(x));
+            assertEquals(a.size(), x.cardinality());
+            
+            SortedSet<Integer> u = new TreeSet<Integer>(a);
+            u.addAll(b);
+            assertEquals(u, toSet(x.union(y)));
+            
+            SortedSet<Integer> i = new TreeSet<Integer>(a);
+            i.retainAll(b);
+            assertEquals(i, toSet(x.intersect(y)));
+            assertEquals(i.size(), x.intersectCardinality(y));
+            
+            SortedSet<Integer> d = new TreeSet<Integer>(a);
+            d.removeAll(b);
+            assertEquals(d, toSet(x.andNot(y)));
+            assertEquals(d.size(), x.andNotCardinality(y));
+        }
+    }
+    
+    @Test
+    public void testSkewed() {
+        Random rnd = new Random(6);
+        IntBitmap.Builder big = new IntBitmap.Builder();
+        SortedSet<Integer> a = new TreeSet<Integer>();
+        for (int i = 0; i < 5000; i++) {
+            int x = 64 * i + rnd.nextInt(64);
+            big.add(x); a.add(x);
+        }
+        IntBitmap x = big.build();
+        for (int round = 0; round < 20; round++) {
+            IntBitmap.Builder small = new IntBitmap.Builder();
+            SortedSet<Integer> b = new TreeSet<Integer>();
+            for (int i = 0; i < 5; i++) {
+                int y = rnd.nextInt(64 * 5100);
+                small.add(y); b.add(y);
+            }
+            IntBitmap y = small.build();
+            
+            SortedSet<Integer> i = new TreeSet<Integer>(b);
+            i.retainAll(a);
+            assertEquals(i, toSet(x.intersect(y)));
+            assertEquals(i, toSet(y.intersect(x)));
+            assertEquals(i.size(), x.intersectCardinality(y));
+            assertEquals(i.size(), y.intersectCardinality(x));
+            
+            SortedSet<Integer> d = new TreeSet<Integer>(b);
+            d.removeAll(a);
+            assertEquals(d, toSet(y.andNot(x)));
+            d = new TreeSet<Integer>(a);
+            d.removeAll(b);
+            assertEquals(d, toSet(x.andNot(y)));
+        }
+    }
+    
+    @Test
+    public void testNext() {
+        IntBitmap x = IntBitmap.of(5, 64, 200, 63);
+        assertEquals(5, x.next(0));
+        assertEquals(63, x.next(6));
+        assertEquals(64, x.next(64));
+        assertEquals(200, x.next(65));
+        assertEquals(-1, x.next(201));
+        assertTrue(x.contains(200));
+        assertFalse(x.contains(199));
+        assertEquals(x, IntBitmap.of(63, 64, 5, 200, 5));
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class IntIntMapTest {
+    
+    @Test
+    public void testAgainstHashMap() {
+        Random rnd = new Random(9);
+        IntIntMap x = new IntIntMap(4, -1);
+        Map<Integer,Integer> y = new HashMap<Integer,Integer>();
+        
+        for (int i = 0; i < 5000; i++) {
+            int k = rnd.nextInt(3000) - 1000, v = rnd.nextInt();
+            x.put(k, v);
+            y.put(k, v);
+        }
+        assertEquals(y.size(), x.size());
+        for (int k = -1000; k < 2000; k++) {
+            Integer v = y.get(k);
+            assertEquals(v == null ? -1 : v, x.get(k));
+            assertEquals(v != null, x.containsKey(k));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link Interner}.
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class InternerTest {
+    
+    @Test
+    public void testIntern() {
+        Interner i = new Interner();
+        String text = "xx abc abd abc";
+        assertEquals(0, i.intern(text, 3, 6));
+        assertEquals(1, i.intern(text, 7, 10));
+        assertEquals(0, i.intern(text, 11, 14));
+        assertEquals(2, i.size());
+        assertEquals("abd", i.get(1));
+        assertEquals(0, i.find("abc"));
+        assertEquals(-1, i.find("ab"));
+    }
+    
+    @Test
+    public void testGrow() {
+        Interner i = new Interner();
+        for (int k = 0; k < 10000; k++) assertEquals(k, i.intern("g" + k));
+        for (int k = 0; k < 10000; k++) assertEquals(k, i.find("g" + k));
+        assertEquals("g1234", i.get(1234));
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class PackedSVOidxTest {
+    
+    private static void assertSame(SVOidx<Integer,Integer,Integer> x,
+            SVOidx<Integer,Integer,Integer> y) {
+        assertEquals(x.allS(), y.allS());
+        assertEquals(x.allV(), y.allV());
+        assertEquals(x.allO(), y.allO());
+        for (int i = -1; i < 12; i++) {
+            assertEquals(x.getVbyS(i), y.getVbyS(i));
+            assertEquals(x.getVbyO(i), y.getVbyO(i));
+            assertEquals(x.getSbyV(i), y.getSbyV(i));
+            assertEquals(x.getObyV(i), y.getObyV(i));
+            for (int j = -1; j < 12; j++) {
+                assertEquals(x.getO(i, j), y.getO(i, j));
+                assertEquals(x.getS(i, j), y.getS(i, j));
+                for (int k = 0; k < 12; k++)
+                    assertEquals(x.contains(i,j,k), y.contains(i,j,k));
+            }
+        }
+    }
+    
+    @Test
+    public void testBulkLoad() {
+        Random rnd = new Random(42);
+        SVOidx<Integer,Integer,Integer> x
+                = new SVOidx<Integer,Integer,Integer>();
+        for (int i = 0; i < 1000; i++)
+            x.add(rnd.nextInt(10), rnd.nextInt(10), rnd.nextInt(10));
+        
+        PackedSVOidx<Integer,Integer,Integer> y
+                = new PackedSVOidx<Integer,Integer,Integer>(x);
+        assertSame(x, y);
+    }
+    
+    @Test
+    public void testBatchInsertion() {
+        Random rnd = new Random(7);
+        SVOidx<Integer,Integer,Integer> x
+                = new SVOidx<Integer,Integer,Integer>();
+        PackedSVOidx<Integer,Integer,Integer> y
+                = new PackedSVOidx<Integer,Integer,Integer>();
+        
+        for (int i = 0; i < 1000; i++) {
+            int s = rnd.nextInt(10), v = rnd.nextInt(10), o = rnd.nextInt(10);
+            x.add(s, v, o);
+            y.add(s, v, o);
+            if (i == 300) y.flush();
+        }
+        // Part of the triples is still buffered
+        assertSame(x, y);
+        
+        y.flush();
+        assertSame(x, y);
+        
+        int n = 0;
+        for (Integer s : x.allS())
+        for (Integer v : x.getVbyS(s))
+            n += x.getO(s, v).size();
+        assertEquals(n, y.size());
+    }
+    
+    @Test
+    public void testRemove() {
+        Random rnd = new Random(11);
+        SVOidx<Integer,Integer,Integer> x
+                = new SVOidx<Integer,Integer,Integer>();
+        for (int i = 0; i < 1000; i++)
+            x.add(rnd.nextInt(10), rnd.nextInt(10), rnd.nextInt(10));
+        PackedSVOidx<Integer,Integer,Integer> y
+                = new PackedSVOidx<Integer,Integer,Integer>(x);
+        
+        // Some triples are in the arrays, some in the buffer
+        y.add(100, 0, 0);
+        x.add(100, 0, 0);
+        assertTrue(y.remove(100, 0, 0));
+        assertTrue(x.remove(100, 0, 0));
+        
+        SVOidx<Integer,Integer,Integer> doomed
+                = new SVOidx<Integer,Integer,Integer>();
+        for (int i = 0; i < 300; i++)
+            doomed.add(rnd.nextInt(10), rnd.nextInt(10), rnd.nextInt(10));
+        
+        long m = y.modifications();
+        assertEquals(x.removeAll(doomed), y.removeAll(doomed));
+        assertSame(x, y);
+        assertTrue(y.modifications() > m);
+        
+        assertEquals(x.removeBySubject(3), y.removeBySubject(3));
+        m = y.modifications();
+        y.compact();
+        assertSame(x, y);
+        assertTrue(y.modifications() > m);
+    }
+    
+    @Test
+    public void testConcurrentCompaction() throws InterruptedException {
+        final PackedSVOidx<Integer,Integer,Integer> y
+                = new PackedSVOidx<Integer,Integer,Integer>();
+        for (int s = 0; s < 10; s++)
+        for (int o = 0; o < 10; o++) y.add(s, 0, o);
+        
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] readers = new Thread[2];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread() {
+                @Override
+                public void run() {
+                    Random rnd = new Random();
+                    while (!stop.get()) {
+                        int s = rnd.nextInt(10), o = rnd.nextInt(10);
+                        if (!y.contains(s, 0, o)) errors.incrementAndGet();
+                        if (y.getO(s, 0).size() != 10) errors.incrementAndGet();
+                    }
+                }
+            };
+            readers[r].start();
+        }
+        
+        // Compaction renumbers the values that stay in the index
+        for (int i = 0; i < 200; i++) {
+            y.add(100 + i, i, i);
+            y.flush();
+            y.remove(100 + i, i, i);
+            y.compact();
+        }
+        stop.set(true);
+        for (Thread t : readers) t.join();
+        assertEquals(0, errors.get());
+        assertEquals(100, y.size());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import cz.cvut.felk.ida.simplyobo.tools.SVOidx.Perm;
+import java.util.EnumSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class SVOidxTest {
+    
+    @Test
+    public void testLazyPermutation() {
+        SVOidx<String,String,String> x = new SVOidx<String,String,String>(
+                EnumSet.of(Perm.SVO));
+        x.setCounting(true);
+        x.add("a", "r", "b");
+        x.add("c", "r", "b");
+        
+        assertFalse(x.isBuilt(Perm.VOS));
+        assertEquals(2, x.getS("r", "b").size());
+        assertTrue(x.isBuilt(Perm.VOS));
+        assertFalse(x.isBuilt(Perm.OVS));
+        
+        // Built permutations are kept up to date
+        x.add("d", "r", "b");
+        assertEquals(3, x.getS("r", "b").size());
+        
+        assertEquals(2, x.uses(Perm.VOS));
+        assertEquals(0, x.uses(Perm.OVS));
+        assertTrue(x.contains("d", "r", "b"));
+        assertEquals(1, x.uses(Perm.SVO));
+        
+        // Nothing is counted by default
+        x.setCounting(false);
+        x.getS("r", "b");
+        assertEquals(2, x.uses(Perm.VOS));
+    }
+    
+    @Test
+    public void testCopy() {
+        SVOidx<String,String,String> x = new SVOidx<String,String,String>();
+        x.add("a", "r", "b");
+        
+        SVOidx<String,String,String> y = new SVOidx<String,String,String>(x);
+        y.add("b", "r", "c");
+        
+        assertTrue(y.contains("a", "r", "b"));
+        assertFalse(x.contains("b", "r", "c"));
+        assertEquals(EnumSet.allOf(Perm.class), y.eager());
+    }
+    
+    @Test
+    public void testFilter() {
+        SVOidx<Integer,Integer,Integer> x
+                = new SVOidx<Integer,Integer,Integer>();
+        for (int i = 0; i < 100; i++) x.add(i, 0, i+1);
+        x.setFilter(true);
+        x.setCounting(true);
+        
+        // Grows beyond its initial capacity
+        for (int i = 100; i < 1000; i++) x.add(i, 0, i+1);
+        for (int i = 0; i < 1000; i++) assertTrue(x.contains(i, 0, i+1));
+        assertEquals(0, x.filterRejected());
+        
+        for (int i = 0; i < 1000; i++) assertFalse(x.contains(i, 0, i+2));
+        assertEquals(2000, x.filterRejected() + x.filterPassed());
+        assertTrue(x.filterFalsePositives() < 50);
+        assertEquals(x.filterFalsePositives(), x.filterPassed() - 1000);
+        
+        x.setFilter(false);
+        assertFalse(x.getFilter());
+    }
+    
+    @Test
+    public void testRemove() {
+        SVOidx<String,String,String> x = new SVOidx<String,String,String>(
+                EnumSet.of(Perm.SVO, Perm.OVS));
+        x.add("a", "r", "b");
+        x.add("a", "r", "c");
+        x.add("c", "q", "b");
+        x.setFilter(true);
+        
+        // Builds VOS, which must be kept up to date
+        assertEquals(1, x.getS("r", "b").size());
+        
+        long m = x.modifications();
+        assertTrue(x.remove("a", "r", "b"));
+        assertFalse(x.remove("a", "r", "b"));
+        assertEquals(m + 1, x.modifications());
+        assertFalse(x.contains("a", "r", "b"));
+        assertTrue(x.getS("r", "b").isEmpty());
+        assertEquals(1, x.getVbyO("b").size());
+        
+        assertEquals(1, x.removeByObject("b"));
+        assertFalse(x.allS().contains("c"));
+        assertEquals(2, x.removed());
+        
+        m = x.modifications();
+        x.compact();
+        assertTrue(x.modifications() > m);
+        assertEquals(0, x.removed());
+        assertFalse(x.isBuilt(Perm.VOS));
+        assertTrue(x.contains("a", "r", "c"));
+        assertEquals(1, x.getS("r", "c").size());
+        assertEquals(1, x.removeBySubject("a"));
+        assertTrue(x.allS().isEmpty());
+    }
+}
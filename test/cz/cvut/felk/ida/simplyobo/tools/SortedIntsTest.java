@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class SortedIntsTest {
+    
+    private static int[] random(Random rnd, int n, int max) {
+        SortedSet<Integer> set = new TreeSet<Integer>();
+        while (set.size() < n) set.add(rnd.nextInt(max));
+        return toArray(set);
+    }
+    
+    private static int[] toArray(SortedSet<Integer> set) {
+        int[] out = new int[set.size()];
+        int i = 0;
+        for (int x : set) out[i++] = x;
+        return out;
+    }
+    
+    private static SortedSet<Integer> toSet(int[] a, int n) {
+        SortedSet<Integer> out = new TreeSet<Integer>();
+        for (int i = 0; i < n; i++) out.add(a[i]);
+        return out;
+    }
+    
+    @Test
+    public void testGallop() {
+        Random rnd = new Random(1);
+        for (int round = 0; round < 50; round++) {
+            int[] a = random(rnd, 1 + rnd.nextInt(900), 1000);
+            int from = rnd.nextInt(a.length + 1);
+            int key = rnd.nextInt(1100);
+            
+            int exp = from;
+            while (exp < a.length && a[exp] < key) exp++;
+            assertEquals(exp, SortedInts.gallop(a, from, a.length, key));
+        }
+        
+        int[] a = {1, 3, 5, 7};
+        assertEquals(0, SortedInts.gallop(a, 0, 4, 0));
+        assertEquals(2, SortedInts.gallop(a, 0, 4, 5));
+        assertEquals(3, SortedInts.gallop(a, 0, 3, 7));
+        assertEquals(4, SortedInts.gallop(a, 4, 4, 9));
+    }
+    
+    @Test
+    public void testUnion() {
+        Random rnd = new Random(3);
+        IntUnion u = new IntUnion();
+        for (int round = 0; round < 3; round++) {
+            u.clear();
+            SortedSet<Integer> exp = new TreeSet<Integer>();
+            for (int i = 0; i < 10 + round; i++) {
+                int[] a = random(rnd, rnd.nextInt(30), 100);
+                exp.addAll(toSet(a, a.length));
+                u.add(a);
+            }
+            
+            SortedSet<Integer> out = new TreeSet<Integer>();
+            int last = -1;
+            while (u.hasNext()) {
+                int x = u.next();
+                assertTrue(x > last);
+                out.add(last = x);
+            }
+            assertEquals(exp, out);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2011 Radomír Černoch (radomir.cernoch at gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package cz.cvut.felk.ida.simplyobo.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class TripleSorterTest {
+    
+    private static List<String> drain(TripleCursor c) throws IOException {
+        List<String> out = new ArrayList<String>();
+        while (c.next())
+            out.add(String.format("%05d %05d %05d", c.a(), c.b(), c.c()));
+        c.close();
+        return out;
+    }
+
+    @Test
+    public void testSortWithSpills() throws IOException {
+        Random rnd = new Random(42);
+        TreeSet<String> exp = new TreeSet<String>();
+        TripleSorter sorter = new TripleSorter(null, 100);
+        
+        for (int i = 0; i < 1000; i++) {
+            int a = rnd.nextInt(20), b = rnd.nextInt(3), c = rnd.nextInt(20);
+            sorter.add(a, b, c);
+            exp.add(String.format("%05d %05d %05d", a, b, c));
+        }
+        
+        assertTrue(sorter.spilled() > 0);
+        assertEquals(new ArrayList<String>(exp), drain(sorter.sort()));
+    }
+    
+    @Test
+    public void testMinus() throws IOException {
+        TripleSorter x = new TripleSorter(null, 10);
+        TripleSorter y = new TripleSorter(null, 10);
+        x.add(1,1,1); x.add(1,1,2); x.add(2,0,0);
+        y.add(1,1,2); y.add(3,0,0);
+        
+        List<String> out = drain(TripleSorter.minus(x.sort(), y.sort()));
+        assertEquals(2, out.size());
+        assertEquals("00001 00001 00001", out.get(0));
+        assertEquals("00002 00000 00000", out.get(1));
+    }
+    
+    private static File tempDir() throws IOException {
+        File dir = File.createTempFile("simplyobo", ".test");
+        assertTrue(dir.delete() && dir.mkdir());
+        return dir;
+    }
+    
+    @Test
+    public void testRunsDeleted() throws IOException {
+        File dir = tempDir();
+        try {
+            TripleSorter sorter = new TripleSorter(dir, 10);
+            for (int i = 0; i < 100; i++) sorter.add(i % 7, 0, i);
+            assertEquals(9, sorter.spilled());
+            assertEquals(9, dir.list().length);
+            assertEquals(100, drain(sorter.sort()).size());
+            assertEquals(0, dir.list().length);
+            
+            // Discarded without sorting
+            sorter = new TripleSorter(dir, 10);
+            for (int i = 0; i < 100; i++) sorter.add(i, 0, i);
+            sorter.discard();
+            assertEquals(0, dir.list().length);
+            
+            // Closure of a chain 0 -> 1 -> ... -> 49
+            ExternalClosure closure = new ExternalClosure(
+                    new boolean[][] {{true}}, dir, 16);
+            for (int i = 0; i < 49; i++) closure.add(i, 0, i + 1);
+            final long[] derived = {0};
+            closure.close(new ExternalClosure.Sink() {
+                @Override
+                public void add(int s, int v, int o) {
+                    derived[0]++;
+                }
+                
+                @Override
+                public void round(int rounds) {
+                }
+            });
+            assertEquals(50 * 49 / 2 - 49, derived[0]);
+            assertEquals(0, dir.list().length);
+        } finally {
+            for (File f : dir.listFiles()) f.delete();
+            dir.delete();
+        }
+    }
+}